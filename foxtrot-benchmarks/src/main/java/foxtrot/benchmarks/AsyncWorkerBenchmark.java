@@ -0,0 +1,106 @@
+/**
+ * Copyright (c) 2002-2008, Simone Bordet
+ * All rights reserved.
+ *
+ * This software is distributable under the BSD license.
+ * See the terms of the BSD license in the documentation provided with this software.
+ */
+
+package foxtrot.benchmarks;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import javax.swing.SwingUtilities;
+
+import foxtrot.AsyncTask;
+import foxtrot.AsyncWorker;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the completion throughput of {@link AsyncWorker}: a batch of empty AsyncTasks
+ * is posted from the Event Dispatch Thread, and each operation ends when the callbacks of
+ * all the AsyncTasks of the batch have been called in the Event Dispatch Thread.
+ *
+ * @version $Revision$
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {Headless.HEADLESS})
+public class AsyncWorkerBenchmark
+{
+    private static final int BATCH = 1000;
+
+    @Param({"1", "64"})
+    public int completionBatchSize;
+
+    private int previous;
+
+    @Setup
+    public void setUp()
+    {
+        previous = AsyncWorker.getCompletionBatchSize();
+        AsyncWorker.setCompletionBatchSize(completionBatchSize);
+    }
+
+    @TearDown
+    public void tearDown()
+    {
+        AsyncWorker.setCompletionBatchSize(previous);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void complete() throws InterruptedException
+    {
+        final CountDownLatch latch = new CountDownLatch(BATCH);
+        SwingUtilities.invokeLater(new Runnable()
+        {
+            public void run()
+            {
+                for (int i = 0; i < BATCH; ++i) AsyncWorker.post(new CountingTask(latch));
+            }
+        });
+        latch.await();
+    }
+
+    private static class CountingTask extends AsyncTask
+    {
+        private final CountDownLatch latch;
+
+        private CountingTask(CountDownLatch latch)
+        {
+            this.latch = latch;
+        }
+
+        public Object run()
+        {
+            return null;
+        }
+
+        public void success(Object result)
+        {
+            latch.countDown();
+        }
+
+        public void failure(Throwable x)
+        {
+            x.printStackTrace();
+            latch.countDown();
+        }
+    }
+}
@@ -0,0 +1,69 @@
+/**
+ * Copyright (c) 2002-2008, Simone Bordet
+ * All rights reserved.
+ *
+ * This software is distributable under the BSD license.
+ * See the terms of the BSD license in the documentation provided with this software.
+ */
+
+package foxtrot.benchmarks;
+
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.util.concurrent.TimeUnit;
+
+import foxtrot.utils.EventListenerProxy;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the cost of invoking a listener wrapped by {@link EventListenerProxy},
+ * compared to invoking the listener directly. <br />
+ * Listeners are invoked in the benchmark thread: EventListenerProxy does not depend
+ * on the Event Dispatch Thread, it only assumes that listeners are not invoked concurrently.
+ *
+ * @version $Revision$
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {Headless.HEADLESS})
+public class EventListenerProxyBenchmark
+{
+    private final CountingListener listener = new CountingListener();
+    private final ActionListener proxy = (ActionListener)EventListenerProxy.create(ActionListener.class, listener);
+    private final ActionEvent event = new ActionEvent(this, ActionEvent.ACTION_PERFORMED, "benchmark");
+
+    @Benchmark
+    public int direct()
+    {
+        listener.actionPerformed(event);
+        return listener.count;
+    }
+
+    @Benchmark
+    public int proxied()
+    {
+        proxy.actionPerformed(event);
+        return listener.count;
+    }
+
+    private static class CountingListener implements ActionListener
+    {
+        private int count;
+
+        public void actionPerformed(ActionEvent e)
+        {
+            ++count;
+        }
+    }
+}
@@ -0,0 +1,33 @@
+/**
+ * Copyright (c) 2002-2008, Simone Bordet
+ * All rights reserved.
+ *
+ * This software is distributable under the BSD license.
+ * See the terms of the BSD license in the documentation provided with this software.
+ */
+
+package foxtrot.benchmarks;
+
+/**
+ * JVM arguments for the forked benchmark JVMs. <br />
+ * Benchmarks run headless, so that they can run on build machines without a display:
+ * the AWT EventQueue and the Event Dispatch Thread work in headless mode, only windows
+ * cannot be created. Event pumps access AWT internals, which must be opened on JDK 9+. <br />
+ * To run all the benchmarks:
+ * <pre>
+ * mvn -pl foxtrot-core,foxtrot-benchmarks install
+ * java -jar foxtrot-benchmarks/target/benchmarks.jar
+ * </pre>
+ *
+ * @version $Revision$
+ */
+final class Headless
+{
+    static final String HEADLESS = "-Djava.awt.headless=true";
+    static final String OPEN_AWT = "--add-opens=java.desktop/java.awt=ALL-UNNAMED";
+    static final String EXPORT_SUN_AWT = "--add-exports=java.desktop/sun.awt=ALL-UNNAMED";
+
+    private Headless()
+    {
+    }
+}
@@ -0,0 +1,100 @@
+/**
+ * Copyright (c) 2002-2008, Simone Bordet
+ * All rights reserved.
+ *
+ * This software is distributable under the BSD license.
+ * See the terms of the BSD license in the documentation provided with this software.
+ */
+
+package foxtrot.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import javax.swing.SwingUtilities;
+
+import foxtrot.EventPump;
+import foxtrot.Job;
+import foxtrot.Worker;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the round-trip latency of {@link Worker#post(Job)} from the Event Dispatch Thread,
+ * with each {@link EventPump} implementation: an empty Job is posted, and the operation ends
+ * when the event pump returns. <br />
+ * The benchmark thread is not the Event Dispatch Thread, so each post is wrapped in
+ * {@link SwingUtilities#invokeAndWait}; the cost of invokeAndWait alone is measured by
+ * {@link #invokeAndWait()}, and should be subtracted from {@link #post()}. <br />
+ * By default only the event pumps that work on JDK 7 and later are measured; the event pumps
+ * for older JREs can be measured on those JREs with <tt>-p eventPump=&lt;class name&gt;</tt>.
+ *
+ * @version $Revision$
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {Headless.HEADLESS, Headless.OPEN_AWT, Headless.EXPORT_SUN_AWT})
+public class PostBenchmark
+{
+    @Param({"SunJDK17ConditionalEventPump", "QueueEventPump"})
+    public String eventPump;
+
+    private final Runnable post = new Runnable()
+    {
+        public void run()
+        {
+            Worker.post(new EmptyJob());
+        }
+    };
+    private final Runnable empty = new Runnable()
+    {
+        public void run()
+        {
+        }
+    };
+    private EventPump previous;
+
+    @Setup
+    public void setUp() throws Exception
+    {
+        previous = Worker.getEventPump();
+        Worker.setEventPump((EventPump)Class.forName("foxtrot.pumps." + eventPump).getDeclaredConstructor().newInstance());
+    }
+
+    @TearDown
+    public void tearDown()
+    {
+        Worker.setEventPump(previous);
+    }
+
+    @Benchmark
+    public void post() throws Exception
+    {
+        SwingUtilities.invokeAndWait(post);
+    }
+
+    @Benchmark
+    public void invokeAndWait() throws Exception
+    {
+        SwingUtilities.invokeAndWait(empty);
+    }
+
+    private static class EmptyJob extends Job
+    {
+        public Object run()
+        {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,94 @@
+/**
+ * Copyright (c) 2002-2008, Simone Bordet
+ * All rights reserved.
+ *
+ * This software is distributable under the BSD license.
+ * See the terms of the BSD license in the documentation provided with this software.
+ */
+
+package foxtrot.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import foxtrot.Job;
+import foxtrot.Task;
+import foxtrot.workers.SingleWorkerThread;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the cost of reading the state of a completed {@link Task}. <br />
+ * {@link Task#isCompleted()} is read by event pumps for every event they dispatch, so it
+ * is also measured while read by several threads at once, as it happens with nested pumps
+ * and worker threads checking the same Task.
+ *
+ * @version $Revision$
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {Headless.HEADLESS})
+public class TaskStateBenchmark
+{
+    private final Task task = new EmptyJob();
+
+    @Setup
+    public void setUp() throws InterruptedException
+    {
+        SingleWorkerThread worker = new SingleWorkerThread();
+        worker.start();
+        worker.postTask(task);
+        while (!task.isCompleted()) Thread.sleep(1);
+    }
+
+    @Benchmark
+    public boolean isCompleted()
+    {
+        return task.isCompleted();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public boolean isCompletedShared()
+    {
+        return task.isCompleted();
+    }
+
+    @Benchmark
+    public boolean isCancelled()
+    {
+        return task.isCancelled();
+    }
+
+    @Benchmark
+    public int getPriority()
+    {
+        return task.getPriority();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public int getPriorityShared()
+    {
+        return task.getPriority();
+    }
+
+    private static class EmptyJob extends Job
+    {
+        public Object run()
+        {
+            return null;
+        }
+    }
+}
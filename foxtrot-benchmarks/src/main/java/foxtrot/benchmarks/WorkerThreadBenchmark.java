@@ -0,0 +1,87 @@
+/**
+ * Copyright (c) 2002-2008, Simone Bordet
+ * All rights reserved.
+ *
+ * This software is distributable under the BSD license.
+ * See the terms of the BSD license in the documentation provided with this software.
+ */
+
+package foxtrot.benchmarks;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import foxtrot.Job;
+import foxtrot.workers.MultiWorkerThread;
+import foxtrot.workers.SingleWorkerThread;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the throughput of {@link SingleWorkerThread} and {@link MultiWorkerThread}:
+ * a batch of empty Jobs is enqueued, and each operation ends when all the Jobs of
+ * the batch have been dequeued and run.
+ *
+ * @version $Revision$
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {Headless.HEADLESS})
+public class WorkerThreadBenchmark
+{
+    private static final int BATCH = 1000;
+
+    @Param({"single", "multi"})
+    public String workerThread;
+
+    private SingleWorkerThread worker;
+
+    @Setup
+    public void setUp()
+    {
+        worker = "multi".equals(workerThread) ? new MultiWorkerThread() : new SingleWorkerThread();
+        worker.start();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void enqueueDequeue() throws InterruptedException
+    {
+        CountDownLatch latch = new CountDownLatch(1);
+        AtomicInteger remaining = new AtomicInteger(BATCH);
+        for (int i = 0; i < BATCH; ++i) worker.postTask(new CountingJob(remaining, latch));
+        latch.await();
+    }
+
+    private static class CountingJob extends Job
+    {
+        private final AtomicInteger remaining;
+        private final CountDownLatch latch;
+
+        private CountingJob(AtomicInteger remaining, CountDownLatch latch)
+        {
+            this.remaining = remaining;
+            this.latch = latch;
+        }
+
+        public Object run()
+        {
+            if (remaining.decrementAndGet() == 0) latch.countDown();
+            return null;
+        }
+    }
+}
@@ -97,22 +97,22 @@ abstract class AbstractSyncWorker extends AbstractWorker
      */
     Object post(Task task, WorkerThread workerThread, EventPump eventPump) throws Exception
     {
-        boolean isEventThread = SwingUtilities.isEventDispatchThread();
-        if (!isEventThread && !workerThread.isWorkerThread())
-        {
-            throw new IllegalStateException("Method post() can be called only from the AWT Event Dispatch Thread or from a worker thread");
-        }
+        boolean isEventThread = isEventThread(workerThread);
 
         if (isEventThread)
         {
-            workerThread.postTask(task);
+            postTask(task, workerThread);
 
             // The following line blocks until the task has been executed
-            eventPump.pumpEvents(task);
+            pumpEvents(task, eventPump);
+
+            // Progress published just before completion has not been delivered yet
+            task.flushProgress();
         }
         else
         {
             // Executes the Task in this thread
+            task.posted();
             workerThread.runTask(task);
         }
 
@@ -126,15 +126,173 @@ abstract class AbstractSyncWorker extends AbstractWorker
         }
     }
 
+    /**
+     * Executes the given Task using the given workerThread and eventPump, waiting at most
+     * for the given timeout.
+     * This method blocks (while dequeuing AWT events) until the Task is finished or until the
+     * timeout expires, whichever comes first; in the latter case, the Task is cancelled if
+     * <tt>cancel</tt> is true, and a {@link TaskTimeoutException} is thrown.
+     */
+    Object post(Task task, long timeout, boolean cancel, WorkerThread workerThread, EventPump eventPump) throws Exception
+    {
+        if (timeout <= 0) throw new IllegalArgumentException("Timeout must be positive");
+
+        boolean isEventThread = isEventThread(workerThread);
+
+        Deadline deadline = new Deadline(task, cancel);
+        deadline.start(timeout);
+        try
+        {
+            if (isEventThread)
+            {
+                postTask(task, workerThread);
+
+                // The following line blocks until the task has been executed or the timeout expired
+                task.setPumping(true);
+                try
+                {
+                    pumpEvents(deadline, task, eventPump);
+                }
+                finally
+                {
+                    task.setPumping(false);
+                }
+
+                task.flushProgress();
+            }
+            else
+            {
+                // Executes the Task in this thread: it cannot be abandoned,
+                // but it is interrupted on timeout if it has to be cancelled
+                task.posted();
+                workerThread.runTask(task);
+            }
+        }
+        finally
+        {
+            deadline.stop();
+        }
+
+        if (deadline.isExpired())
+        {
+            // If the Task is still queued or running, the reset is deferred
+            // until it is done, and its result is discarded
+            task.reset();
+            throw new TaskTimeoutException("Task timed out after " + timeout + " ms: " + task);
+        }
+
+        try
+        {
+            return task.getResultOrThrow();
+        }
+        finally
+        {
+            task.reset();
+        }
+    }
+
+    /**
+     * Dispatches events with the given EventPump until the given Task is completed,
+     * recording that the event pump waits for the Task, so that it is woken up when
+     * the Task completes.
+     */
+    static void pumpEvents(Task task, EventPump eventPump)
+    {
+        pumpEvents(task, task, eventPump);
+    }
+
+    /**
+     * Dispatches events with the given EventPump until the given Task is completed,
+     * reporting to the {@link Probe} that the event pump waits for the given posted Task,
+     * which differs from the Task waited for when the post has a {@link Deadline}.
+     */
+    private static void pumpEvents(Task task, Task posted, EventPump eventPump)
+    {
+        Probe probe = Probe.current;
+        long start = probe == null ? 0 : probe.pumping(posted);
+        task.setPumping(true);
+        try
+        {
+            eventPump.pumpEvents(task);
+        }
+        finally
+        {
+            task.setPumping(false);
+            if (probe != null) probe.pumped(posted, start);
+        }
+    }
+
+    /**
+     * Posts the given Task to the given WorkerThread, marking it as pending until it is done.
+     */
+    private void postTask(Task task, WorkerThread workerThread)
+    {
+        task.posted();
+        Probe probe = Probe.current;
+        if (probe != null) probe.posted(task, workerThread);
+        try
+        {
+            workerThread.postTask(task);
+        }
+        catch (RuntimeException x)
+        {
+            if (probe != null) probe.discarded(task);
+            task.settled();
+            throw x;
+        }
+        catch (Error x)
+        {
+            if (probe != null) probe.discarded(task);
+            task.settled();
+            throw x;
+        }
+    }
+
+    /**
+     * Returns whether the current thread is the Event Dispatch Thread.
+     *
+     * @throws IllegalStateException if the current thread is neither the Event Dispatch Thread
+     *                               nor a thread of the given WorkerThread.
+     */
+    private boolean isEventThread(WorkerThread workerThread)
+    {
+        boolean isEventThread = SwingUtilities.isEventDispatchThread();
+        if (!isEventThread && !workerThread.isWorkerThread())
+        {
+            throw new IllegalStateException("Method post() can be called only from the AWT Event Dispatch Thread or from a worker thread");
+        }
+        return isEventThread;
+    }
+
     /**
      * Executes the given Job using the given workerThread and eventPump.
      * This method has the same behavior of {@link #post(Task, WorkerThread, EventPump)}
      */
     Object post(Job job, WorkerThread workerThread, EventPump eventPump)
+    {
+        return postJob(job, 0, false, workerThread, eventPump);
+    }
+
+    /**
+     * Executes the given Job using the given workerThread and eventPump, waiting at most
+     * for the given timeout.
+     * This method has the same behavior of {@link #post(Task, long, boolean, WorkerThread, EventPump)}
+     */
+    Object post(Job job, long timeout, boolean cancel, WorkerThread workerThread, EventPump eventPump)
+    {
+        if (timeout <= 0) throw new IllegalArgumentException("Timeout must be positive");
+        return postJob(job, timeout, cancel, workerThread, eventPump);
+    }
+
+    /**
+     * Executes the given Job waiting at most for the given timeout, or indefinitely if the timeout is zero.
+     */
+    private Object postJob(Job job, long timeout, boolean cancel, WorkerThread workerThread, EventPump eventPump)
     {
         try
         {
-            return post((Task)job, workerThread, eventPump);
+            if (timeout == 0) return post((Task)job, workerThread, eventPump);
+            return post((Task)job, timeout, cancel, workerThread, eventPump);
         }
         catch (RuntimeException x)
         {
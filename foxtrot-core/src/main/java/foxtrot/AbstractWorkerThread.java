@@ -11,7 +11,6 @@ package foxtrot;
 import java.io.InterruptedIOException;
 import java.security.AccessController;
 import java.security.PrivilegedActionException;
-import java.security.PrivilegedExceptionAction;
 
 /**
  * Partial implementation of the WorkerThread interface.
@@ -20,6 +19,12 @@ import java.security.PrivilegedExceptionAction;
  */
 public abstract class AbstractWorkerThread implements WorkerThread
 {
+    /**
+     * The metrics of this WorkerThread, cached so that they are found without allocating.
+     * Package protected, used by {@link MetricsCollector}
+     */
+    volatile Object metrics;
+
     /**
      * Creates a new instance of this AbstractWorkerThread, called by subclasses.
      */
@@ -27,19 +32,24 @@ public abstract class AbstractWorkerThread implements WorkerThread
     {
     }
 
-    public void runTask(final Task task)
+    public void runTask(Task task)
     {
+        Probe probe = Probe.current;
+
+        if (!task.begin())
+        {
+            if (AbstractWorker.debug) System.out.println("[AbstractWorkerThread] Skipping cancelled task " + task);
+            if (probe != null) probe.discarded(task);
+            return;
+        }
+
         if (AbstractWorker.debug) System.out.println("[AbstractWorkerThread] Executing task " + task);
 
+        long start = probe == null ? 0 : probe.started(task, this);
+
         try
         {
-            Object obj = AccessController.doPrivileged(new PrivilegedExceptionAction()
-            {
-                public Object run() throws Exception
-                {
-                    return task.run();
-                }
-            }, task.getSecurityContext());
+            Object obj = AccessController.doPrivileged(task.getAction(), task.getSecurityContext());
 
             task.setResult(obj);
         }
@@ -55,11 +65,75 @@ public abstract class AbstractWorkerThread implements WorkerThread
         }
         finally
         {
-            // Mark the task as completed
-            task.setCompleted(true);
+            if (probe != null) probe.finished(task, this, start);
 
-            if (AbstractWorker.debug) System.out.println("[AbstractWorkerThread] Completing run for task " + task);
-            task.postRun();
+            // Mark the task as completed
+            if (task.complete())
+            {
+                if (AbstractWorker.debug) System.out.println("[AbstractWorkerThread] Completing run for task " + task);
+                task.postRun();
+            }
+            else
+            {
+                // The task has been cancelled while running, and Task.cancel() already completed it.
+                // Clear the interrupt the cancellation may have caused, so that it does not affect
+                // the next tasks run by this thread
+                if (AbstractWorker.debug) System.out.println("[AbstractWorkerThread] Discarding run for cancelled task " + task);
+                Thread.interrupted();
+            }
         }
     }
+
+    /**
+     * Completes the given Task without running it, as if its <tt>run()</tt> method threw the
+     * given Throwable. <br />
+     * Implementations call this method when they cannot run a Task that has been posted,
+     * for example because it has been rejected, so that callers waiting for the Task
+     * to complete are released and notified of the failure.
+     */
+    protected void failTask(Task task, Throwable failure)
+    {
+        if (AbstractWorker.debug) System.out.println("[AbstractWorkerThread] Failing task " + task + ": " + failure);
+
+        Probe probe = Probe.current;
+        if (probe != null) probe.discarded(task);
+
+        task.setThrowable(failure);
+        if (task.complete()) task.postRun();
+    }
+
+    /**
+     * Dispatches AWT events, using the {@link Worker#getEventPump() EventPump of Worker},
+     * until the given Task is completed. <br />
+     * Implementations call this method when they need to wait in the Event Dispatch Thread
+     * without freezing the GUI, for example for space in a bounded queue.
+     * Must be called in the Event Dispatch Thread.
+     */
+    protected void pumpEvents(Task task)
+    {
+        AbstractSyncWorker.pumpEvents(task, Worker.getEventPump());
+    }
+
+    /**
+     * Records that the given Task has been enqueued by this WorkerThread. <br />
+     * Implementations that keep Tasks in a queue call this method when a Task is posted,
+     * so that if the Task is {@link Task#cancel cancelled} while waiting in the queue,
+     * {@link #removeTask} is called.
+     */
+    protected final void enqueued(Task task)
+    {
+        task.setQueue(this);
+    }
+
+    /**
+     * Removes the given cancelled Task from the queue of this WorkerThread. <br />
+     * This implementation does nothing; cancelled Tasks are anyway not run by {@link #runTask}.
+     *
+     * @return whether the Task has been removed
+     * @see #enqueued
+     */
+    protected boolean removeTask(Task task)
+    {
+        return false;
+    }
 }
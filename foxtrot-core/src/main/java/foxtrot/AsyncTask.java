@@ -8,8 +8,6 @@
 
 package foxtrot;
 
-import javax.swing.SwingUtilities;
-
 /**
  * A time-consuming task to be executed asynchronously by {@link AsyncWorker}. <br />
  * Users must implement the {@link #run} method as they would do with Task. <br />
@@ -19,7 +17,9 @@ import javax.swing.SwingUtilities;
  * its failure, respectively {@link #success(Object)} and {@link #failure(Throwable)},
  * both called in the Event Dispatch Thread when the task is finished. <br />
  * AsyncTasks cannot be reused, that is, it is not safe to pass the same instance to
- * two consecutive calls to {@link AsyncWorker#post(AsyncTask)}. <br />
+ * two consecutive calls to {@link AsyncWorker#post(AsyncTask)}; to run an AsyncTask
+ * after a delay or repeatedly, use {@link AsyncWorker#schedule(AsyncTask, long)} and
+ * the related methods. <br />
  * Example:
  * <pre>
  * AsyncTask task = new AsyncTask()
@@ -49,6 +49,64 @@ import javax.swing.SwingUtilities;
  */
 public abstract class AsyncTask extends Task
 {
+    private Object coalescingKey;
+    private Schedule schedule;
+    /**
+     * The next completed AsyncTask waiting to be delivered.
+     * Package protected, used by {@link CompletionDispatcher}
+     */
+    AsyncTask nextCompleted;
+
+    /**
+     * Returns the coalescing key of this AsyncTask, as set by {@link #setCoalescingKey}.
+     * Synchronized since the variable is accessed from 2 threads
+     * Accessed from the AWT Event Dispatch Thread.
+     */
+    public final synchronized Object getCoalescingKey()
+    {
+        return coalescingKey;
+    }
+
+    /**
+     * Sets the coalescing key of this AsyncTask. <br />
+     * When AsyncTasks with the same coalescing key are posted via {@link AsyncWorker#post(AsyncTask)},
+     * only the latest one matters: the AsyncTasks posted before it that have not started running
+     * yet are discarded, and only their {@link #cancelled()} callback is called, while if an
+     * AsyncTask with the same key is running, the most recently posted one waits for it to finish. <br />
+     * This is useful, for example, to run searches as the user types, where only the search
+     * for the latest text is relevant. <br />
+     * The coalescing key must be set before the AsyncTask is posted.
+     * Synchronized since the variable is accessed from 2 threads
+     * Accessed from the AWT Event Dispatch Thread.
+     *
+     * @see #getCoalescingKey
+     */
+    public final synchronized void setCoalescingKey(Object coalescingKey)
+    {
+        this.coalescingKey = coalescingKey;
+    }
+
+    /**
+     * Returns the {@link Schedule} that runs this AsyncTask, or null if this AsyncTask is not scheduled.
+     * Synchronized since the variable is accessed from 2 threads
+     * Accessed from the AWT Event Dispatch Thread.
+     */
+    public final synchronized Schedule getSchedule()
+    {
+        return schedule;
+    }
+
+    /**
+     * Sets the {@link Schedule} that runs this AsyncTask.
+     * Synchronized since the variable is accessed from 2 threads
+     * Package protected, used by {@link Schedule}
+     */
+    final synchronized void setSchedule(Schedule schedule)
+    {
+        if (this.schedule != null && schedule != null) throw new IllegalStateException("AsyncTask already scheduled: " + this);
+        this.schedule = schedule;
+    }
+
     /**
      * Called in the Event Dispatch Thread after this AsyncTask is finished. <br />
      * Normally there is no need to override this method, as it forwards the
@@ -91,14 +149,46 @@ public abstract class AsyncTask extends Task
      */
     public abstract void failure(Throwable x);
 
+    /**
+     * Callback called in the Event Dispatch Thread, instead of {@link #success(Object)} or
+     * {@link #failure(Throwable)}, when this AsyncTask has been {@link #cancel cancelled}
+     * or discarded because of {@link #setCoalescingKey coalescing}. <br />
+     * This implementation does nothing.
+     *
+     * @see #cancel
+     * @see #setCoalescingKey
+     */
+    public void cancelled()
+    {
+    }
+
     void postRun()
     {
-        SwingUtilities.invokeLater(new Runnable()
+        CompletionDispatcher.getInstance().dispatch(this);
+    }
+
+    /**
+     * Calls the callbacks for the completion of this AsyncTask.
+     * Called in the Event Dispatch Thread.
+     * Package protected, used by {@link CompletionDispatcher}
+     */
+    void deliver()
+    {
+        Probe probe = Probe.current;
+        long start = probe == null ? 0 : probe.delivering(this);
+        try
         {
-            public void run()
-            {
+            // Deliver the last progress before the callbacks
+            flushProgress();
+            if (isCancelled())
+                cancelled();
+            else
                 finish();
-            }
-        });
+        }
+        finally
+        {
+            if (probe != null) probe.delivered(this, start);
+            AsyncWorker.finished(this);
+        }
     }
 }
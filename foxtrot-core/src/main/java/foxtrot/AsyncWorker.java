@@ -8,6 +8,9 @@
 
 package foxtrot;
 
+import java.util.HashMap;
+import java.util.Map;
+
 import javax.swing.SwingUtilities;
 
 import foxtrot.workers.MultiWorkerThread;
@@ -61,6 +64,12 @@ public class AsyncWorker extends AbstractWorker
 {
     private static AsyncWorker instance = new AsyncWorker();
 
+    /**
+     * Maps coalescing keys to {@link Coalesced} entries.
+     * Only accessed from the Event Dispatch Thread.
+     */
+    private final Map coalesced = new HashMap();
+
     /**
      * Cannot be instantiated, use static methods only.
      */
@@ -92,11 +101,42 @@ public class AsyncWorker extends AbstractWorker
         return new MultiWorkerThread();
     }
 
+    /**
+     * Returns the maximum number of AsyncTask completions delivered by a single event
+     * in the Event Dispatch Thread.
+     *
+     * @see #setCompletionBatchSize
+     */
+    public static int getCompletionBatchSize()
+    {
+        return CompletionDispatcher.getInstance().getBatchSize();
+    }
+
+    /**
+     * Sets the maximum number of AsyncTask completions delivered by a single event in the
+     * Event Dispatch Thread. <br />
+     * Completed AsyncTasks are not delivered with one event each: they are queued, and a single
+     * event calls the callbacks of the queued AsyncTasks in the order they completed, up to
+     * this number; the remaining ones are delivered by a subsequent event, so that when many
+     * AsyncTasks complete together the user input is still processed in between.
+     * The default is 64.
+     *
+     * @throws IllegalArgumentException If the batch size is not positive
+     */
+    public static void setCompletionBatchSize(int batchSize)
+    {
+        CompletionDispatcher.getInstance().setBatchSize(batchSize);
+    }
+
     /**
      * Executes asynchronously the given AsyncTask in a worker thread. <br />
      * This method returns immediately; when the AsyncTask is finished,
      * its {@link AsyncTask#finish()} method will be called in the Event Dispatch
-     * Thread.
+     * Thread. <br />
+     * If the AsyncTask has a {@link AsyncTask#setCoalescingKey coalescing key} and another
+     * AsyncTask with the same key has been posted but has not started running yet, the other
+     * AsyncTask is discarded; if the other AsyncTask is running, the given AsyncTask is run when
+     * the other is finished, unless a more recent AsyncTask with the same key is posted in the meantime.
      *
      * @param task
      */
@@ -112,6 +152,194 @@ public class AsyncWorker extends AbstractWorker
         {
             throw new IllegalStateException("AsyncWorker.post() can be called only from the AWT Event Dispatch Thread");
         }
-        workerThread.postTask(task);
+
+        Object key = task.getCoalescingKey();
+        if (key != null)
+        {
+            Coalesced entry = (Coalesced)coalesced.get(key);
+            if (entry != null)
+            {
+                AsyncTask posted = entry.running;
+                if (posted.withdraw())
+                {
+                    // The WorkerThread did not start the task with the same key yet, replace it;
+                    // when a task is waiting, the running one has started, so none is waiting here
+                    if (debug) System.out.println("[AsyncWorker] Coalesced task " + posted + " into " + task);
+                    try
+                    {
+                        postTask(task, workerThread);
+                    }
+                    catch (RuntimeException x)
+                    {
+                        coalesced.remove(key);
+                        throw x;
+                    }
+                    entry.running = task;
+                    return;
+                }
+
+                // A task with the same key is running, replace the waiting one
+                AsyncTask replaced = entry.waiting;
+                entry.waiting = task;
+                if (replaced != null)
+                {
+                    if (debug) System.out.println("[AsyncWorker] Coalesced task " + replaced + " into " + task);
+                    replaced.cancel(false);
+                }
+                return;
+            }
+        }
+
+        postTask(task, workerThread);
+        if (key != null) coalesced.put(key, new Coalesced(task));
+    }
+
+    /**
+     * Schedules the given AsyncTask to be {@link #post(AsyncTask) posted} once, after the given delay. <br />
+     * This method can be called from any thread; the AsyncTask is posted from the Event Dispatch Thread.
+     * All scheduled AsyncTasks share a single timer thread.
+     *
+     * @param task  The AsyncTask to schedule
+     * @param delay The delay before the AsyncTask is posted, in milliseconds
+     * @return the Schedule of the AsyncTask, that can be used to cancel it
+     * @throws IllegalArgumentException If the delay is negative
+     * @throws IllegalStateException    If the AsyncTask is already scheduled
+     * @see Schedule
+     */
+    public static Schedule schedule(AsyncTask task, long delay)
+    {
+        if (delay < 0) throw new IllegalArgumentException("Delay cannot be negative");
+        return schedule(task, delay, 0, false);
+    }
+
+    /**
+     * Schedules the given AsyncTask to be {@link #post(AsyncTask) posted} repeatedly, first after the
+     * given initial delay, and then after the given delay has elapsed since the previous run finished. <br />
+     * This method can be called from any thread; the AsyncTask is posted from the Event Dispatch Thread.
+     *
+     * @param task         The AsyncTask to schedule
+     * @param initialDelay The delay before the first run, in milliseconds
+     * @param delay        The delay between the end of a run and the start of the next one, in milliseconds
+     * @return the Schedule of the AsyncTask, that can be used to cancel it or to configure back-off
+     * @throws IllegalArgumentException If the initial delay is negative or the delay is not positive
+     * @throws IllegalStateException    If the AsyncTask is already scheduled
+     * @see Schedule
+     */
+    public static Schedule scheduleWithFixedDelay(AsyncTask task, long initialDelay, long delay)
+    {
+        if (initialDelay < 0) throw new IllegalArgumentException("Initial delay cannot be negative");
+        if (delay <= 0) throw new IllegalArgumentException("Delay must be positive");
+        return schedule(task, initialDelay, delay, false);
+    }
+
+    /**
+     * Schedules the given AsyncTask to be {@link #post(AsyncTask) posted} repeatedly, first after the
+     * given initial delay, and then every period. <br />
+     * If a run is still in progress when the next one is due, the next run is skipped.
+     * This method can be called from any thread; the AsyncTask is posted from the Event Dispatch Thread.
+     *
+     * @param task         The AsyncTask to schedule
+     * @param initialDelay The delay before the first run, in milliseconds
+     * @param period       The period between the start of consecutive runs, in milliseconds
+     * @return the Schedule of the AsyncTask, that can be used to cancel it or to configure back-off
+     * @throws IllegalArgumentException If the initial delay is negative or the period is not positive
+     * @throws IllegalStateException    If the AsyncTask is already scheduled
+     * @see Schedule
+     */
+    public static Schedule scheduleAtFixedRate(AsyncTask task, long initialDelay, long period)
+    {
+        if (initialDelay < 0) throw new IllegalArgumentException("Initial delay cannot be negative");
+        if (period <= 0) throw new IllegalArgumentException("Period must be positive");
+        return schedule(task, initialDelay, period, true);
+    }
+
+    private static Schedule schedule(AsyncTask task, long initialDelay, long period, boolean fixedRate)
+    {
+        Schedule schedule = new Schedule(task, period, fixedRate);
+        schedule.start(initialDelay);
+        if (debug) System.out.println("[AsyncWorker] Scheduled task " + task + " after " + initialDelay + " ms");
+        return schedule;
+    }
+
+    /**
+     * Called in the Event Dispatch Thread when the given AsyncTask is finished,
+     * to post the AsyncTask with the same coalescing key that is waiting, if any,
+     * and to schedule the next run of the AsyncTask, if it is scheduled.
+     */
+    static void finished(AsyncTask task)
+    {
+        try
+        {
+            instance.finished(task, getWorkerThread());
+        }
+        finally
+        {
+            Schedule schedule = task.getSchedule();
+            if (schedule != null) schedule.finished();
+        }
+    }
+
+    private void finished(AsyncTask task, WorkerThread workerThread)
+    {
+        Object key = task.getCoalescingKey();
+        if (key == null) return;
+        Coalesced entry = (Coalesced)coalesced.get(key);
+        if (entry == null) return;
+        if (entry.waiting == task)
+        {
+            // The waiting task has been cancelled
+            entry.waiting = null;
+            return;
+        }
+        if (entry.running != task) return;
+
+        if (entry.waiting == null)
+        {
+            coalesced.remove(key);
+        }
+        else
+        {
+            entry.running = entry.waiting;
+            entry.waiting = null;
+            try
+            {
+                postTask(entry.running, workerThread);
+            }
+            catch (RuntimeException x)
+            {
+                coalesced.remove(key);
+                // Complete the waiting task with the failure, so that its callbacks are called
+                AsyncTask waiting = entry.running;
+                waiting.setThrowable(x);
+                if (waiting.complete()) waiting.postRun();
+                throw x;
+            }
+        }
+    }
+
+    private void postTask(AsyncTask task, WorkerThread workerThread)
+    {
+        Probe probe = Probe.current;
+        if (probe != null) probe.posted(task, workerThread);
+        try
+        {
+            workerThread.postTask(task);
+        }
+        catch (RuntimeException x)
+        {
+            if (probe != null) probe.discarded(task);
+            throw x;
+        }
+    }
+
+    private static class Coalesced
+    {
+        private AsyncTask running;
+        private AsyncTask waiting;
+
+        private Coalesced(AsyncTask running)
+        {
+            this.running = running;
+        }
     }
 }
@@ -0,0 +1,144 @@
+/**
+ * Copyright (c) 2002-2008, Simone Bordet
+ * All rights reserved.
+ *
+ * This software is distributable under the BSD license.
+ * See the terms of the BSD license in the documentation provided with this software.
+ */
+
+package foxtrot;
+
+import javax.swing.SwingUtilities;
+
+/**
+ * Delivers the completions of {@link AsyncTask}s to the Event Dispatch Thread in batches. <br />
+ * Instead of posting one event on the AWT Event Queue for every completed AsyncTask, completed
+ * AsyncTasks are queued and a single event drains the queue, delivering the completions in the
+ * order the AsyncTasks completed. <br />
+ * At most {@link #getBatchSize() batch size} completions are delivered by one event: if more
+ * are queued, another event is posted to deliver them, so that input and paint events that
+ * have been queued in the meantime are dispatched in between.
+ *
+ * @version $Revision$
+ */
+final class CompletionDispatcher implements Runnable
+{
+    private static final CompletionDispatcher instance = new CompletionDispatcher();
+
+    private AsyncTask head;
+    private AsyncTask tail;
+    private boolean scheduled;
+    private int batchSize = 64;
+
+    private CompletionDispatcher()
+    {
+    }
+
+    static CompletionDispatcher getInstance()
+    {
+        return instance;
+    }
+
+    synchronized int getBatchSize()
+    {
+        return batchSize;
+    }
+
+    synchronized void setBatchSize(int batchSize)
+    {
+        if (batchSize <= 0) throw new IllegalArgumentException("Batch size must be positive");
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Queues the given completed AsyncTask, posting an event to deliver it
+     * if one is not already posted.
+     * Called from worker threads.
+     */
+    void dispatch(AsyncTask task)
+    {
+        synchronized (this)
+        {
+            task.nextCompleted = null;
+            if (tail == null)
+                head = task;
+            else
+                tail.nextCompleted = task;
+            tail = task;
+            if (scheduled) return;
+            scheduled = true;
+        }
+        SwingUtilities.invokeLater(this);
+    }
+
+    /**
+     * Delivers at most {@link #getBatchSize() batch size} completions.
+     * Called in the Event Dispatch Thread.
+     */
+    public void run()
+    {
+        int limit = getBatchSize();
+        AsyncTask batch;
+        boolean more;
+        synchronized (this)
+        {
+            // Detach the batch from the queue before delivering it, so that completions
+            // that happen while callbacks run, possibly pumping events via Worker.post(),
+            // post a new event instead of waiting for this one to finish
+            batch = head;
+            AsyncTask last = null;
+            for (int i = 0; i < limit && head != null; ++i)
+            {
+                last = head;
+                head = head.nextCompleted;
+            }
+            if (last != null) last.nextCompleted = null;
+            if (head == null) tail = null;
+            more = head != null;
+            scheduled = more;
+        }
+        if (more)
+        {
+            if (AbstractWorker.debug) System.out.println("[CompletionDispatcher] More than " + limit + " completions queued, yielding");
+            SwingUtilities.invokeLater(this);
+        }
+
+        while (batch != null)
+        {
+            AsyncTask task = batch;
+            batch = task.nextCompleted;
+            task.nextCompleted = null;
+
+            boolean delivered = false;
+            try
+            {
+                task.deliver();
+                delivered = true;
+            }
+            finally
+            {
+                // If a callback throws, let the exception reach the Event Dispatch
+                // Thread as usual, but deliver the rest of the batch later
+                if (!delivered && batch != null) requeue(batch);
+            }
+        }
+    }
+
+    /**
+     * Puts back the given completions at the head of the queue.
+     */
+    private void requeue(AsyncTask batch)
+    {
+        synchronized (this)
+        {
+            AsyncTask last = batch;
+            while (last.nextCompleted != null) last = last.nextCompleted;
+            last.nextCompleted = head;
+            if (head == null) tail = last;
+            head = batch;
+            if (scheduled) return;
+            scheduled = true;
+        }
+        SwingUtilities.invokeLater(this);
+    }
+}
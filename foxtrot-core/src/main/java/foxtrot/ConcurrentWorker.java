@@ -112,4 +112,22 @@ public class ConcurrentWorker extends AbstractSyncWorker
     {
         return instance.post(job, getWorkerThread(), getEventPump());
     }
+
+    /**
+     * @see Worker#post(Task, long, boolean)
+     * @see #post(Job, long, boolean)
+     */
+    public static Object post(Task task, long timeout, boolean cancel) throws Exception
+    {
+        return instance.post(task, timeout, cancel, getWorkerThread(), getEventPump());
+    }
+
+    /**
+     * @see Worker#post(Job, long, boolean)
+     * @see #post(Task, long, boolean)
+     */
+    public static Object post(Job job, long timeout, boolean cancel)
+    {
+        return instance.post(job, timeout, cancel, getWorkerThread(), getEventPump());
+    }
 }
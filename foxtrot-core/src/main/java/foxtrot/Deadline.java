@@ -0,0 +1,96 @@
+/**
+ * Copyright (c) 2002-2008, Simone Bordet
+ * All rights reserved.
+ *
+ * This software is distributable under the BSD license.
+ * See the terms of the BSD license in the documentation provided with this software.
+ */
+
+package foxtrot;
+
+/**
+ * A Task that is never run, but is completed either when the Task it is attached to
+ * completes, or when a timeout expires, whichever comes first. <br />
+ * It is passed to the {@link EventPump} in place of the posted Task, so that events are
+ * pumped at most until the timeout expires.
+ *
+ * @version $Revision$
+ * @see AbstractSyncWorker#post(Task, long, boolean, WorkerThread, EventPump)
+ */
+final class Deadline extends Task
+{
+    private final Task task;
+    private final boolean cancel;
+    private boolean expired;
+    private Scheduler.Entry timeout;
+
+    /**
+     * Creates a new Deadline for the given Task.
+     *
+     * @param task   The Task whose completion completes this Deadline
+     * @param cancel Whether the Task is cancelled when the timeout expires
+     */
+    Deadline(Task task, boolean cancel)
+    {
+        this.task = task;
+        this.cancel = cancel;
+    }
+
+    public Object run()
+    {
+        throw new IllegalStateException("Deadline cannot be run");
+    }
+
+    /**
+     * Attaches this Deadline to its Task and starts the timeout.
+     */
+    void start(long delay)
+    {
+        task.setDeadline(this);
+        timeout = Scheduler.getInstance().schedule(new Runnable()
+        {
+            public void run()
+            {
+                expire();
+            }
+        }, delay);
+    }
+
+    /**
+     * Stops the timeout, if it has not expired yet.
+     */
+    void stop()
+    {
+        Scheduler.getInstance().cancel(timeout);
+    }
+
+    /**
+     * Returns whether the timeout expired before the Task completed.
+     */
+    synchronized boolean isExpired()
+    {
+        return expired;
+    }
+
+    /**
+     * Called from the scheduler thread when the timeout expires.
+     */
+    private void expire()
+    {
+        synchronized (this)
+        {
+            if (isCompleted()) return;
+            expired = true;
+            setCompleted(true);
+        }
+
+        if (AbstractWorker.debug) System.out.println("[Deadline] Timeout expired for task " + task);
+
+        if (cancel)
+        {
+            // Cancelling the Task also wakes up the event pump
+            if (task.cancel(true)) return;
+        }
+        postRun();
+    }
+}
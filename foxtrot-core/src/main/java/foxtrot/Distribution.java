@@ -0,0 +1,93 @@
+/**
+ * Copyright (c) 2002-2008, Simone Bordet
+ * All rights reserved.
+ *
+ * This software is distributable under the BSD license.
+ * See the terms of the BSD license in the documentation provided with this software.
+ */
+
+package foxtrot;
+
+/**
+ * A snapshot of the distribution of a measured quantity, such as a duration or a count,
+ * as reported by {@link MetricsMXBean}. <br />
+ * Percentiles are approximated, with an error of at most 25%.
+ *
+ * @version $Revision$
+ */
+public final class Distribution
+{
+    private final long count;
+    private final double mean;
+    private final long median;
+    private final long percentile90;
+    private final long percentile99;
+    private final long maximum;
+
+    /**
+     * Creates a new Distribution.
+     * Package protected, used by {@link Histogram}
+     */
+    Distribution(long count, double mean, long median, long percentile90, long percentile99, long maximum)
+    {
+        this.count = count;
+        this.mean = mean;
+        this.median = median;
+        this.percentile90 = percentile90;
+        this.percentile99 = percentile99;
+        this.maximum = maximum;
+    }
+
+    /**
+     * Returns the number of measured values.
+     */
+    public long getCount()
+    {
+        return count;
+    }
+
+    /**
+     * Returns the mean of the measured values.
+     */
+    public double getMean()
+    {
+        return mean;
+    }
+
+    /**
+     * Returns the median of the measured values.
+     */
+    public long getMedian()
+    {
+        return median;
+    }
+
+    /**
+     * Returns the 90th percentile of the measured values.
+     */
+    public long getPercentile90()
+    {
+        return percentile90;
+    }
+
+    /**
+     * Returns the 99th percentile of the measured values.
+     */
+    public long getPercentile99()
+    {
+        return percentile99;
+    }
+
+    /**
+     * Returns the maximum of the measured values.
+     */
+    public long getMaximum()
+    {
+        return maximum;
+    }
+
+    public String toString()
+    {
+        return "count=" + count + ", mean=" + mean + ", median=" + median + ", p90=" + percentile90 + ", p99=" + percentile99 + ", max=" + maximum;
+    }
+}
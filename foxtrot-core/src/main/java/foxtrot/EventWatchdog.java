@@ -0,0 +1,178 @@
+/**
+ * Copyright (c) 2002-2008, Simone Bordet
+ * All rights reserved.
+ *
+ * This software is distributable under the BSD license.
+ * See the terms of the BSD license in the documentation provided with this software.
+ */
+
+package foxtrot;
+
+import java.awt.AWTEvent;
+
+/**
+ * Detects events that take too long to be dispatched while an {@link EventPump} is waiting
+ * for a Task, and reports them to a {@link StallListener} together with the stack trace of
+ * the Event Dispatch Thread. <br />
+ * The dispatch of an event is measured from when the event pump dispatches it, to when the
+ * event pump gets back control or a nested event pump dispatches another event. <br />
+ * The Event Dispatch Thread only records the start of each dispatch, without allocating
+ * objects; a single daemon thread samples the current dispatch every quarter of the threshold,
+ * so that stalls are reported at most 25% later than the threshold. An event is reported
+ * at most once, however long it stalls. <br />
+ * Usage:
+ * <pre>
+ * EventWatchdog watchdog = new EventWatchdog(500, new StallListener()
+ * {
+ *     public void eventStalled(AWTEvent event, long duration, StackTraceElement[] stackTrace)
+ *     {
+ *         ...
+ *     }
+ * });
+ * watchdog.start();
+ * </pre>
+ * This class requires JDK 5, and is loaded only when explicitly used.
+ *
+ * @version $Revision$
+ * @see Probe
+ */
+public final class EventWatchdog extends Probe implements Runnable
+{
+    private final long threshold;
+    private final StallListener listener;
+    // Odd while an event is being dispatched; fields are written only while it is even,
+    // so that the sampler thread can detect whether it read them consistently
+    private volatile long sequence;
+    private volatile Thread eventThread;
+    private volatile AWTEvent event;
+    private volatile long startTime;
+    private Thread thread;
+
+    /**
+     * Creates a new EventWatchdog; it must be {@link #start started} to detect stalls.
+     *
+     * @param threshold The dispatch duration above which an event is reported, in milliseconds
+     * @param listener  The listener notified of stalled events
+     * @throws IllegalArgumentException If the threshold is not positive, or the listener is null
+     */
+    public EventWatchdog(long threshold, StallListener listener)
+    {
+        if (threshold <= 0) throw new IllegalArgumentException("Threshold must be positive");
+        if (listener == null) throw new IllegalArgumentException("StallListener cannot be null");
+        this.threshold = threshold;
+        this.listener = listener;
+    }
+
+    /**
+     * Returns the dispatch duration above which an event is reported, in milliseconds.
+     */
+    public long getThreshold()
+    {
+        return threshold;
+    }
+
+    /**
+     * Installs this EventWatchdog and starts its thread; does nothing if it is already started.
+     *
+     * @see #stop()
+     */
+    public synchronized void start()
+    {
+        if (thread != null) return;
+        thread = new Thread(this, "Foxtrot Watchdog Thread");
+        thread.setDaemon(true);
+        thread.start();
+        Probe.install(this);
+        if (AbstractWorker.debug) System.out.println("[EventWatchdog] Started " + thread);
+    }
+
+    /**
+     * Uninstalls this EventWatchdog and stops its thread; does nothing if it is not started.
+     *
+     * @see #start()
+     */
+    public synchronized void stop()
+    {
+        if (thread == null) return;
+        Probe.uninstall(this);
+        thread.interrupt();
+        thread = null;
+        if (AbstractWorker.debug) System.out.println("[EventWatchdog] Stopped");
+    }
+
+    /**
+     * Returns whether this EventWatchdog is started.
+     * Synchronized since the variable is accessed from 2 threads
+     */
+    public synchronized boolean isStarted()
+    {
+        return thread != null;
+    }
+
+    protected void eventStarted(AWTEvent event)
+    {
+        long s = sequence;
+        // A nested event pump dispatches another event: the previous dispatch is not stalled
+        if ((s & 1) != 0) sequence = ++s;
+        Thread current = Thread.currentThread();
+        if (eventThread != current) eventThread = current;
+        this.event = event;
+        startTime = System.nanoTime();
+        sequence = s + 1;
+    }
+
+    protected void eventFinished()
+    {
+        long s = sequence;
+        if ((s & 1) == 0) return;
+        sequence = s + 1;
+        // Do not retain the event after its dispatch
+        event = null;
+    }
+
+    public void run()
+    {
+        long period = Math.max(1, threshold / 4);
+        long thresholdNanos = threshold * 1000000L;
+        long reported = 0;
+        while (true)
+        {
+            synchronized (this)
+            {
+                if (thread != Thread.currentThread()) break;
+            }
+
+            try
+            {
+                Thread.sleep(period);
+            }
+            catch (InterruptedException x)
+            {
+                // Stopped
+                continue;
+            }
+
+            long s = sequence;
+            if ((s & 1) == 0 || s == reported) continue;
+            long duration = System.nanoTime() - startTime;
+            if (duration < thresholdNanos) continue;
+            Thread edt = eventThread;
+            AWTEvent stalled = event;
+            StackTraceElement[] stackTrace = edt.getStackTrace();
+            // The dispatch may have finished while capturing the stack trace
+            if (sequence != s) continue;
+            reported = s;
+
+            if (AbstractWorker.debug) System.out.println("[EventWatchdog] Event stalled for " + (duration / 1000000L) + " ms: " + stalled);
+            try
+            {
+                listener.eventStalled(stalled, duration / 1000000L, stackTrace);
+            }
+            catch (Throwable x)
+            {
+                System.err.println("[EventWatchdog] Exception occurred in listener " + listener);
+                x.printStackTrace();
+            }
+        }
+    }
+}
@@ -0,0 +1,98 @@
+/**
+ * Copyright (c) 2002-2008, Simone Bordet
+ * All rights reserved.
+ *
+ * This software is distributable under the BSD license.
+ * See the terms of the BSD license in the documentation provided with this software.
+ */
+
+package foxtrot;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A histogram of non negative values that records without allocating and without locking. <br />
+ * Values are counted in logarithmic buckets, four per power of two, so that percentiles are
+ * reported with an error of at most 25%; count and sum use striped counters, so that threads
+ * recording concurrently do not contend.
+ *
+ * @version $Revision$
+ * @see Metrics
+ */
+final class Histogram
+{
+    private static final int SUB_BUCKETS = 4;
+    private static final int BUCKETS = 64 * SUB_BUCKETS;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Records the given value; negative values are recorded as zero.
+     */
+    void record(long value)
+    {
+        if (value < 0) value = 0;
+        buckets.incrementAndGet(bucket(value));
+        count.increment();
+        sum.add(value);
+        // The maximum is rarely updated, so the compare and set seldom retries
+        long current = max.get();
+        while (value > current && !max.compareAndSet(current, value)) current = max.get();
+    }
+
+    private static int bucket(long value)
+    {
+        if (value < SUB_BUCKETS) return (int)value;
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int fraction = (int)(value >>> (exponent - 2)) & (SUB_BUCKETS - 1);
+        return (exponent - 1) * SUB_BUCKETS + fraction;
+    }
+
+    /**
+     * Returns the highest value that falls in the given bucket.
+     */
+    private static long upperBound(int bucket)
+    {
+        if (bucket < SUB_BUCKETS) return bucket;
+        int exponent = bucket / SUB_BUCKETS + 1;
+        long fraction = bucket % SUB_BUCKETS;
+        long bound = ((SUB_BUCKETS + fraction + 1) << (exponent - 2)) - 1;
+        return bound < 0 ? Long.MAX_VALUE : bound;
+    }
+
+    /**
+     * Returns a snapshot of this histogram, dividing the values by the given scale.
+     */
+    Distribution snapshot(long scale)
+    {
+        long[] counts = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; ++i)
+        {
+            counts[i] = buckets.get(i);
+            total += counts[i];
+        }
+        long n = count.sum();
+        double mean = n == 0 ? 0 : (double)sum.sum() / n / scale;
+        return new Distribution(n, mean, percentile(counts, total, 0.5) / scale, percentile(counts, total, 0.9) / scale, percentile(counts, total, 0.99) / scale, max.get() / scale);
+    }
+
+    private long percentile(long[] counts, long total, double percentile)
+    {
+        if (total == 0) return 0;
+        long max = this.max.get();
+        long rank = (long)Math.ceil(total * percentile);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; ++i)
+        {
+            seen += counts[i];
+            if (seen >= rank) return Math.min(upperBound(i), max);
+        }
+        return max;
+    }
+}
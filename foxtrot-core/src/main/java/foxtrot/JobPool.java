@@ -0,0 +1,145 @@
+/**
+ * Copyright (c) 2002-2008, Simone Bordet
+ * All rights reserved.
+ *
+ * This software is distributable under the BSD license.
+ * See the terms of the BSD license in the documentation provided with this software.
+ */
+
+package foxtrot;
+
+/**
+ * A pool of {@link RecyclableJob}s, to avoid allocating a new Job for every post when
+ * Jobs are posted at high rates. <br />
+ * Subclasses implement {@link #newJob()} to create the Jobs of the pool:
+ * <pre>
+ * JobPool pool = new JobPool(16)
+ * {
+ *     protected RecyclableJob newJob()
+ *     {
+ *         return new LoadJob();
+ *     }
+ * };
+ * <p/>
+ * LoadJob job = (LoadJob)pool.acquire();
+ * try
+ * {
+ *     job.setKey(key);
+ *     Object result = Worker.post(job);
+ * }
+ * finally
+ * {
+ *     pool.release(job);
+ * }
+ * </pre>
+ * The reuse guarantees are the following:
+ * <ul>
+ * <li>a Job returned by {@link #acquire()} is not in use: it is not queued nor running, and
+ * its result and failure have been cleared, as for a new Job;</li>
+ * <li>a Job is reused only after it is {@link #release released}, so it must not be used
+ * after it has been released;</li>
+ * <li>a Job that is released while it is still queued or running, because it has been
+ * {@link Task#cancel cancelled} or it timed out, is not put back in the pool, but discarded;</li>
+ * <li>Jobs run with the security context that was active when they were created by
+ * {@link #newJob()}, not when they were acquired.</li>
+ * </ul>
+ * Pooled Jobs are kept until the pool reaches its maximum size, after which released Jobs
+ * are discarded. This class is thread safe.
+ *
+ * @version $Revision$
+ * @see RecyclableJob
+ */
+public abstract class JobPool
+{
+    private final RecyclableJob[] jobs;
+    private int size;
+
+    /**
+     * Creates a new JobPool that keeps at most the given number of idle Jobs.
+     *
+     * @throws IllegalArgumentException If the maximum size is not positive
+     */
+    protected JobPool(int maximumSize)
+    {
+        if (maximumSize <= 0) throw new IllegalArgumentException("Maximum pool size must be positive");
+        jobs = new RecyclableJob[maximumSize];
+    }
+
+    /**
+     * Creates a new RecyclableJob for this pool, called when the pool is empty.
+     */
+    protected abstract RecyclableJob newJob();
+
+    /**
+     * Returns an idle Job from this pool, or a new Job if this pool is empty.
+     */
+    public RecyclableJob acquire()
+    {
+        RecyclableJob job = null;
+        synchronized (this)
+        {
+            if (size > 0)
+            {
+                job = jobs[--size];
+                jobs[size] = null;
+            }
+        }
+
+        if (job == null)
+        {
+            job = newJob();
+            if (job == null) throw new IllegalStateException("JobPool " + this + " created a null Job");
+            if (job.getPool() != null) throw new IllegalStateException("Job " + job + " already belongs to a pool");
+            job.setPool(this);
+            if (AbstractWorker.debug) System.out.println("[JobPool] Created job " + job);
+        }
+        job.markAcquired();
+        return job;
+    }
+
+    /**
+     * Returns the given Job to this pool, to be reused by subsequent calls to {@link #acquire()}. <br />
+     * The Job is {@link RecyclableJob#recycle() recycled} first; if it is still queued or running,
+     * or this pool is full, it is discarded. <br />
+     * A Job can be released only once: a discarded Job is never acquired again, so releasing
+     * it again always fails.
+     *
+     * @return whether the Job has been put back in the pool
+     * @throws IllegalArgumentException If the Job does not belong to this pool
+     * @throws IllegalStateException    If the Job has already been released
+     */
+    public boolean release(RecyclableJob job)
+    {
+        if (job.getPool() != this) throw new IllegalArgumentException("Job " + job + " does not belong to pool " + this);
+        // Check and mark atomically, so that the same Job is never put twice in the pool
+        if (!job.markReleased()) throw new IllegalStateException("Job " + job + " already released");
+
+        // A Job still in use must not be reused: it is left to the garbage collector
+        if (!job.isIdle())
+        {
+            if (AbstractWorker.debug) System.out.println("[JobPool] Discarding job in use " + job);
+            return false;
+        }
+
+        job.recycle();
+        job.reset();
+
+        synchronized (this)
+        {
+            if (size < jobs.length)
+            {
+                jobs[size++] = job;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the number of idle Jobs in this pool.
+     */
+    public synchronized int getSize()
+    {
+        return size;
+    }
+}
@@ -0,0 +1,110 @@
+/**
+ * Copyright (c) 2002-2008, Simone Bordet
+ * All rights reserved.
+ *
+ * This software is distributable under the BSD license.
+ * See the terms of the BSD license in the documentation provided with this software.
+ */
+
+package foxtrot;
+
+import javax.management.JMException;
+
+/**
+ * Collects metrics about Foxtrot: the queue depth, enqueue rate and queue wait time of
+ * {@link WorkerThread}s, the execution time of Tasks per Task class, the duration and the
+ * number of events dispatched while waiting for a Task, and the nesting depth of calls to
+ * <tt>post()</tt>. <br />
+ * Metrics are disabled by default, and cost a single field read per measure point while
+ * disabled. When enabled, metrics are recorded by a {@link Probe}, without locks and without
+ * allocation in the hot paths, and are published through JMX by {@link #registerMBean()}. <br />
+ * Setting the system property <tt>foxtrot.metrics</tt> to <tt>true</tt> enables metrics and
+ * registers the MBean the first time Foxtrot is used. <br />
+ * Collecting metrics requires JDK 8; this class is loaded also when metrics are disabled,
+ * but the classes that collect metrics are loaded only when metrics are enabled.
+ *
+ * @version $Revision$
+ * @see MetricsMXBean
+ */
+public final class Metrics
+{
+    /**
+     * The current collector, or null if metrics are disabled.
+     * Package protected, used by {@link MetricsBean}
+     */
+    static volatile MetricsCollector collector;
+
+    private static boolean registered;
+
+    static
+    {
+        try
+        {
+            if (Boolean.getBoolean("foxtrot.metrics"))
+            {
+                setEnabled(true);
+                registerMBean();
+            }
+        }
+        catch (Throwable x)
+        {
+            System.err.println("[Metrics] Could not enable metrics");
+            x.printStackTrace();
+        }
+    }
+
+    private Metrics()
+    {
+    }
+
+    /**
+     * Returns whether metrics are collected.
+     */
+    public static boolean isEnabled()
+    {
+        return collector != null;
+    }
+
+    /**
+     * Enables or disables the collection of metrics; disabling discards the metrics collected so far.
+     */
+    public static synchronized void setEnabled(boolean enabled)
+    {
+        if (enabled == isEnabled()) return;
+        if (enabled)
+        {
+            collector = new MetricsCollector();
+            Probe.install(collector);
+        }
+        else
+        {
+            Probe.uninstall(collector);
+            collector.close();
+            collector = null;
+        }
+        if (AbstractWorker.debug) System.out.println("[Metrics] Metrics " + (enabled ? "enabled" : "disabled"));
+    }
+
+    /**
+     * Discards the metrics collected so far, if metrics are enabled.
+     */
+    public static synchronized void reset()
+    {
+        if (!isEnabled()) return;
+        setEnabled(false);
+        setEnabled(true);
+    }
+
+    /**
+     * Registers the {@link MetricsMXBean} with the platform MBeanServer, with the name
+     * <tt>foxtrot:type=Metrics</tt>; does nothing if it is already registered.
+     *
+     * @throws JMException If the registration fails
+     */
+    public static synchronized void registerMBean() throws JMException
+    {
+        if (registered) return;
+        MetricsBean.register();
+        registered = true;
+    }
+}
@@ -0,0 +1,83 @@
+/**
+ * Copyright (c) 2002-2008, Simone Bordet
+ * All rights reserved.
+ *
+ * This software is distributable under the BSD license.
+ * See the terms of the BSD license in the documentation provided with this software.
+ */
+
+package foxtrot;
+
+import java.lang.management.ManagementFactory;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Implementation of {@link MetricsMXBean} that reads the current {@link MetricsCollector}.
+ *
+ * @version $Revision$
+ */
+final class MetricsBean implements MetricsMXBean
+{
+    private static final Distribution EMPTY = new Distribution(0, 0, 0, 0, 0, 0);
+
+    /**
+     * Registers a new MetricsBean with the platform MBeanServer.
+     */
+    static void register() throws JMException
+    {
+        ManagementFactory.getPlatformMBeanServer().registerMBean(new MetricsBean(), new ObjectName("foxtrot:type=Metrics"));
+        if (AbstractWorker.debug) System.out.println("[MetricsBean] Registered MBean");
+    }
+
+    public boolean isEnabled()
+    {
+        return Metrics.isEnabled();
+    }
+
+    public void setEnabled(boolean enabled)
+    {
+        Metrics.setEnabled(enabled);
+    }
+
+    public WorkerThreadMetrics[] getWorkerThreads()
+    {
+        MetricsCollector metrics = Metrics.collector;
+        return metrics == null ? new WorkerThreadMetrics[0] : metrics.getWorkerThreads();
+    }
+
+    public TaskMetrics[] getTasks()
+    {
+        MetricsCollector metrics = Metrics.collector;
+        return metrics == null ? new TaskMetrics[0] : metrics.getTasks();
+    }
+
+    public Distribution getPumpDuration()
+    {
+        MetricsCollector metrics = Metrics.collector;
+        return metrics == null ? EMPTY : metrics.getPumpDuration();
+    }
+
+    public Distribution getPumpEvents()
+    {
+        MetricsCollector metrics = Metrics.collector;
+        return metrics == null ? EMPTY : metrics.getPumpEvents();
+    }
+
+    public Distribution getPostNestingDepth()
+    {
+        MetricsCollector metrics = Metrics.collector;
+        return metrics == null ? EMPTY : metrics.getPostNestingDepth();
+    }
+
+    public int getCurrentPostNestingDepth()
+    {
+        return Metrics.isEnabled() ? Probe.getDepth() : 0;
+    }
+
+    public void reset()
+    {
+        Metrics.reset();
+    }
+}
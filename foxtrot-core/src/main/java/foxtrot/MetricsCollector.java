@@ -0,0 +1,227 @@
+/**
+ * Copyright (c) 2002-2008, Simone Bordet
+ * All rights reserved.
+ *
+ * This software is distributable under the BSD license.
+ * See the terms of the BSD license in the documentation provided with this software.
+ */
+
+package foxtrot;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The {@link Probe} that records the {@link Metrics} while they are enabled. <br />
+ * Worker thread measures use striped counters and lock-free histograms; event pump measures
+ * are recorded only in the Event Dispatch Thread. <br />
+ * WorkerThreads are referenced weakly, so that their metrics are discarded when they are
+ * garbage collected.
+ *
+ * @version $Revision$
+ */
+final class MetricsCollector extends Probe
+{
+    private static final long MICROS = 1000;
+
+    private final ConcurrentHashMap queues = new ConcurrentHashMap();
+    private final ReferenceQueue collected = new ReferenceQueue();
+    private final ConcurrentHashMap executions = new ConcurrentHashMap();
+    private final Histogram pumpDuration = new Histogram();
+    private final Histogram pumpEvents = new Histogram();
+    private final Histogram nesting = new Histogram();
+    private final long created = System.nanoTime();
+
+    protected void taskPosted(Task task, WorkerThread workerThread)
+    {
+        queue(workerThread).enqueued.increment();
+    }
+
+    protected void taskStarted(Task task, WorkerThread workerThread, long queueWait)
+    {
+        if (queueWait < 0) return;
+        Queue queue = queue(workerThread);
+        queue.dequeued.increment();
+        queue.waits.record(queueWait);
+    }
+
+    protected void taskDiscarded(Task task, WorkerThread workerThread)
+    {
+        queue(workerThread).dequeued.increment();
+    }
+
+    protected void taskFinished(Task task, WorkerThread workerThread, long runTime)
+    {
+        // Keyed by name, so that Task classes and their class loaders are not retained
+        String type = task.getClass().getName();
+        Histogram histogram = (Histogram)executions.get(type);
+        if (histogram == null)
+        {
+            Histogram newHistogram = new Histogram();
+            histogram = (Histogram)executions.putIfAbsent(type, newHistogram);
+            if (histogram == null) histogram = newHistogram;
+        }
+        histogram.record(runTime);
+    }
+
+    protected void pumpStarted(Task task, int depth)
+    {
+        nesting.record(depth);
+    }
+
+    protected void pumpStopped(Task task, int depth, long duration, long events)
+    {
+        pumpDuration.record(duration);
+        pumpEvents.record(events);
+    }
+
+    private Queue queue(WorkerThread workerThread)
+    {
+        AbstractWorkerThread cache = workerThread instanceof AbstractWorkerThread ? (AbstractWorkerThread)workerThread : null;
+        if (cache != null)
+        {
+            // The metrics cached by a previous collector are discarded
+            Object cached = cache.metrics;
+            if (cached instanceof Queue && ((Queue)cached).collector == this) return (Queue)cached;
+        }
+
+        // Allocates a key, but only the first time for WorkerThreads that cache their metrics
+        Queue queue = (Queue)queues.get(new WorkerThreadKey(workerThread, null));
+        if (queue == null)
+        {
+            expunge();
+            Queue newQueue = new Queue(this, workerThread);
+            queue = (Queue)queues.putIfAbsent(new WorkerThreadKey(workerThread, collected), newQueue);
+            if (queue == null) queue = newQueue;
+        }
+        if (cache != null) cache.metrics = queue;
+        return queue;
+    }
+
+    /**
+     * Clears the metrics cached by the WorkerThreads, called when this collector is discarded.
+     */
+    void close()
+    {
+        for (Iterator iterator = queues.keySet().iterator(); iterator.hasNext();)
+        {
+            Object workerThread = ((WorkerThreadKey)iterator.next()).get();
+            if (workerThread instanceof AbstractWorkerThread)
+            {
+                AbstractWorkerThread cache = (AbstractWorkerThread)workerThread;
+                if (cache.metrics instanceof Queue && ((Queue)cache.metrics).collector == this) cache.metrics = null;
+            }
+        }
+    }
+
+    /**
+     * Discards the metrics of the WorkerThreads that have been garbage collected.
+     */
+    private void expunge()
+    {
+        Object key;
+        while ((key = collected.poll()) != null) queues.remove(key);
+    }
+
+    WorkerThreadMetrics[] getWorkerThreads()
+    {
+        expunge();
+        List result = new ArrayList();
+        for (Iterator iterator = queues.values().iterator(); iterator.hasNext();)
+        {
+            result.add(((Queue)iterator.next()).snapshot());
+        }
+        return (WorkerThreadMetrics[])result.toArray(new WorkerThreadMetrics[result.size()]);
+    }
+
+    TaskMetrics[] getTasks()
+    {
+        List result = new ArrayList();
+        for (Iterator iterator = executions.entrySet().iterator(); iterator.hasNext();)
+        {
+            Map.Entry entry = (Map.Entry)iterator.next();
+            result.add(new TaskMetrics((String)entry.getKey(), ((Histogram)entry.getValue()).snapshot(MICROS)));
+        }
+        return (TaskMetrics[])result.toArray(new TaskMetrics[result.size()]);
+    }
+
+    Distribution getPumpDuration()
+    {
+        return pumpDuration.snapshot(MICROS);
+    }
+
+    Distribution getPumpEvents()
+    {
+        return pumpEvents.snapshot(1);
+    }
+
+    Distribution getPostNestingDepth()
+    {
+        return nesting.snapshot(1);
+    }
+
+    /**
+     * A weak reference to a WorkerThread, compared by identity, so that it can be looked up
+     * without being retained by the map of queues.
+     */
+    private static class WorkerThreadKey extends WeakReference
+    {
+        private final int hash;
+
+        private WorkerThreadKey(WorkerThread workerThread, ReferenceQueue queue)
+        {
+            super(workerThread, queue);
+            this.hash = System.identityHashCode(workerThread);
+        }
+
+        public int hashCode()
+        {
+            return hash;
+        }
+
+        public boolean equals(Object obj)
+        {
+            if (obj == this) return true;
+            if (!(obj instanceof WorkerThreadKey)) return false;
+            Object referent = get();
+            // Keys of collected WorkerThreads are only equal to themselves
+            return referent != null && referent == ((WorkerThreadKey)obj).get();
+        }
+    }
+
+    /**
+     * The metrics of the queue of a WorkerThread.
+     */
+    private static class Queue
+    {
+        private final MetricsCollector collector;
+        private final String name;
+        private final LongAdder enqueued = new LongAdder();
+        private final LongAdder dequeued = new LongAdder();
+        private final Histogram waits = new Histogram();
+
+        private Queue(MetricsCollector collector, WorkerThread workerThread)
+        {
+            this.collector = collector;
+            this.name = workerThread.getClass().getName() + "@" + Integer.toHexString(System.identityHashCode(workerThread));
+        }
+
+        private WorkerThreadMetrics snapshot()
+        {
+            long count = enqueued.sum();
+            // The counters are not read atomically, the depth may be slightly off
+            long depth = Math.max(0, count - dequeued.sum());
+            // Snapshots have no side effects: the rate is the average since metrics have been
+            // enabled, the rate between two snapshots can be computed from their counts
+            long elapsed = System.nanoTime() - collector.created;
+            double rate = elapsed <= 0 ? 0 : count * 1000000000D / elapsed;
+            return new WorkerThreadMetrics(name, depth, count, rate, waits.snapshot(MICROS));
+        }
+    }
+}
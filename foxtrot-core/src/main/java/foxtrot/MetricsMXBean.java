@@ -0,0 +1,69 @@
+/**
+ * Copyright (c) 2002-2008, Simone Bordet
+ * All rights reserved.
+ *
+ * This software is distributable under the BSD license.
+ * See the terms of the BSD license in the documentation provided with this software.
+ */
+
+package foxtrot;
+
+/**
+ * The management interface of the Foxtrot {@link Metrics}, registered by
+ * {@link Metrics#registerMBean()} with the name <tt>foxtrot:type=Metrics</tt>. <br />
+ * Durations are reported in microseconds.
+ *
+ * @version $Revision$
+ */
+public interface MetricsMXBean
+{
+    /**
+     * Returns whether metrics are collected.
+     *
+     * @see Metrics#isEnabled()
+     */
+    public boolean isEnabled();
+
+    /**
+     * Enables or disables the collection of metrics.
+     *
+     * @see Metrics#setEnabled(boolean)
+     */
+    public void setEnabled(boolean enabled);
+
+    /**
+     * Returns the metrics of the WorkerThreads that have been posted Tasks.
+     */
+    public WorkerThreadMetrics[] getWorkerThreads();
+
+    /**
+     * Returns the execution times of the Tasks, per Task class.
+     */
+    public TaskMetrics[] getTasks();
+
+    /**
+     * Returns the distribution of the time spent dispatching events while waiting for a Task.
+     */
+    public Distribution getPumpDuration();
+
+    /**
+     * Returns the distribution of the number of events dispatched while waiting for a Task.
+     */
+    public Distribution getPumpEvents();
+
+    /**
+     * Returns the distribution of the nesting depth of calls to <tt>post()</tt> in the
+     * Event Dispatch Thread, where 1 means that no other <tt>post()</tt> was waiting.
+     */
+    public Distribution getPostNestingDepth();
+
+    /**
+     * Returns the number of calls to <tt>post()</tt> currently waiting in the Event Dispatch Thread.
+     */
+    public int getCurrentPostNestingDepth();
+
+    /**
+     * Discards the metrics collected so far.
+     */
+    public void reset();
+}
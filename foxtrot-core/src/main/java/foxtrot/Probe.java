@@ -0,0 +1,404 @@
+/**
+ * Copyright (c) 2002-2008, Simone Bordet
+ * All rights reserved.
+ *
+ * This software is distributable under the BSD license.
+ * See the terms of the BSD license in the documentation provided with this software.
+ */
+
+package foxtrot;
+
+import java.awt.AWTEvent;
+
+/**
+ * Observes the lifecycle of Tasks and the sessions of event pumping, to measure
+ * or trace what Foxtrot is doing. <br />
+ * Probes are {@link #install installed} globally; while no Probe is installed, each point
+ * of observation costs a single field read. The callbacks are called synchronously in the
+ * thread where the observed action happens, and must therefore be quick and non blocking,
+ * and must not throw. <br />
+ * Subclasses override only the callbacks they are interested in; the default implementations
+ * do nothing. Durations are in nanoseconds.
+ *
+ * @version $Revision$
+ * @see Metrics
+ */
+public abstract class Probe
+{
+    private static Probe[] probes = new Probe[0];
+    /**
+     * The installed Probes, or null if none is installed.
+     * Package protected, used by the points of observation
+     */
+    static volatile Probe current;
+
+    // The nesting depth and the events dispatched by each nested event pump,
+    // accessed only in the Event Dispatch Thread
+    private static volatile int depth;
+    private static long[] events = new long[8];
+
+    static
+    {
+        // The points of observation only read the installed Probes, so Metrics is
+        // loaded here to honor the system property that enables it at startup
+        try
+        {
+            if (Boolean.getBoolean("foxtrot.metrics")) Metrics.isEnabled();
+        }
+        catch (Throwable x)
+        {
+            System.err.println("[Probe] Could not enable metrics");
+            x.printStackTrace();
+        }
+    }
+
+    /**
+     * Creates a new Probe, called by subclasses.
+     */
+    protected Probe()
+    {
+    }
+
+    /**
+     * Installs the given Probe, which starts receiving callbacks.
+     *
+     * @throws IllegalArgumentException If the Probe is null
+     * @see #uninstall
+     */
+    public static synchronized void install(Probe probe)
+    {
+        if (probe == null) throw new IllegalArgumentException("Probe cannot be null");
+        Probe[] newProbes = new Probe[probes.length + 1];
+        System.arraycopy(probes, 0, newProbes, 0, probes.length);
+        newProbes[probes.length] = probe;
+        update(newProbes);
+        if (AbstractWorker.debug) System.out.println("[Probe] Installed " + probe);
+    }
+
+    /**
+     * Uninstalls the given Probe, which stops receiving callbacks.
+     *
+     * @return false if the Probe was not installed, true otherwise
+     * @see #install
+     */
+    public static synchronized boolean uninstall(Probe probe)
+    {
+        for (int i = 0; i < probes.length; ++i)
+        {
+            if (probes[i] == probe)
+            {
+                Probe[] newProbes = new Probe[probes.length - 1];
+                System.arraycopy(probes, 0, newProbes, 0, i);
+                System.arraycopy(probes, i + 1, newProbes, i, newProbes.length - i);
+                update(newProbes);
+                if (AbstractWorker.debug) System.out.println("[Probe] Uninstalled " + probe);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void update(Probe[] newProbes)
+    {
+        probes = newProbes;
+        if (newProbes.length == 0)
+            current = null;
+        else if (newProbes.length == 1)
+            current = newProbes[0];
+        else
+            current = new Composite(newProbes);
+    }
+
+    /**
+     * Records that an event is being dispatched while waiting for a Task. <br />
+     * Must be called in the Event Dispatch Thread by {@link EventPump} implementations,
+     * just before dispatching an event.
+     *
+     * @see #dispatched()
+     */
+    public static void dispatching(AWTEvent event)
+    {
+        Probe probe = current;
+        if (probe == null) return;
+        int level = depth;
+        if (level > 0) ++events[level - 1];
+        probe.eventStarted(event);
+    }
+
+    /**
+     * Records that the event being dispatched, if any, has been dispatched. <br />
+     * Must be called in the Event Dispatch Thread by {@link EventPump} implementations,
+     * just after dispatching an event; it may be called also when no event is being dispatched.
+     *
+     * @see #dispatching(AWTEvent)
+     */
+    public static void dispatched()
+    {
+        Probe probe = current;
+        if (probe != null) probe.eventFinished();
+    }
+
+    /**
+     * Returns the number of event pumps currently waiting for a Task in the Event Dispatch Thread.
+     * Package protected, used by {@link MetricsBean}
+     */
+    static int getDepth()
+    {
+        return depth;
+    }
+
+    /**
+     * Called in the thread that posts the given Task, just before it is posted to the given WorkerThread.
+     */
+    protected void taskPosted(Task task, WorkerThread workerThread)
+    {
+    }
+
+    /**
+     * Called in the worker thread just before the given Task runs.
+     *
+     * @param workerThread The WorkerThread the Task has been posted to or, if it has not been posted,
+     *                     the WorkerThread that runs it
+     * @param queueWait    The time the Task waited in the queue of the WorkerThread,
+     *                     or -1 if the Task has not been posted to a queue, for example because it runs
+     *                     directly in the worker thread that posted it
+     */
+    protected void taskStarted(Task task, WorkerThread workerThread, long queueWait)
+    {
+    }
+
+    /**
+     * Called in the worker thread just after the given Task ran, either successfully or not.
+     *
+     * @param workerThread The WorkerThread that ran the Task
+     * @param runTime      The time spent running the Task
+     */
+    protected void taskFinished(Task task, WorkerThread workerThread, long runTime)
+    {
+    }
+
+    /**
+     * Called when the given Task, posted to the given WorkerThread, leaves the queue without running,
+     * for example because it has been cancelled or rejected.
+     */
+    protected void taskDiscarded(Task task, WorkerThread workerThread)
+    {
+    }
+
+    /**
+     * Called in the Event Dispatch Thread just before the callbacks of the given AsyncTask are called.
+     */
+    protected void callbackStarted(AsyncTask task)
+    {
+    }
+
+    /**
+     * Called in the Event Dispatch Thread just after the callbacks of the given AsyncTask have been called.
+     *
+     * @param duration The time spent in the callbacks
+     */
+    protected void callbackFinished(AsyncTask task, long duration)
+    {
+    }
+
+    /**
+     * Called in the Event Dispatch Thread when an event pump starts dispatching events until
+     * the given Task is completed.
+     *
+     * @param depth The nesting depth of the event pump, where 1 means that no other event pump is waiting
+     */
+    protected void pumpStarted(Task task, int depth)
+    {
+    }
+
+    /**
+     * Called in the Event Dispatch Thread when an event pump stops dispatching events.
+     *
+     * @param depth    The nesting depth of the event pump
+     * @param duration The time spent dispatching events
+     * @param events   The number of events dispatched by this event pump, excluding the ones dispatched
+     *                 by nested event pumps
+     */
+    protected void pumpStopped(Task task, int depth, long duration, long events)
+    {
+    }
+
+    /**
+     * Called in the Event Dispatch Thread just before an event pump dispatches the given event.
+     */
+    protected void eventStarted(AWTEvent event)
+    {
+    }
+
+    /**
+     * Called in the Event Dispatch Thread after an event pump dispatched an event; it may be
+     * called also when no event is being dispatched, for example when an event pump starts.
+     */
+    protected void eventFinished()
+    {
+    }
+
+    /**
+     * Records that the given Task is posted to the given WorkerThread.
+     * Package protected, used by {@link AbstractSyncWorker} and {@link AsyncWorker}
+     */
+    final void posted(Task task, WorkerThread workerThread)
+    {
+        task.setPosted(workerThread, System.nanoTime());
+        taskPosted(task, workerThread);
+    }
+
+    /**
+     * Records that the given Task starts running, returning the start time.
+     * Package protected, used by {@link AbstractWorkerThread}
+     */
+    final long started(Task task, WorkerThread workerThread)
+    {
+        long now = System.nanoTime();
+        long queueWait = -1;
+        // The Task may run in a different WorkerThread than the one it has been posted
+        // to, for example in a lane of a KeyedWorkerThread: report the one it has been posted to
+        WorkerThread postedTo = task.takePosted();
+        if (postedTo != null)
+        {
+            queueWait = now - task.getPostedTime();
+            workerThread = postedTo;
+        }
+        taskStarted(task, workerThread, queueWait);
+        return now;
+    }
+
+    /**
+     * Records that the given Task, started at the given time, finished running.
+     * Package protected, used by {@link AbstractWorkerThread}
+     */
+    final void finished(Task task, WorkerThread workerThread, long start)
+    {
+        taskFinished(task, workerThread, System.nanoTime() - start);
+    }
+
+    /**
+     * Records that the given Task leaves the queue without running; does nothing if it
+     * already left the queue, or if it has not been posted to a queue.
+     * Package protected, used by {@link Task}, {@link AbstractSyncWorker}, {@link AsyncWorker}
+     * and {@link AbstractWorkerThread}
+     */
+    final void discarded(Task task)
+    {
+        WorkerThread workerThread = task.takePosted();
+        if (workerThread != null) taskDiscarded(task, workerThread);
+    }
+
+    /**
+     * Records that the callbacks of the given AsyncTask are called, returning the start time.
+     * Package protected, used by {@link AsyncTask}
+     */
+    final long delivering(AsyncTask task)
+    {
+        callbackStarted(task);
+        return System.nanoTime();
+    }
+
+    /**
+     * Records that the callbacks of the given AsyncTask, started at the given time, have been called.
+     * Package protected, used by {@link AsyncTask}
+     */
+    final void delivered(AsyncTask task, long start)
+    {
+        callbackFinished(task, System.nanoTime() - start);
+    }
+
+    /**
+     * Records that an event pump starts dispatching events, returning the start time.
+     * Package protected, used by {@link AbstractSyncWorker}
+     */
+    final long pumping(Task task)
+    {
+        int level = depth;
+        if (level == events.length)
+        {
+            long[] newEvents = new long[level << 1];
+            System.arraycopy(events, 0, newEvents, 0, level);
+            events = newEvents;
+        }
+        events[level] = 0;
+        depth = ++level;
+        pumpStarted(task, level);
+        return System.nanoTime();
+    }
+
+    /**
+     * Records that the innermost event pump, started at the given time, stopped dispatching events.
+     * Package protected, used by {@link AbstractSyncWorker}
+     */
+    final void pumped(Task task, long start)
+    {
+        long duration = System.nanoTime() - start;
+        int level = depth;
+        depth = level - 1;
+        pumpStopped(task, level, duration, events[level - 1]);
+    }
+
+    /**
+     * Forwards the callbacks to several Probes.
+     */
+    private static class Composite extends Probe
+    {
+        private final Probe[] probes;
+
+        private Composite(Probe[] probes)
+        {
+            this.probes = probes;
+        }
+
+        protected void taskPosted(Task task, WorkerThread workerThread)
+        {
+            for (int i = 0; i < probes.length; ++i) probes[i].taskPosted(task, workerThread);
+        }
+
+        protected void taskStarted(Task task, WorkerThread workerThread, long queueWait)
+        {
+            for (int i = 0; i < probes.length; ++i) probes[i].taskStarted(task, workerThread, queueWait);
+        }
+
+        protected void taskFinished(Task task, WorkerThread workerThread, long runTime)
+        {
+            for (int i = 0; i < probes.length; ++i) probes[i].taskFinished(task, workerThread, runTime);
+        }
+
+        protected void taskDiscarded(Task task, WorkerThread workerThread)
+        {
+            for (int i = 0; i < probes.length; ++i) probes[i].taskDiscarded(task, workerThread);
+        }
+
+        protected void callbackStarted(AsyncTask task)
+        {
+            for (int i = 0; i < probes.length; ++i) probes[i].callbackStarted(task);
+        }
+
+        protected void callbackFinished(AsyncTask task, long duration)
+        {
+            for (int i = 0; i < probes.length; ++i) probes[i].callbackFinished(task, duration);
+        }
+
+        protected void pumpStarted(Task task, int depth)
+        {
+            for (int i = 0; i < probes.length; ++i) probes[i].pumpStarted(task, depth);
+        }
+
+        protected void pumpStopped(Task task, int depth, long duration, long events)
+        {
+            for (int i = 0; i < probes.length; ++i) probes[i].pumpStopped(task, depth, duration, events);
+        }
+
+        protected void eventStarted(AWTEvent event)
+        {
+            for (int i = 0; i < probes.length; ++i) probes[i].eventStarted(event);
+        }
+
+        protected void eventFinished()
+        {
+            for (int i = 0; i < probes.length; ++i) probes[i].eventFinished();
+        }
+    }
+}
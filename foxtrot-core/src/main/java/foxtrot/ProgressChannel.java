@@ -0,0 +1,141 @@
+/**
+ * Copyright (c) 2002-2008, Simone Bordet
+ * All rights reserved.
+ *
+ * This software is distributable under the BSD license.
+ * See the terms of the BSD license in the documentation provided with this software.
+ */
+
+package foxtrot;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import javax.swing.SwingUtilities;
+
+/**
+ * Carries the intermediate results and the progress of a {@link Task} from the worker thread
+ * to the Event Dispatch Thread. <br />
+ * Values published by the worker thread are accumulated, and delivered in a single event at most
+ * once every {@link Task#getProgressInterval progress interval}: chunks are delivered all
+ * together to {@link Task#process}, while only the latest progress is delivered to
+ * {@link Task#progressChanged}, the superseded ones being dropped.
+ *
+ * @version $Revision$
+ * @see Task#publish
+ * @see Task#setProgress
+ */
+final class ProgressChannel implements Runnable
+{
+    private final Task task;
+    private final Runnable expire = new Runnable()
+    {
+        public void run()
+        {
+            SwingUtilities.invokeLater(ProgressChannel.this);
+        }
+    };
+    private List chunks;
+    private Object progress;
+    private boolean hasProgress;
+    private boolean scheduled;
+    private long lastDelivery;
+
+    ProgressChannel(Task task)
+    {
+        this.task = task;
+    }
+
+    /**
+     * Adds the given chunk to the chunks to deliver.
+     * Called from the worker thread.
+     */
+    void publish(Object chunk)
+    {
+        synchronized (this)
+        {
+            if (chunks == null) chunks = new ArrayList();
+            chunks.add(chunk);
+        }
+        schedule();
+    }
+
+    /**
+     * Replaces the progress to deliver with the given one.
+     * Called from the worker thread.
+     */
+    void setProgress(Object progress)
+    {
+        synchronized (this)
+        {
+            this.progress = progress;
+            hasProgress = true;
+        }
+        schedule();
+    }
+
+    /**
+     * Schedules a delivery, unless one is already scheduled, so that deliveries
+     * happen at most once per progress interval.
+     */
+    private void schedule()
+    {
+        long interval = task.getProgressInterval();
+        long delay;
+        synchronized (this)
+        {
+            if (scheduled) return;
+            scheduled = true;
+            delay = lastDelivery + interval - System.currentTimeMillis();
+        }
+        if (delay > 0)
+            Scheduler.getInstance().schedule(expire, delay);
+        else
+            SwingUtilities.invokeLater(this);
+    }
+
+    /**
+     * Delivers the values published since the last delivery.
+     * Called in the Event Dispatch Thread when a scheduled delivery is due.
+     */
+    public void run()
+    {
+        synchronized (this)
+        {
+            scheduled = false;
+        }
+        deliver();
+    }
+
+    /**
+     * Delivers the values published since the last delivery, if any; values published
+     * by a cancelled Task are discarded.
+     * Called in the Event Dispatch Thread.
+     */
+    void deliver()
+    {
+        List batch;
+        Object latest;
+        boolean progressed;
+        synchronized (this)
+        {
+            batch = chunks;
+            chunks = null;
+            latest = progress;
+            progress = null;
+            progressed = hasProgress;
+            hasProgress = false;
+            lastDelivery = System.currentTimeMillis();
+        }
+
+        if (task.isCancelled()) return;
+
+        if (batch != null)
+        {
+            if (AbstractWorker.debug) System.out.println("[ProgressChannel] Delivering " + batch.size() + " chunks for task " + task);
+            task.process(Collections.unmodifiableList(batch));
+        }
+        if (progressed) task.progressChanged(latest);
+    }
+}
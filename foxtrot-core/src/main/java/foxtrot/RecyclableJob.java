@@ -0,0 +1,91 @@
+/**
+ * Copyright (c) 2002-2008, Simone Bordet
+ * All rights reserved.
+ *
+ * This software is distributable under the BSD license.
+ * See the terms of the BSD license in the documentation provided with this software.
+ */
+
+package foxtrot;
+
+/**
+ * A {@link Job} that can be reused via a {@link JobPool}, to avoid allocating a new Job
+ * for every post when Jobs are posted at high rates. <br />
+ * Subclasses normally hold the input of the Job in fields that are set after the Job is
+ * {@link JobPool#acquire() acquired}, and override {@link #recycle()} to clear them:
+ * <pre>
+ * class LoadJob extends RecyclableJob
+ * {
+ *     private String key;
+ *
+ *     public Object run()
+ *     {
+ *         return load(key);
+ *     }
+ *
+ *     protected void recycle()
+ *     {
+ *         key = null;
+ *     }
+ * }
+ * </pre>
+ *
+ * @version $Revision$
+ * @see JobPool
+ */
+public abstract class RecyclableJob extends Job
+{
+    private JobPool pool;
+    private boolean released;
+
+    /**
+     * Called when this RecyclableJob is {@link JobPool#release released} to its pool,
+     * to clear the state of this RecyclableJob before it is reused. <br />
+     * This implementation does nothing.
+     */
+    protected void recycle()
+    {
+    }
+
+    /**
+     * Returns the JobPool this RecyclableJob belongs to, or null if it does not belong to a pool.
+     * Synchronized since the variable is accessed from 2 threads
+     */
+    public final synchronized JobPool getPool()
+    {
+        return pool;
+    }
+
+    /**
+     * Package protected, used by {@link JobPool}
+     */
+    final synchronized void setPool(JobPool pool)
+    {
+        this.pool = pool;
+    }
+
+    /**
+     * Marks this RecyclableJob as released, atomically checking that it was not already
+     * released, so that concurrent releases of the same Job cannot both succeed. <br />
+     * A RecyclableJob stays released until it is acquired again from its pool, also when
+     * the pool discards it, so that it can be released only once.
+     * Package protected, used by {@link JobPool}
+     *
+     * @return false if this RecyclableJob was already released, true otherwise
+     */
+    final synchronized boolean markReleased()
+    {
+        if (released) return false;
+        released = true;
+        return true;
+    }
+
+    /**
+     * Marks this RecyclableJob as acquired from its pool, so that it can be released again.
+     * Package protected, used by {@link JobPool}
+     */
+    final synchronized void markAcquired()
+    {
+        released = false;
+    }
+}
@@ -0,0 +1,281 @@
+/**
+ * Copyright (c) 2002-2008, Simone Bordet
+ * All rights reserved.
+ *
+ * This software is distributable under the BSD license.
+ * See the terms of the BSD license in the documentation provided with this software.
+ */
+
+package foxtrot;
+
+import javax.swing.SwingUtilities;
+
+/**
+ * The schedule of an {@link AsyncTask} that runs after a delay, or repeatedly, as returned by
+ * {@link AsyncWorker#schedule}, {@link AsyncWorker#scheduleWithFixedDelay} and
+ * {@link AsyncWorker#scheduleAtFixedRate}. <br />
+ * Every time the schedule expires, the AsyncTask is posted via {@link AsyncWorker#post(AsyncTask)}
+ * from the Event Dispatch Thread, and its callbacks are called in the Event Dispatch Thread
+ * as usual; the same AsyncTask instance is reused for all the runs. <br />
+ * A run is never started while the previous run of the same AsyncTask is still in progress:
+ * with a fixed delay the next run is scheduled only after the previous is finished, while at
+ * a fixed rate the runs that would overlap are skipped. <br />
+ * Optionally, the delay between runs can {@link #setBackOff back off} while the AsyncTask
+ * keeps returning the same result, which is useful to poll for changes that happen rarely. <br />
+ * All schedules share a single timer thread; the schedule stops when it is {@link #cancel cancelled}.
+ * Cancelling the AsyncTask itself via {@link Task#cancel} also stops the schedule, but only while
+ * a run is in progress: between runs the AsyncTask is completed, so it cannot be cancelled, and
+ * it is reset by the next run.
+ *
+ * @version $Revision$
+ * @see AsyncWorker#schedule
+ */
+public class Schedule
+{
+    private final AsyncTask task;
+    private final long period;
+    private final boolean fixedRate;
+    private final Runnable expire = new Runnable()
+    {
+        public void run()
+        {
+            expired();
+        }
+    };
+    private final Runnable start = new Runnable()
+    {
+        public void run()
+        {
+            runTask();
+        }
+    };
+    private long delay;
+    private double backOffMultiplier = 1;
+    private long maximumDelay;
+    private long nextTime;
+    private Scheduler.Entry entry;
+    private boolean running;
+    private boolean cancelled;
+    private boolean hasResult;
+    private Object lastResult;
+    private long runs;
+    private long skips;
+
+    /**
+     * Creates a new Schedule for the given AsyncTask.
+     * Package protected, used by {@link AsyncWorker}
+     *
+     * @param period    The delay or the period between runs, or zero to run only once
+     * @param fixedRate Whether runs happen at a fixed rate rather than with a fixed delay
+     */
+    Schedule(AsyncTask task, long period, boolean fixedRate)
+    {
+        this.task = task;
+        this.period = period;
+        this.fixedRate = fixedRate;
+        this.delay = period;
+        this.maximumDelay = period;
+    }
+
+    /**
+     * Returns the AsyncTask run by this Schedule.
+     */
+    public AsyncTask getTask()
+    {
+        return task;
+    }
+
+    /**
+     * Returns the current delay or period between runs, in milliseconds, which may be longer
+     * than the initial one if the schedule {@link #setBackOff backed off}.
+     * Synchronized since the variable is accessed from 2 threads
+     */
+    public synchronized long getDelay()
+    {
+        return delay;
+    }
+
+    /**
+     * Enables adaptive back-off for this Schedule. <br />
+     * When a run of the AsyncTask returns a result {@link Object#equals equal} to the result of
+     * the previous run, the delay between runs is multiplied by the given multiplier, up to the
+     * given maximum delay; when the result changes, or the AsyncTask fails, the delay goes back
+     * to its initial value.
+     * Synchronized since the variables are accessed from 2 threads
+     *
+     * @param multiplier   The multiplier applied to the delay when the result does not change
+     * @param maximumDelay The maximum delay between runs, in milliseconds
+     * @throws IllegalArgumentException If the multiplier is less than 1, or the maximum delay is
+     *                                  less than the initial delay
+     */
+    public synchronized void setBackOff(double multiplier, long maximumDelay)
+    {
+        if (multiplier < 1) throw new IllegalArgumentException("Back-off multiplier cannot be less than 1");
+        if (maximumDelay < period) throw new IllegalArgumentException("Maximum delay cannot be less than the delay " + period);
+        this.backOffMultiplier = multiplier;
+        this.maximumDelay = maximumDelay;
+    }
+
+    /**
+     * Returns the number of times the AsyncTask has been posted by this Schedule.
+     * Synchronized since the variable is accessed from 2 threads
+     */
+    public synchronized long getRunCount()
+    {
+        return runs;
+    }
+
+    /**
+     * Returns the number of runs that have been skipped because the previous run
+     * was still in progress.
+     * Synchronized since the variable is accessed from 2 threads
+     */
+    public synchronized long getSkippedCount()
+    {
+        return skips;
+    }
+
+    /**
+     * Cancels this Schedule, so that the AsyncTask is not run anymore. <br />
+     * This is the only way to stop the schedule between runs. A run in progress is not
+     * affected; use {@link Task#cancel} to cancel it, which also stops the schedule.
+     *
+     * @return false if this Schedule was already cancelled or finished, true otherwise
+     */
+    public boolean cancel()
+    {
+        Scheduler.Entry timer;
+        synchronized (this)
+        {
+            if (cancelled) return false;
+            cancelled = true;
+            timer = entry;
+            entry = null;
+        }
+        if (AbstractWorker.debug) System.out.println("[Schedule] Cancelled schedule for task " + task);
+        if (timer != null) Scheduler.getInstance().cancel(timer);
+        return true;
+    }
+
+    /**
+     * Returns whether this Schedule has been cancelled, or is finished.
+     * Synchronized since the variable is accessed from 2 threads
+     */
+    public synchronized boolean isCancelled()
+    {
+        return cancelled;
+    }
+
+    /**
+     * Starts this Schedule, so that the AsyncTask first runs after the given delay.
+     * Package protected, used by {@link AsyncWorker}
+     */
+    void start(long initialDelay)
+    {
+        task.setSchedule(this);
+        synchronized (this)
+        {
+            nextTime = System.currentTimeMillis() + initialDelay;
+            entry = Scheduler.getInstance().schedule(expire, initialDelay);
+        }
+    }
+
+    /**
+     * Called in the scheduler thread when this Schedule expires.
+     */
+    private void expired()
+    {
+        synchronized (this)
+        {
+            if (cancelled) return;
+            entry = null;
+            if (fixedRate)
+            {
+                // Schedule the next run now, so that the rate does not depend on the run duration
+                long now = System.currentTimeMillis();
+                nextTime += delay;
+                if (nextTime < now) nextTime = now + delay;
+                entry = Scheduler.getInstance().schedule(expire, nextTime - now);
+            }
+        }
+        SwingUtilities.invokeLater(start);
+    }
+
+    /**
+     * Called in the Event Dispatch Thread to run the AsyncTask.
+     */
+    private void runTask()
+    {
+        synchronized (this)
+        {
+            if (cancelled) return;
+            if (running)
+            {
+                ++skips;
+                if (AbstractWorker.debug) System.out.println("[Schedule] Skipping run, task still running " + task);
+                return;
+            }
+            running = true;
+            ++runs;
+        }
+
+        if (AbstractWorker.debug) System.out.println("[Schedule] Running task " + task);
+
+        boolean posted = false;
+        try
+        {
+            // The previous run, if any, is finished
+            task.reset();
+            AsyncWorker.post(task);
+            posted = true;
+        }
+        finally
+        {
+            if (!posted) cancel();
+        }
+    }
+
+    /**
+     * Called in the Event Dispatch Thread when a run of the AsyncTask is finished.
+     * Package protected, used by {@link AsyncWorker}
+     */
+    void finished()
+    {
+        Object result = null;
+        boolean failed = false;
+        try
+        {
+            result = task.getResultOrThrow();
+        }
+        catch (Throwable x)
+        {
+            failed = true;
+        }
+
+        synchronized (this)
+        {
+            running = false;
+
+            // A failure counts as a change
+            boolean changed = failed || !hasResult || (result == null ? lastResult != null : !result.equals(lastResult));
+            hasResult = !failed;
+            lastResult = result;
+            if (changed)
+                delay = period;
+            else
+                delay = Math.min(maximumDelay, (long)(delay * backOffMultiplier));
+
+            if (task.isCancelled() || period == 0)
+            {
+                // Cancelled task or one shot schedule: we're done
+                cancelled = true;
+                if (entry != null) Scheduler.getInstance().cancel(entry);
+                entry = null;
+                return;
+            }
+            if (cancelled || fixedRate) return;
+
+            entry = Scheduler.getInstance().schedule(expire, delay);
+        }
+    }
+}
@@ -0,0 +1,141 @@
+/**
+ * Copyright (c) 2002-2008, Simone Bordet
+ * All rights reserved.
+ *
+ * This software is distributable under the BSD license.
+ * See the terms of the BSD license in the documentation provided with this software.
+ */
+
+package foxtrot;
+
+import foxtrot.utils.BinaryHeap;
+
+/**
+ * Runs actions after a delay, using a single daemon thread shared by all Foxtrot workers. <br />
+ * Scheduled actions are kept in a binary heap ordered by expiration time, so that scheduling
+ * and cancelling an action cost O(log n); cancelled actions are removed from the heap
+ * immediately, so that short-lived timeouts do not accumulate. <br />
+ * Actions are run in the scheduler thread, and must therefore be quick and non blocking.
+ *
+ * @version $Revision$
+ */
+final class Scheduler implements Runnable
+{
+    private static Scheduler instance;
+
+    private final BinaryHeap heap = new BinaryHeap();
+    private long sequence;
+
+    private Scheduler()
+    {
+        Thread thread = new Thread(this, "Foxtrot Scheduler Thread");
+        thread.setDaemon(true);
+        thread.start();
+        if (AbstractWorker.debug) System.out.println("[Scheduler] Started " + thread);
+    }
+
+    /**
+     * Returns the shared Scheduler, starting its thread the first time it is called.
+     */
+    static synchronized Scheduler getInstance()
+    {
+        if (instance == null) instance = new Scheduler();
+        return instance;
+    }
+
+    /**
+     * Schedules the given action to run after the given delay in milliseconds.
+     *
+     * @return the entry to pass to {@link #cancel} to cancel the action
+     */
+    Entry schedule(Runnable action, long delay)
+    {
+        Entry entry = new Entry(action);
+        synchronized (this)
+        {
+            entry.time = System.currentTimeMillis() + Math.max(0, delay);
+            entry.sequence = sequence++;
+            heap.add(entry);
+            // Wake up the scheduler thread only if the earliest expiration changed
+            if (heap.peek() == entry) notify();
+        }
+        return entry;
+    }
+
+    /**
+     * Cancels the given scheduled action.
+     *
+     * @return false if the action already ran or has already been cancelled, true otherwise
+     */
+    boolean cancel(Entry entry)
+    {
+        synchronized (this)
+        {
+            return heap.remove(entry);
+        }
+    }
+
+    public void run()
+    {
+        while (true)
+        {
+            Entry entry;
+            synchronized (this)
+            {
+                try
+                {
+                    entry = (Entry)heap.peek();
+                    if (entry == null)
+                    {
+                        wait();
+                        continue;
+                    }
+                    long delay = entry.time - System.currentTimeMillis();
+                    if (delay > 0)
+                    {
+                        wait(delay);
+                        continue;
+                    }
+                }
+                catch (InterruptedException x)
+                {
+                    // The scheduler is shared, ignore the interrupt and keep going
+                    continue;
+                }
+                heap.poll();
+            }
+
+            try
+            {
+                entry.action.run();
+            }
+            catch (Throwable x)
+            {
+                System.err.println("[Scheduler] Exception occurred while running scheduled action " + entry.action);
+                x.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * An action scheduled by the {@link Scheduler}.
+     */
+    static final class Entry extends BinaryHeap.Node
+    {
+        private final Runnable action;
+        private long time;
+        private long sequence;
+
+        private Entry(Runnable action)
+        {
+            this.action = action;
+        }
+
+        protected boolean before(BinaryHeap.Node node)
+        {
+            Entry other = (Entry)node;
+            if (time != other.time) return time < other.time;
+            return sequence < other.sequence;
+        }
+    }
+}
@@ -0,0 +1,31 @@
+/**
+ * Copyright (c) 2002-2008, Simone Bordet
+ * All rights reserved.
+ *
+ * This software is distributable under the BSD license.
+ * See the terms of the BSD license in the documentation provided with this software.
+ */
+
+package foxtrot;
+
+import java.awt.AWTEvent;
+
+/**
+ * Listener notified by an {@link EventWatchdog} when the dispatch of an event pumped
+ * while waiting for a Task takes longer than the watchdog threshold.
+ *
+ * @version $Revision$
+ */
+public interface StallListener
+{
+    /**
+     * Called in the watchdog thread while the given event is still being dispatched. <br />
+     * Implementations must not block, since the watchdog does not detect other stalls
+     * until this method returns.
+     *
+     * @param event      The event being dispatched, may be null if the event pump did not provide it
+     * @param duration   How long the event has been dispatched so far, in milliseconds
+     * @param stackTrace The stack trace of the Event Dispatch Thread when the stall was detected
+     */
+    public void eventStalled(AWTEvent event, long duration, StackTraceElement[] stackTrace);
+}
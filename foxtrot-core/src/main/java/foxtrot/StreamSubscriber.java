@@ -0,0 +1,52 @@
+/**
+ * Copyright (c) 2002-2008, Simone Bordet
+ * All rights reserved.
+ *
+ * This software is distributable under the BSD license.
+ * See the terms of the BSD license in the documentation provided with this software.
+ */
+
+package foxtrot;
+
+/**
+ * Receives the items produced by a {@link StreamTask} in the Event Dispatch Thread. <br />
+ * The methods of this interface are called in the same order and with the same guarantees
+ * as the ones of <tt>java.util.concurrent.Flow.Subscriber</tt>: first {@link #onSubscribe},
+ * then any number of {@link #onNext}, never more than the items {@link StreamSubscription#request requested},
+ * and finally one of {@link #onComplete} or {@link #onError}, unless the subscription is
+ * {@link StreamSubscription#cancel cancelled}.
+ *
+ * @version $Revision$
+ * @see StreamTask#subscribe
+ */
+public interface StreamSubscriber
+{
+    /**
+     * Called in the Event Dispatch Thread when this subscriber is subscribed to a StreamTask. <br />
+     * No items are produced until they are requested via the given subscription.
+     *
+     * @param subscription The subscription to request items or to cancel the stream
+     */
+    public void onSubscribe(StreamSubscription subscription);
+
+    /**
+     * Called in the Event Dispatch Thread for every item produced by the StreamTask.
+     *
+     * @param item The item
+     */
+    public void onNext(Object item);
+
+    /**
+     * Called in the Event Dispatch Thread when the StreamTask fails or is cancelled, after
+     * all the items produced before the failure have been delivered.
+     *
+     * @param x The Throwable thrown by the StreamTask
+     */
+    public void onError(Throwable x);
+
+    /**
+     * Called in the Event Dispatch Thread when the StreamTask completes successfully, after
+     * all the items have been delivered.
+     */
+    public void onComplete();
+}
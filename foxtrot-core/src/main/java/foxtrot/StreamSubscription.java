@@ -0,0 +1,38 @@
+/**
+ * Copyright (c) 2002-2008, Simone Bordet
+ * All rights reserved.
+ *
+ * This software is distributable under the BSD license.
+ * See the terms of the BSD license in the documentation provided with this software.
+ */
+
+package foxtrot;
+
+/**
+ * The link between a {@link StreamTask} and its {@link StreamSubscriber}, used by the
+ * subscriber to control the flow of items, like <tt>java.util.concurrent.Flow.Subscription</tt>. <br />
+ * The methods of this interface may be called from any thread.
+ *
+ * @version $Revision$
+ * @see StreamSubscriber#onSubscribe
+ */
+public interface StreamSubscription
+{
+    /**
+     * Requests the given number of additional items. <br />
+     * The StreamTask produces items only while there are requested items that have not been
+     * produced yet, so that the items waiting to be delivered never exceed the requested ones;
+     * requesting <tt>Long.MAX_VALUE</tt> items removes the limit.
+     *
+     * @param n The number of additional items
+     * @throws IllegalArgumentException If n is not positive
+     */
+    public void request(long n);
+
+    /**
+     * Cancels the stream: the StreamTask is {@link Task#cancel cancelled}, and no more items
+     * are delivered to the subscriber, nor {@link StreamSubscriber#onComplete} or
+     * {@link StreamSubscriber#onError} are called.
+     */
+    public void cancel();
+}
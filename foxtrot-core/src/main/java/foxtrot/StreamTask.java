@@ -0,0 +1,272 @@
+/**
+ * Copyright (c) 2002-2008, Simone Bordet
+ * All rights reserved.
+ *
+ * This software is distributable under the BSD license.
+ * See the terms of the BSD license in the documentation provided with this software.
+ */
+
+package foxtrot;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.swing.SwingUtilities;
+
+/**
+ * An {@link AsyncTask} that produces a stream of items, rather than a single result,
+ * delivered to a {@link StreamSubscriber} in the Event Dispatch Thread as they are produced. <br />
+ * Users must implement the {@link #stream} method, calling {@link #emit} for every item. <br />
+ * The flow of items is controlled by the subscriber, via {@link StreamSubscription#request}:
+ * when the subscriber has not requested more items, {@link #emit} blocks, so that the worker
+ * thread pauses the production when the Event Dispatch Thread falls behind, and the memory
+ * used by the items waiting to be delivered stays bounded however large the stream is. <br />
+ * A StreamTask must be subscribed before it is posted via {@link AsyncWorker#post(AsyncTask)};
+ * the {@link #success}, {@link #failure} and {@link #cancelled} callbacks are forwarded to the
+ * subscriber. Example:
+ * <pre>
+ * StreamTask task = new StreamTask()
+ * {
+ *     protected void stream() throws Exception
+ *     {
+ *         // Called in a worker thread
+ *         while (resultSet.next()) emit(resultSet.getString(1));
+ *     }
+ * };
+ * task.subscribe(new StreamSubscriber()
+ * {
+ *     private StreamSubscription subscription;
+ *
+ *     public void onSubscribe(StreamSubscription subscription)
+ *     {
+ *         this.subscription = subscription;
+ *         subscription.request(1);
+ *     }
+ *
+ *     public void onNext(Object item)
+ *     {
+ *         // Called in the Event Dispatch Thread
+ *         model.addElement(item);
+ *         subscription.request(1);
+ *     }
+ *
+ *     public void onError(Throwable x)
+ *     {
+ *     }
+ *
+ *     public void onComplete()
+ *     {
+ *     }
+ * });
+ * AsyncWorker.post(task);
+ * </pre>
+ * StreamTasks can also be exposed as <tt>java.util.concurrent.Flow.Publisher</tt>s, available from JDK 9,
+ * with the <tt>foxtrot.flow.StreamPublisher</tt> class of the foxtrot-flow module.
+ *
+ * @version $Revision$
+ * @see StreamSubscriber
+ */
+public abstract class StreamTask extends AsyncTask
+{
+    private final Object lock = new Object();
+    private final Runnable drain = new Runnable()
+    {
+        public void run()
+        {
+            drain();
+        }
+    };
+    private StreamSubscriber subscriber;
+    private List items = new ArrayList();
+    private long demand;
+    private boolean scheduled;
+    private boolean unsubscribed;
+
+    /**
+     * The method to implement with the time-consuming code that produces the items,
+     * by calling {@link #emit} for each of them.
+     */
+    protected abstract void stream() throws Exception;
+
+    /**
+     * Calls {@link #stream}, returning no result.
+     */
+    public final Object run() throws Exception
+    {
+        synchronized (lock)
+        {
+            if (subscriber == null) throw new IllegalStateException("StreamTask not subscribed: " + this);
+        }
+        stream();
+        return null;
+    }
+
+    /**
+     * Subscribes the given StreamSubscriber to this StreamTask, calling its
+     * {@link StreamSubscriber#onSubscribe} method. <br />
+     * Must be called in the Event Dispatch Thread, before this StreamTask is posted.
+     *
+     * @throws IllegalArgumentException If the subscriber is null
+     * @throws IllegalStateException    If this StreamTask is already subscribed
+     */
+    public final void subscribe(StreamSubscriber subscriber)
+    {
+        if (subscriber == null) throw new IllegalArgumentException("StreamSubscriber cannot be null");
+        synchronized (lock)
+        {
+            if (this.subscriber != null) throw new IllegalStateException("StreamTask already subscribed: " + this);
+            this.subscriber = subscriber;
+        }
+        subscriber.onSubscribe(new Subscription());
+    }
+
+    /**
+     * Emits the given item, to be delivered to the subscriber in the Event Dispatch Thread. <br />
+     * Must be called from the {@link #stream} method. Blocks until the subscriber has requested
+     * the item; items emitted in a tight loop are delivered together by a single event.
+     *
+     * @param item The item
+     * @throws InterruptedException   If the thread is interrupted while waiting for requests
+     * @throws TaskCancelledException If this StreamTask is cancelled
+     */
+    protected final void emit(Object item) throws InterruptedException
+    {
+        boolean schedule;
+        synchronized (lock)
+        {
+            while (demand == 0 && !isCancelled()) lock.wait();
+            if (isCancelled()) throw new TaskCancelledException("Task cancelled: " + this);
+            if (demand != Long.MAX_VALUE) --demand;
+            items.add(item);
+            schedule = !scheduled;
+            scheduled = true;
+        }
+        if (schedule) SwingUtilities.invokeLater(drain);
+    }
+
+    /**
+     * Wakes up the worker thread waiting in {@link #emit}, in case this StreamTask
+     * has been cancelled.
+     */
+    void postRun()
+    {
+        synchronized (lock)
+        {
+            lock.notifyAll();
+        }
+        super.postRun();
+    }
+
+    /**
+     * Delivers the items emitted so far to the subscriber.
+     * Called in the Event Dispatch Thread.
+     */
+    private void drain()
+    {
+        List batch;
+        synchronized (lock)
+        {
+            scheduled = false;
+            if (items.isEmpty()) return;
+            batch = items;
+            items = new ArrayList();
+        }
+
+        for (int i = 0; i < batch.size(); ++i)
+        {
+            if (isUnsubscribed()) return;
+            boolean delivered = false;
+            try
+            {
+                subscriber.onNext(batch.get(i));
+                delivered = true;
+            }
+            finally
+            {
+                // A subscriber that throws cannot receive further items
+                if (!delivered) unsubscribe();
+            }
+        }
+    }
+
+    private boolean isUnsubscribed()
+    {
+        synchronized (lock)
+        {
+            return unsubscribed;
+        }
+    }
+
+    /**
+     * Stops the delivery of items and signals to the subscriber, and cancels this StreamTask.
+     *
+     * @return false if already unsubscribed, true otherwise
+     */
+    private boolean unsubscribe()
+    {
+        synchronized (lock)
+        {
+            if (unsubscribed) return false;
+            unsubscribed = true;
+            items.clear();
+        }
+        if (AbstractWorker.debug) System.out.println("[StreamTask] Unsubscribed from task " + this);
+        cancel(true);
+        return true;
+    }
+
+    /**
+     * Delivers the remaining items, then calls {@link StreamSubscriber#onComplete}.
+     */
+    public final void success(Object result)
+    {
+        drain();
+        if (!isUnsubscribed()) subscriber.onComplete();
+    }
+
+    /**
+     * Delivers the remaining items, then calls {@link StreamSubscriber#onError}.
+     */
+    public final void failure(Throwable x)
+    {
+        drain();
+        if (!isUnsubscribed()) subscriber.onError(x);
+    }
+
+    /**
+     * Discards the remaining items and, unless the subscription has been cancelled,
+     * calls {@link StreamSubscriber#onError} with a {@link TaskCancelledException}.
+     */
+    public final void cancelled()
+    {
+        if (isUnsubscribed()) return;
+        synchronized (lock)
+        {
+            items.clear();
+        }
+        Throwable x = getThrowable();
+        if (x == null) x = new TaskCancelledException("Task cancelled: " + this);
+        subscriber.onError(x);
+    }
+
+    private class Subscription implements StreamSubscription
+    {
+        public void request(long n)
+        {
+            if (n <= 0) throw new IllegalArgumentException("Number of requested items must be positive");
+            synchronized (lock)
+            {
+                if (unsubscribed) return;
+                demand += n;
+                // Overflow means unbounded
+                if (demand < 0) demand = Long.MAX_VALUE;
+                lock.notifyAll();
+            }
+        }
+
+        public void cancel()
+        {
+            unsubscribe();
+        }
+    }
+}
@@ -10,6 +10,8 @@ package foxtrot;
 
 import java.security.AccessControlContext;
 import java.security.AccessController;
+import java.security.PrivilegedExceptionAction;
+import java.util.List;
 
 import javax.swing.SwingUtilities;
 
@@ -36,10 +38,51 @@ import javax.swing.SwingUtilities;
  */
 public abstract class Task
 {
+    // The states of a Task: a Task is done when it is COMPLETED, either successfully or not,
+    // or when it is CANCELLED. The state is only written while holding the lock of this Task,
+    // but it is volatile so that it can be read without locking, in particular by event pumps
+    // that test whether this Task is completed for every event they dispatch
+    private static final int NEW = 0;
+    private static final int RUNNING = 1;
+    private static final int COMPLETED = 2;
+    private static final int CANCELLED = 3;
+
+    // Progress is delivered to the Event Dispatch Thread at most about once per frame
+    private static final long DEFAULT_PROGRESS_INTERVAL = 1000 / 60;
+
+    // A single wake up event is posted at a time, however many Tasks complete
+    private static final Object wakeUpLock = new Object();
+    private static boolean wakeUpPending;
+    private static final Runnable wakeUp = new Runnable()
+    {
+        public final void run()
+        {
+            synchronized (wakeUpLock)
+            {
+                wakeUpPending = false;
+            }
+            if (AbstractWorker.debug) System.out.println("[Task] Woken up event pumps");
+        }
+    };
+
     private Object result;
     private Throwable throwable;
-    private boolean completed;
+    private volatile int state = NEW;
+    private Thread runner;
+    private AbstractWorkerThread queue;
+    private Deadline deadline;
+    private boolean pending;
+    private boolean resetPending;
+    private int priority;
+    private Object routingKey;
     private AccessControlContext securityContext;
+    private PrivilegedExceptionAction action;
+    private int pumps;
+    private boolean pumpsTracked;
+    private long progressInterval = DEFAULT_PROGRESS_INTERVAL;
+    private ProgressChannel progressChannel;
+    private WorkerThread postedTo;
+    private long postedTime;
 
     /**
      * Creates a new Task.
@@ -101,6 +144,8 @@ public abstract class Task
      */
     final synchronized void setResult(Object result)
     {
+        // The result of a cancelled Task is discarded
+        if (state == CANCELLED) return;
         this.result = result;
     }
 
@@ -124,17 +169,19 @@ public abstract class Task
      */
     final synchronized void setThrowable(Throwable x)
     {
+        // The failure of a cancelled Task is discarded
+        if (state == CANCELLED) return;
         throwable = x;
     }
 
     /**
      * Returns whether the execution of this Task has been completed or not.
      */
-    public final synchronized boolean isCompleted()
+    public final boolean isCompleted()
     {
-        // Synchronized since the variable is accessed from 2 threads
-        // Accessed from the AWT Event Dispatch Thread.
-        return completed;
+        // Not synchronized, since the state is volatile
+        // Accessed from the AWT Event Dispatch Thread for every event pumped.
+        return state >= COMPLETED;
     }
 
     /**
@@ -147,8 +194,354 @@ public abstract class Task
      */
     final synchronized void setCompleted(boolean value)
     {
-        completed = value;
-        if (value) notifyAll();
+        setState(value ? COMPLETED : NEW);
+    }
+
+    /**
+     * Moves this Task to the given state, waking up threads waiting for this Task
+     * if the new state is a done state.
+     * Must be called while holding the lock of this Task.
+     */
+    private void setState(int value)
+    {
+        state = value;
+        if (value >= COMPLETED)
+        {
+            notifyAll();
+            if (deadline != null) deadline.setCompleted(true);
+        }
+    }
+
+    /**
+     * Cancels the execution of this Task. <br />
+     * If this Task is waiting in the queue of a {@link WorkerThread}, it is removed from the queue
+     * and will never run. If this Task is running and <tt>mayInterruptIfRunning</tt> is true,
+     * the thread running this Task (and only that thread) is interrupted; the {@link #run} method
+     * should react to the interruption by returning as soon as possible. <br />
+     * In both cases this Task is immediately {@link #isCompleted completed}:
+     * {@link Worker#post(Task)} stops dispatching events and throws a {@link TaskCancelledException},
+     * and {@link AsyncTask#cancelled()} is called instead of the success or failure callbacks. <br />
+     * A cancelled Task that is still running must not be posted again until its {@link #run}
+     * method returned.
+     *
+     * @param mayInterruptIfRunning Whether the thread running this Task should be interrupted
+     * @return false if this Task was already completed or cancelled, true otherwise
+     * @see #isCancelled
+     */
+    public final boolean cancel(boolean mayInterruptIfRunning)
+    {
+        return cancel(RUNNING, mayInterruptIfRunning);
+    }
+
+    /**
+     * Cancels this Task only if it has not started running yet, for example because it is
+     * still waiting in the queue of a {@link WorkerThread}.
+     * Package protected, used by {@link AsyncWorker}
+     *
+     * @return false if this Task already started running, or was already completed or cancelled, true otherwise
+     */
+    final boolean withdraw()
+    {
+        return cancel(NEW, false);
+    }
+
+    /**
+     * Cancels this Task if its state is not beyond the given state.
+     */
+    private boolean cancel(int maxState, boolean mayInterruptIfRunning)
+    {
+        AbstractWorkerThread workerThread;
+        synchronized (this)
+        {
+            if (state > maxState) return false;
+            result = null;
+            throwable = new TaskCancelledException("Task cancelled: " + this);
+            setState(CANCELLED);
+            if (runner != null && mayInterruptIfRunning) runner.interrupt();
+            workerThread = queue;
+            queue = null;
+        }
+
+        if (AbstractWorker.debug) System.out.println("[Task] Cancelled task " + this);
+
+        // Do not hold the lock while removing this Task from the queue, since
+        // WorkerThreads may access this Task while holding the lock of the queue
+        if (workerThread != null && workerThread.removeTask(this))
+        {
+            Probe probe = Probe.current;
+            if (probe != null) probe.discarded(this);
+            settled();
+        }
+        postRun();
+        return true;
+    }
+
+    /**
+     * Returns whether this Task has been cancelled.
+     *
+     * @see #cancel
+     */
+    public final boolean isCancelled()
+    {
+        // Not synchronized, since the state is volatile
+        return state == CANCELLED;
+    }
+
+    /**
+     * Records that this Task has been enqueued by the given WorkerThread, so that it can be
+     * removed from the queue when it is cancelled.
+     * Package protected, used by {@link AbstractWorkerThread}
+     */
+    final synchronized void setQueue(AbstractWorkerThread workerThread)
+    {
+        queue = workerThread;
+    }
+
+    /**
+     * Attaches the given Deadline to this Task, so that it is completed when this Task completes.
+     * Package protected, used by {@link Deadline}
+     */
+    final synchronized void setDeadline(Deadline deadline)
+    {
+        this.deadline = deadline;
+        if (state >= COMPLETED) deadline.setCompleted(true);
+    }
+
+    /**
+     * Marks this Task as running in the current thread.
+     * Returns false if this Task has been cancelled and must not run.
+     * Package protected, used by {@link AbstractWorkerThread}
+     */
+    final synchronized boolean begin()
+    {
+        queue = null;
+        if (state == CANCELLED)
+        {
+            settled();
+            return false;
+        }
+        state = RUNNING;
+        runner = Thread.currentThread();
+        return true;
+    }
+
+    /**
+     * Marks this Task as completed after it ran.
+     * Returns false if this Task has been cancelled, in which case it has already been
+     * completed by {@link #cancel}.
+     * Package protected, used by {@link AbstractWorkerThread}
+     */
+    final synchronized boolean complete()
+    {
+        runner = null;
+        if (state == CANCELLED)
+        {
+            settled();
+            return false;
+        }
+        setCompleted(true);
+        settled();
+        return true;
+    }
+
+    /**
+     * Marks this Task as handed to a {@link WorkerThread}: until it is run, removed from the
+     * queue or failed, calls to {@link #reset} are deferred. <br />
+     * Event pumps that wait for a Task posted this way record it with {@link #setPumping}.
+     * Package protected, used by {@link AbstractSyncWorker}
+     *
+     * @see #settled
+     */
+    final synchronized void posted()
+    {
+        pending = true;
+        pumpsTracked = true;
+    }
+
+    /**
+     * Marks this Task as no longer handed to a {@link WorkerThread}, performing the reset
+     * that has been deferred while it was pending, if any.
+     * Package protected, used by {@link AbstractSyncWorker}
+     *
+     * @see #posted
+     */
+    final synchronized void settled()
+    {
+        pending = false;
+        if (resetPending)
+        {
+            if (AbstractWorker.debug) System.out.println("[Task] Performing deferred reset for task " + this);
+            reset();
+        }
+    }
+
+    /**
+     * Returns the priority of this Task, as set by {@link #setPriority}.
+     * Synchronized since the variable is accessed from 2 threads
+     * Accessed from the worker thread.
+     */
+    public final synchronized int getPriority()
+    {
+        return priority;
+    }
+
+    /**
+     * Sets the priority of this Task. <br />
+     * {@link foxtrot.WorkerThread}s that support priorities, such as
+     * {@link foxtrot.workers.PriorityWorkerThread}, run Tasks with higher priority before
+     * Tasks with lower priority; the default priority is zero.
+     * Other WorkerThreads ignore the priority. <br />
+     * The priority must be set before the Task is posted.
+     * Synchronized since the variable is accessed from 2 threads
+     * Accessed from the AWT Event Dispatch Thread.
+     *
+     * @see #getPriority
+     */
+    public final synchronized void setPriority(int priority)
+    {
+        this.priority = priority;
+    }
+
+    /**
+     * Returns the routing key of this Task, as set by {@link #setRoutingKey}.
+     * Synchronized since the variable is accessed from 2 threads
+     * Accessed from the AWT Event Dispatch Thread.
+     */
+    public final synchronized Object getRoutingKey()
+    {
+        return routingKey;
+    }
+
+    /**
+     * Sets the routing key of this Task. <br />
+     * {@link foxtrot.WorkerThread}s that support routing keys, such as
+     * {@link foxtrot.workers.KeyedWorkerThread}, run Tasks with equal routing keys one after the
+     * other in the order they have been posted, while Tasks with different routing keys may
+     * run in parallel. Other WorkerThreads ignore the routing key. <br />
+     * The routing key must be set before the Task is posted.
+     * Synchronized since the variable is accessed from 2 threads
+     * Accessed from the AWT Event Dispatch Thread.
+     *
+     * @see #getRoutingKey
+     */
+    public final synchronized void setRoutingKey(Object routingKey)
+    {
+        this.routingKey = routingKey;
+    }
+
+    /**
+     * Publishes an intermediate result of this Task, to be passed to {@link #process} in the
+     * Event Dispatch Thread. <br />
+     * Must be called from the {@link #run} method. Chunks published in a tight loop do not flood
+     * the AWT Event Queue: they are accumulated and delivered together, at most once every
+     * {@link #getProgressInterval progress interval}. <br />
+     * Chunks that have not been delivered yet when this Task completes are delivered before
+     * {@link Worker#post(Task)} returns, or before the {@link AsyncTask} callbacks are called,
+     * unless this Task is cancelled, in which case they are discarded.
+     *
+     * @param chunk The intermediate result
+     * @see #process
+     * @see #setProgress
+     */
+    protected final void publish(Object chunk)
+    {
+        if (isCancelled()) return;
+        getProgressChannel().publish(chunk);
+    }
+
+    /**
+     * Sets the progress of this Task, to be passed to {@link #progressChanged} in the Event
+     * Dispatch Thread. <br />
+     * Must be called from the {@link #run} method. Like {@link #publish published} chunks,
+     * progress is delivered at most once every {@link #getProgressInterval progress interval};
+     * differently from chunks, a progress supersedes the ones set before it that have not been
+     * delivered yet, which are dropped, so that only the latest progress is delivered.
+     *
+     * @param progress The progress, for example an Integer percentage, or a String message
+     * @see #progressChanged
+     */
+    protected final void setProgress(Object progress)
+    {
+        if (isCancelled()) return;
+        getProgressChannel().setProgress(progress);
+    }
+
+    /**
+     * Callback invoked in the Event Dispatch Thread with the chunks {@link #publish published}
+     * since the previous call, in the order they have been published. <br />
+     * The default implementation does nothing.
+     *
+     * @param chunks The unmodifiable list of the chunks
+     * @see #publish
+     */
+    protected void process(List chunks)
+    {
+    }
+
+    /**
+     * Callback invoked in the Event Dispatch Thread with the latest progress {@link #setProgress set}
+     * since the previous call. <br />
+     * The default implementation does nothing.
+     *
+     * @param progress The latest progress
+     * @see #setProgress
+     */
+    protected void progressChanged(Object progress)
+    {
+    }
+
+    /**
+     * Returns the minimum interval between deliveries of intermediate results and progress
+     * to the Event Dispatch Thread, as set by {@link #setProgressInterval}.
+     * Synchronized since the variable is accessed from 2 threads
+     * Accessed from the worker thread.
+     */
+    public final synchronized long getProgressInterval()
+    {
+        return progressInterval;
+    }
+
+    /**
+     * Sets the minimum interval, in milliseconds, between deliveries of intermediate results
+     * and progress to the Event Dispatch Thread; the default is about one frame, 1/60 of a second.
+     * Synchronized since the variable is accessed from 2 threads
+     * Accessed from the AWT Event Dispatch Thread.
+     *
+     * @throws IllegalArgumentException If the interval is negative
+     * @see #publish
+     * @see #setProgress
+     */
+    public final synchronized void setProgressInterval(long interval)
+    {
+        if (interval < 0) throw new IllegalArgumentException("Progress interval cannot be negative");
+        this.progressInterval = interval;
+    }
+
+    /**
+     * Returns the ProgressChannel of this Task, creating it the first time progress is published.
+     * Synchronized since the variable is accessed from 2 threads
+     * Accessed from the worker thread.
+     */
+    private final synchronized ProgressChannel getProgressChannel()
+    {
+        if (progressChannel == null) progressChannel = new ProgressChannel(this);
+        return progressChannel;
+    }
+
+    /**
+     * Delivers the intermediate results and progress that have not been delivered yet, if any.
+     * Synchronized since the variable is accessed from 2 threads
+     * Accessed from the AWT Event Dispatch Thread.
+     * Package protected, used by {@link AbstractSyncWorker} and {@link AsyncTask}
+     */
+    final void flushProgress()
+    {
+        ProgressChannel channel;
+        synchronized (this)
+        {
+            channel = progressChannel;
+        }
+        if (channel != null) channel.deliver();
     }
 
     /**
@@ -164,6 +557,73 @@ public abstract class Task
         return securityContext;
     }
 
+    /**
+     * Returns the action that runs this Task, created once and reused every time this Task runs.
+     * Synchronized since the variable is accessed from 2 threads
+     * Accessed from the worker thread.
+     * Package protected, used by {@link AbstractWorkerThread}
+     */
+    final synchronized PrivilegedExceptionAction getAction()
+    {
+        if (action == null)
+        {
+            action = new PrivilegedExceptionAction()
+            {
+                public Object run() throws Exception
+                {
+                    return Task.this.run();
+                }
+            };
+        }
+        return action;
+    }
+
+    /**
+     * Returns whether this Task is not handed to a {@link WorkerThread} anymore, and
+     * therefore can be posted again.
+     * Package protected, used by {@link JobPool}
+     *
+     * @see #posted
+     */
+    final synchronized boolean isIdle()
+    {
+        return !pending && !resetPending;
+    }
+
+    /**
+     * Records the WorkerThread this Task is posted to, and the time it has been posted.
+     * Synchronized since the variables are accessed from 2 threads
+     * Package protected, used by {@link Probe}
+     */
+    final synchronized void setPosted(WorkerThread workerThread, long time)
+    {
+        this.postedTo = workerThread;
+        this.postedTime = time;
+    }
+
+    /**
+     * Returns and clears the WorkerThread this Task is posted to, so that the Task
+     * leaves the queue only once, even if it is cancelled while it starts running.
+     * Synchronized since the variable is accessed from 2 threads
+     * Package protected, used by {@link Probe}
+     */
+    final synchronized WorkerThread takePosted()
+    {
+        WorkerThread result = postedTo;
+        postedTo = null;
+        return result;
+    }
+
+    /**
+     * Returns the time this Task has been posted, as set by {@link #setPosted}.
+     * Synchronized since the variable is accessed from 2 threads
+     * Package protected, used by {@link Probe}
+     */
+    final synchronized long getPostedTime()
+    {
+        return postedTime;
+    }
+
     /**
      * Resets the internal status of this Task, that can be therefore be reused.
      * Synchronized since the variables are accessed from 2 threads
@@ -174,9 +634,35 @@ public abstract class Task
      */
     final synchronized void reset()
     {
-        setResult(null);
-        setThrowable(null);
-        setCompleted(false);
+        // A Task that has been cancelled or that timed out may still be queued
+        // or running: reset it when it is done, otherwise its run would complete
+        // it again after it has been reset, or it could run after being reposted
+        if (pending)
+        {
+            resetPending = true;
+            return;
+        }
+        resetPending = false;
+        pumpsTracked = false;
+        state = NEW;
+        runner = null;
+        queue = null;
+        deadline = null;
+        result = null;
+        throwable = null;
+    }
+
+    /**
+     * Records that an {@link EventPump} starts or stops dispatching events until this Task is
+     * completed, so that {@link #postRun} wakes up the event pump only if there is one waiting
+     * for a Task posted by a Worker.
+     * Synchronized since the variable is accessed from 2 threads
+     * Accessed from the AWT Event Dispatch Thread.
+     * Package protected, used by {@link AbstractSyncWorker} and {@link AbstractWorkerThread}
+     */
+    final synchronized void setPumping(boolean pumping)
+    {
+        pumps += pumping ? 1 : -1;
     }
 
     /**
@@ -185,17 +671,36 @@ public abstract class Task
      */
     void postRun()
     {
-        // Needed in case that no events are posted on the AWT Event Queue
-        // via the normal mechanisms (mouse movements, key typing, etc):
-        // the AWT Event Queue is waiting in EventQueue.getNextEvent(),
-        // posting this one will wake it up and allow the event pump to
-        // finish its job and release control to the original pump
-        SwingUtilities.invokeLater(new Runnable()
+        synchronized (this)
         {
-            public final void run()
-            {
-                if (AbstractWorker.debug) System.out.println("[Task] Run completed for task " + Task.this);
-            }
-        });
+            // No event pump is waiting for this Task, for example because
+            // it has been run directly in a worker thread: nothing to wake up.
+            // Otherwise the event pump has started dispatching before this Task
+            // completed, and it will test again for completion after the next event.
+            // Event pumps called directly, and not by a Worker, do not record that
+            // they are waiting, so Tasks not posted by a Worker always wake them up
+            if (pumpsTracked && pumps == 0) return;
+        }
+        wakeUpPumps();
+    }
+
+    /**
+     * Wakes up the event pumps, by posting an event on the AWT Event Queue. <br />
+     * Needed in case that no events are posted on the AWT Event Queue
+     * via the normal mechanisms (mouse movements, key typing, etc):
+     * the AWT Event Queue is waiting in EventQueue.getNextEvent(),
+     * posting an event will wake it up and allow the event pump to
+     * finish its job and release control to the original pump. <br />
+     * Completions that happen while a wake up event is already pending are
+     * coalesced, since the event pumps test for completion after every event.
+     */
+    static void wakeUpPumps()
+    {
+        synchronized (wakeUpLock)
+        {
+            if (wakeUpPending) return;
+            wakeUpPending = true;
+        }
+        SwingUtilities.invokeLater(wakeUp);
     }
 }
@@ -0,0 +1,28 @@
+/**
+ * Copyright (c) 2002-2008, Simone Bordet
+ * All rights reserved.
+ *
+ * This software is distributable under the BSD license.
+ * See the terms of the BSD license in the documentation provided with this software.
+ */
+
+package foxtrot;
+
+/**
+ * Thrown by {@link Worker#post(Task)} and {@link ConcurrentWorker#post(Task)} when the
+ * posted {@link Task} has been {@link Task#cancel cancelled}.
+ *
+ * @version $Revision$
+ */
+public class TaskCancelledException extends RuntimeException
+{
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Creates a new TaskCancelledException with the given message.
+     */
+    public TaskCancelledException(String message)
+    {
+        super(message);
+    }
+}
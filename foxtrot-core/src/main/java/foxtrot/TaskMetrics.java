@@ -0,0 +1,51 @@
+/**
+ * Copyright (c) 2002-2008, Simone Bordet
+ * All rights reserved.
+ *
+ * This software is distributable under the BSD license.
+ * See the terms of the BSD license in the documentation provided with this software.
+ */
+
+package foxtrot;
+
+/**
+ * A snapshot of the execution times of the Tasks of a given class, as reported by {@link MetricsMXBean}.
+ *
+ * @version $Revision$
+ */
+public final class TaskMetrics
+{
+    private final String taskClass;
+    private final Distribution executionTime;
+
+    /**
+     * Creates a new TaskMetrics.
+     * Package protected, used by {@link MetricsCollector}
+     */
+    TaskMetrics(String taskClass, Distribution executionTime)
+    {
+        this.taskClass = taskClass;
+        this.executionTime = executionTime;
+    }
+
+    /**
+     * Returns the name of the class of the Tasks.
+     */
+    public String getTaskClass()
+    {
+        return taskClass;
+    }
+
+    /**
+     * Returns the distribution of the time spent running the Tasks, in microseconds.
+     */
+    public Distribution getExecutionTime()
+    {
+        return executionTime;
+    }
+
+    public String toString()
+    {
+        return taskClass + ": time(us)=[" + executionTime + "]";
+    }
+}
@@ -0,0 +1,28 @@
+/**
+ * Copyright (c) 2002-2008, Simone Bordet
+ * All rights reserved.
+ *
+ * This software is distributable under the BSD license.
+ * See the terms of the BSD license in the documentation provided with this software.
+ */
+
+package foxtrot;
+
+/**
+ * Thrown by {@link Worker#post(Task, long, boolean)} and {@link ConcurrentWorker#post(Task, long, boolean)}
+ * when the posted {@link Task} did not complete within the given timeout.
+ *
+ * @version $Revision$
+ */
+public class TaskTimeoutException extends RuntimeException
+{
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Creates a new TaskTimeoutException with the given message.
+     */
+    public TaskTimeoutException(String message)
+    {
+        super(message);
+    }
+}
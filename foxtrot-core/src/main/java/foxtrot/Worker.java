@@ -146,4 +146,43 @@ public class Worker extends AbstractSyncWorker
     {
         return instance.post(job, getWorkerThread(), getEventPump());
     }
+
+    /**
+     * Enqueues the given Task to be executed by the WorkerThread, while dequeueing
+     * AWT events, waiting at most for the given timeout. <br />
+     * This method behaves like {@link #post(Task task)}, but if the Task does not complete
+     * within the given timeout, it stops dequeueing AWT events and throws a
+     * {@link TaskTimeoutException}. If <tt>cancel</tt> is true, the Task is then
+     * {@link Task#cancel cancelled}, interrupting the thread that runs it; otherwise the
+     * Task keeps running and its result is discarded, and the Task must not be posted
+     * again until it completed. <br />
+     * If this method is called from a worker thread, the Task is executed in the same thread
+     * and this method cannot return before the Task returns; on timeout the Task is interrupted
+     * if <tt>cancel</tt> is true, and the TaskTimeoutException is thrown when the Task returns. <br />
+     * Timeouts are tracked by a single thread shared by all invocations.
+     *
+     * @param task    The Task to execute
+     * @param timeout The maximum time to wait for the Task to complete, in milliseconds
+     * @param cancel  Whether the Task is cancelled when the timeout expires
+     * @throws TaskTimeoutException     if the Task did not complete within the timeout
+     * @throws IllegalArgumentException if the timeout is not positive
+     * @throws IllegalStateException    if is not called from the Event Dispatch Thread nor
+     *                                  from a worker thread.
+     * @see #post(Job, long, boolean)
+     */
+    public static Object post(Task task, long timeout, boolean cancel) throws Exception
+    {
+        return instance.post(task, timeout, cancel, getWorkerThread(), getEventPump());
+    }
+
+    /**
+     * Enqueues the given Job to be executed in the worker thread, waiting at most for the given timeout. <br />
+     * This method behaves exactly like {@link #post(Task, long, boolean)}, but it does not throw checked exceptions.
+     *
+     * @see #post(Task, long, boolean)
+     */
+    public static Object post(Job job, long timeout, boolean cancel)
+    {
+        return instance.post(job, timeout, cancel, getWorkerThread(), getEventPump());
+    }
 }
@@ -0,0 +1,86 @@
+/**
+ * Copyright (c) 2002-2008, Simone Bordet
+ * All rights reserved.
+ *
+ * This software is distributable under the BSD license.
+ * See the terms of the BSD license in the documentation provided with this software.
+ */
+
+package foxtrot;
+
+/**
+ * A snapshot of the metrics of a {@link WorkerThread}, as reported by {@link MetricsMXBean}. <br />
+ * Only Tasks posted via the Foxtrot workers are measured; Tasks posted from a worker thread,
+ * which run directly in that thread, are not queued and therefore not counted.
+ *
+ * @version $Revision$
+ */
+public final class WorkerThreadMetrics
+{
+    private final String name;
+    private final long queueDepth;
+    private final long enqueuedCount;
+    private final double enqueueRate;
+    private final Distribution queueWait;
+
+    /**
+     * Creates a new WorkerThreadMetrics.
+     * Package protected, used by {@link MetricsCollector}
+     */
+    WorkerThreadMetrics(String name, long queueDepth, long enqueuedCount, double enqueueRate, Distribution queueWait)
+    {
+        this.name = name;
+        this.queueDepth = queueDepth;
+        this.enqueuedCount = enqueuedCount;
+        this.enqueueRate = enqueueRate;
+        this.queueWait = queueWait;
+    }
+
+    /**
+     * Returns the name of the WorkerThread, made of its class name and identity hash code.
+     */
+    public String getName()
+    {
+        return name;
+    }
+
+    /**
+     * Returns the number of Tasks posted to the WorkerThread that did not start yet.
+     */
+    public long getQueueDepth()
+    {
+        return queueDepth;
+    }
+
+    /**
+     * Returns the number of Tasks posted to the WorkerThread since metrics have been enabled.
+     */
+    public long getEnqueuedCount()
+    {
+        return enqueuedCount;
+    }
+
+    /**
+     * Returns the average number of Tasks posted per second to the WorkerThread since metrics
+     * have been enabled. <br />
+     * The rate over a given interval is computed from the {@link #getEnqueuedCount() enqueued counts}
+     * of two snapshots taken at the beginning and at the end of the interval.
+     */
+    public double getEnqueueRate()
+    {
+        return enqueueRate;
+    }
+
+    /**
+     * Returns the distribution of the time Tasks waited in the queue before starting, in microseconds.
+     */
+    public Distribution getQueueWait()
+    {
+        return queueWait;
+    }
+
+    public String toString()
+    {
+        return name + ": depth=" + queueDepth + ", enqueued=" + enqueuedCount + ", rate=" + enqueueRate + "/s, wait(us)=[" + queueWait + "]";
+    }
+}
@@ -20,6 +20,7 @@ import java.security.PrivilegedAction;
 import java.security.PrivilegedExceptionAction;
 
 import foxtrot.EventPump;
+import foxtrot.Probe;
 import foxtrot.Task;
 
 /**
@@ -159,6 +160,9 @@ public class ConditionalEventPump implements EventPump, EventFilterable
      */
     private Boolean pumpEvent(Task task)
     {
+        // The event returned by the previous call, if any, has been dispatched
+        Probe.dispatched();
+
         Boolean completed = task.isCompleted() ? Boolean.TRUE : Boolean.FALSE;
         // Task already completed, return false to indicate to stop pumping events
         if (completed.booleanValue()) return Boolean.FALSE;
@@ -175,7 +179,11 @@ public class ConditionalEventPump implements EventPump, EventFilterable
             if (!canPumpEvent(nextEvent)) return Boolean.FALSE;
 
             // Plug the event filtering mechanism
-            if (filter == null || filter.accept(nextEvent)) return Boolean.TRUE;
+            if (filter == null || filter.accept(nextEvent))
+            {
+                Probe.dispatching(nextEvent);
+                return Boolean.TRUE;
+            }
 
             // The event has been filtered out, pop it from the EventQueue
             // then wait again for the next event
@@ -19,6 +19,7 @@ import java.security.AccessController;
 import java.security.PrivilegedAction;
 
 import foxtrot.EventPump;
+import foxtrot.Probe;
 import foxtrot.Task;
 
 /**
@@ -65,6 +66,7 @@ public class QueueEventPump implements EventPump, EventFilterable
                     continue;
                 }
 
+                Probe.dispatching(event);
                 try
                 {
                     dispatchEvent(queue, event);
@@ -73,6 +75,10 @@ public class QueueEventPump implements EventPump, EventFilterable
                 {
                     handleThrowable(x);
                 }
+                finally
+                {
+                    Probe.dispatched();
+                }
             }
             catch (InterruptedException x)
             {
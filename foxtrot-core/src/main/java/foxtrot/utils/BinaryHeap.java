@@ -0,0 +1,151 @@
+/**
+ * Copyright (c) 2002-2008, Simone Bordet
+ * All rights reserved.
+ *
+ * This software is distributable under the BSD license.
+ * See the terms of the BSD license in the documentation provided with this software.
+ */
+
+package foxtrot.utils;
+
+/**
+ * A binary heap of {@link Node}s, where the first node is the one that comes
+ * {@link Node#before before} all the others. <br />
+ * Adding a node, and removing the first or any other node, cost O(log n), since every node
+ * knows its position in the heap. Nodes with the same order should be made distinct by
+ * their implementation of {@link Node#before}, for example with a sequence number, since
+ * the heap does not preserve the insertion order. <br />
+ * This class is used by Foxtrot to order scheduled actions and prioritized tasks.
+ * It is not thread safe: callers must synchronize the access to it.
+ *
+ * @version $Revision$
+ */
+public class BinaryHeap
+{
+    private Node[] nodes = new Node[16];
+    private int size;
+
+    /**
+     * Returns the number of nodes in this heap.
+     */
+    public int size()
+    {
+        return size;
+    }
+
+    /**
+     * Returns the node at the given position, to scan the nodes of this heap, which are not sorted.
+     *
+     * @param index The position of the node, between 0 (the first node) and {@link #size()} - 1
+     */
+    public Node get(int index)
+    {
+        if (index < 0 || index >= size) throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size);
+        return nodes[index];
+    }
+
+    /**
+     * Returns the first node of this heap without removing it, or null if this heap is empty.
+     */
+    public Node peek()
+    {
+        return size == 0 ? null : nodes[0];
+    }
+
+    /**
+     * Adds the given node to this heap.
+     *
+     * @throws IllegalStateException If the node is already in a heap
+     */
+    public void add(Node node)
+    {
+        if (node.index >= 0) throw new IllegalStateException("Node " + node + " already in a heap");
+        if (size == nodes.length)
+        {
+            Node[] newNodes = new Node[size << 1];
+            System.arraycopy(nodes, 0, newNodes, 0, size);
+            nodes = newNodes;
+        }
+        siftUp(size++, node);
+    }
+
+    /**
+     * Removes and returns the first node of this heap, or null if this heap is empty.
+     */
+    public Node poll()
+    {
+        if (size == 0) return null;
+        Node result = nodes[0];
+        removeAt(0);
+        return result;
+    }
+
+    /**
+     * Removes the given node from this heap.
+     *
+     * @return false if the node is not in this heap, true otherwise
+     */
+    public boolean remove(Node node)
+    {
+        int index = node.index;
+        if (index < 0 || index >= size || nodes[index] != node) return false;
+        removeAt(index);
+        return true;
+    }
+
+    private void removeAt(int index)
+    {
+        nodes[index].index = -1;
+        Node last = nodes[--size];
+        nodes[size] = null;
+        if (index == size) return;
+        siftDown(index, last);
+        if (nodes[index] == last) siftUp(index, last);
+    }
+
+    private void siftUp(int index, Node node)
+    {
+        while (index > 0)
+        {
+            int parent = (index - 1) >> 1;
+            Node p = nodes[parent];
+            if (!node.before(p)) break;
+            nodes[index] = p;
+            p.index = index;
+            index = parent;
+        }
+        nodes[index] = node;
+        node.index = index;
+    }
+
+    private void siftDown(int index, Node node)
+    {
+        int half = size >> 1;
+        while (index < half)
+        {
+            int child = (index << 1) + 1;
+            int right = child + 1;
+            if (right < size && nodes[right].before(nodes[child])) child = right;
+            Node c = nodes[child];
+            if (!c.before(node)) break;
+            nodes[index] = c;
+            c.index = index;
+            index = child;
+        }
+        nodes[index] = node;
+        node.index = index;
+    }
+
+    /**
+     * An element of a {@link BinaryHeap}; a Node can be in only one heap at a time.
+     */
+    public abstract static class Node
+    {
+        private int index = -1;
+
+        /**
+         * Returns whether this node comes before the given node, which belongs to the same heap.
+         */
+        protected abstract boolean before(Node other);
+    }
+}
@@ -0,0 +1,134 @@
+/**
+ * Copyright (c) 2002-2008, Simone Bordet
+ * All rights reserved.
+ *
+ * This software is distributable under the BSD license.
+ * See the terms of the BSD license in the documentation provided with this software.
+ */
+
+package foxtrot.workers;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import foxtrot.AbstractWorkerThread;
+import foxtrot.Task;
+
+/**
+ * Full implementation of {@link foxtrot.WorkerThread} that runs {@link foxtrot.Task}s
+ * in an {@link Executor} provided by the application. <br />
+ * This allows Foxtrot to share the thread pools that the application already uses,
+ * for example:
+ * <pre>
+ * ExecutorService executor = Executors.newFixedThreadPool(4);
+ * ConcurrentWorker.setWorkerThread(new ExecutorWorkerThread(executor));
+ * AsyncWorker.setWorkerThread(new ExecutorWorkerThread(executor));
+ * </pre>
+ * The ordering of tasks depends on the Executor: a single threaded Executor gives
+ * the behavior of {@link SingleWorkerThread}, a multi threaded one the behavior of
+ * {@link MultiWorkerThread}. <br />
+ * The lifecycle of the Executor is managed by the application: {@link #start()} does nothing,
+ * and if the Executor is an {@link ExecutorService} that has been shut down this WorkerThread
+ * is not {@link #isAlive() alive} anymore. Tasks rejected by the Executor are completed
+ * with the {@link RejectedExecutionException} as failure. <br />
+ * This class is loaded only when explicitly used, so that Foxtrot still runs on JREs
+ * that do not have the <tt>java.util.concurrent</tt> package.
+ *
+ * @version $Revision$
+ */
+public class ExecutorWorkerThread extends AbstractWorkerThread
+{
+    static final boolean debug = false;
+
+    private final Executor executor;
+    private final ThreadLocal marker = new ThreadLocal();
+    private final AtomicInteger pending = new AtomicInteger();
+
+    /**
+     * Creates a new ExecutorWorkerThread that runs tasks in the given Executor.
+     *
+     * @throws IllegalArgumentException If the given Executor is null
+     */
+    public ExecutorWorkerThread(Executor executor)
+    {
+        if (executor == null) throw new IllegalArgumentException("Executor cannot be null");
+        this.executor = executor;
+    }
+
+    /**
+     * Returns the Executor used to run tasks.
+     */
+    public Executor getExecutor()
+    {
+        return executor;
+    }
+
+    /**
+     * Does nothing, since the lifecycle of the Executor is managed by the application.
+     */
+    public void start()
+    {
+    }
+
+    /**
+     * Returns false if the Executor is an {@link ExecutorService} that has been shut down,
+     * true otherwise.
+     */
+    public boolean isAlive()
+    {
+        if (executor instanceof ExecutorService) return !((ExecutorService)executor).isShutdown();
+        return true;
+    }
+
+    /**
+     * Returns whether the current thread is running a Task posted to this WorkerThread.
+     * Threads of the Executor that are not running Foxtrot tasks are not worker threads.
+     */
+    public boolean isWorkerThread()
+    {
+        return marker.get() != null;
+    }
+
+    public void postTask(final Task task)
+    {
+        pending.incrementAndGet();
+        try
+        {
+            executor.execute(new Runnable()
+            {
+                public void run()
+                {
+                    // The Executor may run the task in the caller thread,
+                    // which may already be a worker thread
+                    Object previous = marker.get();
+                    marker.set(Boolean.TRUE);
+                    try
+                    {
+                        runTask(task);
+                    }
+                    finally
+                    {
+                        if (previous == null)
+                            marker.remove();
+                        else
+                            marker.set(previous);
+                        pending.decrementAndGet();
+                    }
+                }
+            });
+        }
+        catch (RejectedExecutionException x)
+        {
+            if (debug) System.out.println("[ExecutorWorkerThread] Task rejected by " + executor + ": " + task);
+            pending.decrementAndGet();
+            failTask(task, x);
+        }
+    }
+
+    boolean hasPendingTasks()
+    {
+        return pending.get() > 0;
+    }
+}
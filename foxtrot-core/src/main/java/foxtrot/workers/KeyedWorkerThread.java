@@ -0,0 +1,198 @@
+/**
+ * Copyright (c) 2002-2008, Simone Bordet
+ * All rights reserved.
+ *
+ * This software is distributable under the BSD license.
+ * See the terms of the BSD license in the documentation provided with this software.
+ */
+
+package foxtrot.workers;
+
+import foxtrot.AbstractWorkerThread;
+import foxtrot.Task;
+
+/**
+ * Full implementation of {@link foxtrot.WorkerThread} that uses a fixed number of serial lanes
+ * to run {@link foxtrot.Task}s subclasses. <br />
+ * Each lane has its own worker thread and task queue, like {@link SingleWorkerThread}.
+ * Tasks are routed to a lane by the hash code of their {@link foxtrot.Task#getRoutingKey() routing key},
+ * so that tasks with equal routing keys (for example tasks working on the same document, or
+ * using the same connection) are executed one after the other in the order they have been
+ * posted, while tasks with different routing keys may be executed in parallel. <br />
+ * Tasks without routing key are distributed over the lanes in round robin order. <br />
+ * The queue of each lane is unbounded by default; it can be bounded via {@link #setMaximumQueueSize},
+ * and the {@link QueueFullPolicy} set via {@link #setQueueFullPolicy} is applied by each lane
+ * like in {@link SingleWorkerThread}.
+ *
+ * @version $Revision$
+ */
+public class KeyedWorkerThread extends AbstractWorkerThread
+{
+    private final Lane[] lanes;
+    private int next;
+
+    /**
+     * Creates a new KeyedWorkerThread with as many lanes as the number of processors.
+     */
+    public KeyedWorkerThread()
+    {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Creates a new KeyedWorkerThread with the given number of lanes.
+     *
+     * @throws IllegalArgumentException If the number of lanes is not positive
+     */
+    public KeyedWorkerThread(int lanes)
+    {
+        if (lanes <= 0) throw new IllegalArgumentException("Number of lanes must be positive");
+        this.lanes = new Lane[lanes];
+        for (int i = 0; i < lanes; ++i) this.lanes[i] = new Lane(i);
+    }
+
+    /**
+     * Returns the number of lanes of this KeyedWorkerThread.
+     */
+    public int getLaneCount()
+    {
+        return lanes.length;
+    }
+
+    /**
+     * Returns the number of tasks waiting to be executed in the given lane.
+     *
+     * @see #getLaneCount
+     */
+    public int getQueueSize(int lane)
+    {
+        return lanes[lane].getQueueSize();
+    }
+
+    /**
+     * Returns the maximum number of tasks that can wait in the queue of each lane,
+     * by default {@link Integer#MAX_VALUE}.
+     *
+     * @see #setMaximumQueueSize
+     */
+    public int getMaximumQueueSize()
+    {
+        return lanes[0].getMaximumQueueSize();
+    }
+
+    /**
+     * Sets the maximum number of tasks that can wait in the queue of each lane.
+     *
+     * @throws IllegalArgumentException If the maximum queue size is not positive
+     * @see SingleWorkerThread#setMaximumQueueSize
+     */
+    public void setMaximumQueueSize(int maximumQueueSize)
+    {
+        if (maximumQueueSize <= 0) throw new IllegalArgumentException("Maximum queue size must be positive");
+        for (int i = 0; i < lanes.length; ++i) lanes[i].setMaximumQueueSize(maximumQueueSize);
+    }
+
+    /**
+     * Returns the policy applied by each lane when a task is posted and its queue is full,
+     * by default {@link QueueFullPolicy#REJECT}.
+     *
+     * @see #setQueueFullPolicy
+     */
+    public QueueFullPolicy getQueueFullPolicy()
+    {
+        return lanes[0].getQueueFullPolicy();
+    }
+
+    /**
+     * Sets the policy applied by each lane when a task is posted and its queue is full.
+     *
+     * @throws IllegalArgumentException If the policy is null
+     * @see SingleWorkerThread#setQueueFullPolicy
+     */
+    public void setQueueFullPolicy(QueueFullPolicy queueFullPolicy)
+    {
+        if (queueFullPolicy == null) throw new IllegalArgumentException("QueueFullPolicy cannot be null");
+        for (int i = 0; i < lanes.length; ++i) lanes[i].setQueueFullPolicy(queueFullPolicy);
+    }
+
+    /**
+     * Returns the lane the given routing key is routed to.
+     */
+    public int getLane(Object routingKey)
+    {
+        int hash = routingKey.hashCode();
+        // Spread the high bits, since hash codes often differ only there
+        hash ^= (hash >>> 16);
+        return (hash & 0x7FFFFFFF) % lanes.length;
+    }
+
+    public void start()
+    {
+        for (int i = 0; i < lanes.length; ++i) lanes[i].start();
+    }
+
+    public boolean isAlive()
+    {
+        for (int i = 0; i < lanes.length; ++i)
+        {
+            if (!lanes[i].isAlive()) return false;
+        }
+        return true;
+    }
+
+    public boolean isWorkerThread()
+    {
+        for (int i = 0; i < lanes.length; ++i)
+        {
+            if (lanes[i].isWorkerThread()) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Posts the given Task onto the queue of the lane its routing key is routed to.
+     */
+    public void postTask(Task task)
+    {
+        Object routingKey = task.getRoutingKey();
+        int lane;
+        if (routingKey == null)
+        {
+            synchronized (this)
+            {
+                lane = next;
+                next = (next + 1) % lanes.length;
+            }
+        }
+        else
+        {
+            lane = getLane(routingKey);
+        }
+        if (SingleWorkerThread.debug) System.out.println("[KeyedWorkerThread] Routing task " + task + " to lane " + lane);
+        lanes[lane].postTask(task);
+    }
+
+    boolean hasPendingTasks()
+    {
+        for (int i = 0; i < lanes.length; ++i)
+        {
+            if (lanes[i].hasPendingTasks()) return true;
+        }
+        return false;
+    }
+
+    private static class Lane extends SingleWorkerThread
+    {
+        private final int index;
+
+        private Lane(int index)
+        {
+            this.index = index;
+        }
+
+        protected String getThreadName()
+        {
+            return "Foxtrot Keyed Worker Thread Lane " + index + " #" + nextSequence();
+        }
+    }
+}
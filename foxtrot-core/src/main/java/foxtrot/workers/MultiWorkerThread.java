@@ -8,9 +8,6 @@
 
 package foxtrot.workers;
 
-import java.util.LinkedList;
-import java.util.List;
-
 import foxtrot.Task;
 
 /**
@@ -20,13 +17,24 @@ import foxtrot.Task;
  * by two different threads.
  * This is done by using a mechanism similar to a classic web server threading: one thread
  * waits for incoming tasks and a new thread is spawned to run the task.
- * This ensures that the {@link #postTask} method returns immediately in any case.
+ * This ensures that the {@link #postTask} method returns immediately in any case. <br />
+ * See {@link PooledWorkerThread} for an implementation that reuses threads across tasks.
  *
  * @version $Revision$
  */
 public class MultiWorkerThread extends SingleWorkerThread
 {
-    private final List threads = new LinkedList();
+    /**
+     * Marks the threads that run tasks, so that {@link #isWorkerThread} does not need to search
+     * a list of threads while holding a lock.
+     */
+    private final ThreadLocal marker = new ThreadLocal();
+    /**
+     * Guards the updates of {@link #running}, and it is not this WorkerThread's monitor so that
+     * starting and finishing tasks does not contend with posting tasks.
+     */
+    private final Object runningLock = new Object();
+    private volatile int running;
 
     protected String getThreadName()
     {
@@ -41,42 +49,56 @@ public class MultiWorkerThread extends SingleWorkerThread
         {
             public void run()
             {
+                marker.set(Boolean.TRUE);
                 try
                 {
-                    synchronized (MultiWorkerThread.this)
-                    {
-                        threads.add(Thread.currentThread());
-                    }
-
                     runTask(task);
                 }
                 finally
                 {
-                    synchronized (MultiWorkerThread.this)
-                    {
-                        threads.remove(Thread.currentThread());
-                    }
+                    marker.set(null);
+                    updateRunning(-1);
                 }
             }
         }, getThreadName());
         thread.setDaemon(true);
-        thread.start();
+        // Count the thread before starting it, so that the task is
+        // never seen as neither queued nor running
+        updateRunning(1);
+        try
+        {
+            thread.start();
+        }
+        catch (RuntimeException x)
+        {
+            updateRunning(-1);
+            throw x;
+        }
+        catch (Error x)
+        {
+            updateRunning(-1);
+            throw x;
+        }
         if (debug) System.out.println("Started WorkerThread " + thread);
     }
 
-    public boolean isWorkerThread()
+    private void updateRunning(int delta)
     {
-        synchronized (this)
+        synchronized (runningLock)
         {
-            return threads.contains(Thread.currentThread());
+            running += delta;
         }
     }
 
+    public boolean isWorkerThread()
+    {
+        return marker.get() != null;
+    }
+
     boolean hasPendingTasks()
     {
-        synchronized (this)
-        {
-            return super.hasPendingTasks() || threads.size() > 0;
-        }
+        // Read the queue first: a task is counted as running before the queue
+        // is seen as empty, so reading in this order never misses a task
+        return super.hasPendingTasks() || running > 0;
     }
 }
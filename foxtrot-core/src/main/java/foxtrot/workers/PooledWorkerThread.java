@@ -0,0 +1,409 @@
+/**
+ * Copyright (c) 2002-2008, Simone Bordet
+ * All rights reserved.
+ *
+ * This software is distributable under the BSD license.
+ * See the terms of the BSD license in the documentation provided with this software.
+ */
+
+package foxtrot.workers;
+
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+
+import foxtrot.Task;
+
+/**
+ * Full implementation of {@link foxtrot.WorkerThread} that uses a bounded pool of threads to run
+ * {@link foxtrot.Task}s subclasses. <br />
+ * Like {@link MultiWorkerThread}, tasks execution is parallelized, but threads are reused
+ * across tasks instead of being created for every task.
+ * One thread waits for incoming tasks and hands them off to an idle pooled thread; if no
+ * pooled thread is idle, a new one is created unless the pool has reached its maximum size,
+ * in which case tasks stay in the queue until a pooled thread becomes idle.
+ * This ensures that the {@link #postTask} method returns immediately in any case. <br />
+ * Pooled threads in excess of the core pool size are discarded after they stayed idle for
+ * the keep alive time, and all pooled threads are interrupted and discarded when this
+ * WorkerThread is stopped.
+ *
+ * @version $Revision$
+ */
+public class PooledWorkerThread extends SingleWorkerThread
+{
+    private final int corePoolSize;
+    private final int maximumPoolSize;
+    private final long keepAliveTime;
+    private final boolean prestart;
+    /**
+     * Marks the pooled threads, so that {@link #isWorkerThread} does not need to search
+     * the pool while holding a lock.
+     */
+    private final ThreadLocal marker = new ThreadLocal();
+    private final List runners = new LinkedList();
+    private final LinkedList idle = new LinkedList();
+    private int active;
+
+    /**
+     * Creates a new PooledWorkerThread with no core threads, an unbounded maximum number
+     * of threads and a keep alive time of 60 seconds.
+     */
+    public PooledWorkerThread()
+    {
+        this(0, Integer.MAX_VALUE, 60000, false);
+    }
+
+    /**
+     * Creates a new PooledWorkerThread with the given core and maximum pool sizes, a keep alive
+     * time of 60 seconds and no prestarted threads.
+     *
+     * @see #PooledWorkerThread(int, int, long, boolean)
+     */
+    public PooledWorkerThread(int corePoolSize, int maximumPoolSize)
+    {
+        this(corePoolSize, maximumPoolSize, 60000, false);
+    }
+
+    /**
+     * Creates a new PooledWorkerThread.
+     *
+     * @param corePoolSize    The number of pooled threads that are kept even if idle
+     * @param maximumPoolSize The maximum number of pooled threads
+     * @param keepAliveTime   The time in milliseconds an idle thread in excess of the core pool size is kept
+     * @param prestart        Whether the core pooled threads are created when this WorkerThread is started
+     * @throws IllegalArgumentException If the sizes or the keep alive time are invalid
+     */
+    public PooledWorkerThread(int corePoolSize, int maximumPoolSize, long keepAliveTime, boolean prestart)
+    {
+        if (corePoolSize < 0) throw new IllegalArgumentException("Core pool size cannot be negative");
+        if (maximumPoolSize <= 0 || maximumPoolSize < corePoolSize) throw new IllegalArgumentException("Invalid maximum pool size " + maximumPoolSize);
+        if (keepAliveTime <= 0) throw new IllegalArgumentException("Keep alive time must be positive");
+        this.corePoolSize = corePoolSize;
+        this.maximumPoolSize = maximumPoolSize;
+        this.keepAliveTime = keepAliveTime;
+        this.prestart = prestart;
+    }
+
+    /**
+     * Returns the number of pooled threads that are kept even if idle.
+     */
+    public int getCorePoolSize()
+    {
+        return corePoolSize;
+    }
+
+    /**
+     * Returns the maximum number of pooled threads.
+     */
+    public int getMaximumPoolSize()
+    {
+        return maximumPoolSize;
+    }
+
+    /**
+     * Returns the time in milliseconds an idle thread in excess of the core pool size is kept.
+     */
+    public long getKeepAliveTime()
+    {
+        return keepAliveTime;
+    }
+
+    /**
+     * Returns the current number of pooled threads, either idle or running a task.
+     */
+    public int getPoolSize()
+    {
+        synchronized (this)
+        {
+            return runners.size();
+        }
+    }
+
+    public void start()
+    {
+        if (isAlive()) return;
+        super.start();
+        if (prestart)
+        {
+            synchronized (this)
+            {
+                while (runners.size() < corePoolSize) idle.addFirst(newRunner());
+            }
+        }
+    }
+
+    /**
+     * Stops abruptly this WorkerThread, interrupting and discarding all pooled threads.
+     * Tasks running in pooled threads are interrupted, and pending tasks will not be
+     * executed until a restart()
+     */
+    protected void stop()
+    {
+        super.stop();
+        synchronized (this)
+        {
+            for (Iterator i = runners.iterator(); i.hasNext();)
+            {
+                Runner runner = (Runner)i.next();
+                runner.stop();
+            }
+            runners.clear();
+            idle.clear();
+            active = 0;
+            notifyAll();
+        }
+    }
+
+    protected String getThreadName()
+    {
+        return "Foxtrot Pooled Worker Thread Runner #" + nextSequence();
+    }
+
+    protected void run(Task task)
+    {
+        Runner runner;
+        try
+        {
+            runner = acquireRunner();
+        }
+        catch (InterruptedException x)
+        {
+            // The task has been dequeued, but we have been stopped: fail it rather
+            // than losing it, and let the caller notice the interruption
+            Thread.currentThread().interrupt();
+            discarded(task);
+            return;
+        }
+        if (!runner.execute(task)) discarded(task);
+    }
+
+    /**
+     * Fails the given dequeued task, that cannot be run since this WorkerThread has been stopped.
+     */
+    private void discarded(Task task)
+    {
+        if (debug) System.out.println("[PooledWorkerThread] Stopped, discarding task " + task);
+        failTask(task, new RejectedTaskException("WorkerThread stopped, discarded task " + task));
+    }
+
+    /**
+     * Returns an idle pooled thread, creating a new one if none is idle and the pool is not full,
+     * or waiting for one to become idle if the pool is full.
+     */
+    private Runner acquireRunner() throws InterruptedException
+    {
+        synchronized (this)
+        {
+            while (idle.isEmpty() && runners.size() >= maximumPoolSize)
+            {
+                if (debug) System.out.println("[PooledWorkerThread] Pool full, waiting for an idle thread");
+                wait();
+            }
+            // Stopped while waiting: stop() also notifies, so wait() may not have thrown
+            if (Thread.interrupted()) throw new InterruptedException();
+            ++active;
+            // Most recently used first, so that least used threads can expire
+            if (!idle.isEmpty()) return (Runner)idle.removeFirst();
+            return newRunner();
+        }
+    }
+
+    private Runner newRunner()
+    {
+        Runner runner = new Runner();
+        Thread thread = new Thread(Thread.currentThread().getThreadGroup(), runner, getThreadName());
+        thread.setDaemon(true);
+        runner.thread = thread;
+        runners.add(runner);
+        thread.start();
+        if (debug) System.out.println("[PooledWorkerThread] Started pooled thread " + thread);
+        return runner;
+    }
+
+    /**
+     * Returns the given runner to the idle list, called after it finished running a task.
+     */
+    private void release(Runner runner)
+    {
+        synchronized (this)
+        {
+            // Stopped while running the task, the runner is not part of the pool anymore
+            if (runner.stopped) return;
+            --active;
+            idle.addFirst(runner);
+            notifyAll();
+        }
+    }
+
+    /**
+     * Removes the current thread from the pool, returning false if the given runner has already
+     * been handed a task or if it must be kept alive as a core thread.
+     */
+    private boolean retire(Runner runner, boolean force)
+    {
+        synchronized (this)
+        {
+            if (!force && runners.size() <= corePoolSize) return false;
+            if (!idle.remove(runner)) return false;
+            runners.remove(runner);
+            notifyAll();
+            if (debug) System.out.println("[PooledWorkerThread] Retired pooled thread " + Thread.currentThread());
+            return true;
+        }
+    }
+
+    /**
+     * Removes the current thread from the pool, called after it finished running a task
+     * that left it interrupted.
+     */
+    private void discard(Runner runner)
+    {
+        synchronized (this)
+        {
+            if (runner.stopped) return;
+            --active;
+            runners.remove(runner);
+            notifyAll();
+            if (debug) System.out.println("[PooledWorkerThread] Discarded pooled thread " + Thread.currentThread());
+        }
+    }
+
+    public boolean isWorkerThread()
+    {
+        return marker.get() != null;
+    }
+
+    boolean hasPendingTasks()
+    {
+        synchronized (this)
+        {
+            return super.hasPendingTasks() || active > 0;
+        }
+    }
+
+    private class Runner implements Runnable
+    {
+        private Thread thread;
+        private Task task;
+        // Whether the pooled thread exited and cannot be handed tasks anymore, guarded by this runner
+        private boolean done;
+        // Written under the PooledWorkerThread lock, read also by the pooled thread
+        private volatile boolean stopped;
+
+        /**
+         * Called with the PooledWorkerThread lock held, when this WorkerThread is stopped.
+         */
+        private void stop()
+        {
+            stopped = true;
+            thread.interrupt();
+            if (debug) System.out.println("[PooledWorkerThread] Stopped pooled thread " + thread);
+        }
+
+        /**
+         * Hands the given task to the pooled thread, returning false if the pooled thread exited.
+         */
+        private boolean execute(Task task)
+        {
+            synchronized (this)
+            {
+                if (done) return false;
+                this.task = task;
+                notify();
+                return true;
+            }
+        }
+
+        private Task waitForTask() throws InterruptedException
+        {
+            synchronized (this)
+            {
+                long end = System.currentTimeMillis() + keepAliveTime;
+                long wait = keepAliveTime;
+                while (task == null && wait > 0)
+                {
+                    wait(wait);
+                    wait = end - System.currentTimeMillis();
+                }
+                Task result = task;
+                task = null;
+                return result;
+            }
+        }
+
+        public void run()
+        {
+            marker.set(Boolean.TRUE);
+            try
+            {
+                work();
+            }
+            finally
+            {
+                marker.set(null);
+                exit();
+            }
+        }
+
+        /**
+         * Stops accepting tasks, failing the task handed to the pooled thread
+         * but not taken because it has been stopped, if any.
+         */
+        private void exit()
+        {
+            Task t;
+            synchronized (this)
+            {
+                done = true;
+                t = task;
+                task = null;
+            }
+            if (t != null) discarded(t);
+        }
+
+        private void work()
+        {
+            boolean dying = false;
+            while (!stopped)
+            {
+                Task t;
+                try
+                {
+                    t = waitForTask();
+                }
+                catch (InterruptedException x)
+                {
+                    if (stopped) return;
+                    // Die, unless a task is being handed off to us
+                    if (retire(this, true)) return;
+                    dying = true;
+                    continue;
+                }
+
+                if (t == null)
+                {
+                    // Either a core thread, or a task is being handed off to us
+                    if (retire(this, dying)) return;
+                    continue;
+                }
+
+                boolean interrupted = true;
+                try
+                {
+                    runTask(t);
+                    // A task that restored the interrupted status of this thread
+                    // wants it to die, as it happens for SingleWorkerThread
+                    interrupted = dying || Thread.currentThread().isInterrupted();
+                }
+                finally
+                {
+                    if (interrupted)
+                        discard(this);
+                    else
+                        release(this);
+                }
+                if (interrupted) return;
+            }
+        }
+    }
+}
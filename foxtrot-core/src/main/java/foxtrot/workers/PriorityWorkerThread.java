@@ -0,0 +1,159 @@
+/**
+ * Copyright (c) 2002-2008, Simone Bordet
+ * All rights reserved.
+ *
+ * This software is distributable under the BSD license.
+ * See the terms of the BSD license in the documentation provided with this software.
+ */
+
+package foxtrot.workers;
+
+import foxtrot.Task;
+import foxtrot.utils.BinaryHeap;
+
+/**
+ * Full implementation of {@link foxtrot.WorkerThread} that uses a single worker thread to run
+ * {@link foxtrot.Task}s subclasses in order of {@link foxtrot.Task#getPriority() priority}. <br />
+ * Tasks execution is serialized like in {@link SingleWorkerThread}, but tasks with higher
+ * priority are executed before tasks with lower priority; tasks with the same priority
+ * are executed in the order they have been posted. <br />
+ * For example, a task posted by {@link foxtrot.Worker#post(foxtrot.Task)} in response to a
+ * user click can be given a higher priority so that it does not wait for the background
+ * tasks already queued:
+ * <pre>
+ * Worker.setWorkerThread(new PriorityWorkerThread());
+ * ...
+ * prefetchTask.setPriority(-1);
+ * AsyncWorker.post(prefetchTask);
+ * ...
+ * Worker.post(userTask);
+ * </pre>
+ * To avoid that low priority tasks wait forever while higher priority tasks keep being posted,
+ * an aging interval can be specified: for every aging interval a task waits in the queue,
+ * its priority is raised by one. <br />
+ * The internal priority queue can be bounded like the queue of {@link SingleWorkerThread};
+ * when it is full, {@link QueueFullPolicy#DROP_OLDEST} drops the task that has been waiting
+ * for the longest time, regardless of its priority.
+ *
+ * @version $Revision$
+ */
+public class PriorityWorkerThread extends SingleWorkerThread
+{
+    private final long agingInterval;
+    private final long agingNanos;
+    private final BinaryHeap heap = new BinaryHeap();
+    private long sequence;
+
+    /**
+     * Creates a new PriorityWorkerThread without aging.
+     */
+    public PriorityWorkerThread()
+    {
+        this(0);
+    }
+
+    /**
+     * Creates a new PriorityWorkerThread with the given aging interval.
+     *
+     * @param agingInterval The time in milliseconds after which the priority of a waiting task is
+     *                      raised by one, or zero to disable aging
+     * @throws IllegalArgumentException If the aging interval is negative
+     */
+    public PriorityWorkerThread(long agingInterval)
+    {
+        if (agingInterval < 0) throw new IllegalArgumentException("Aging interval cannot be negative");
+        this.agingInterval = agingInterval;
+        this.agingNanos = agingInterval * 1000000L;
+    }
+
+    /**
+     * Returns the time in milliseconds after which the priority of a waiting task is raised by one,
+     * or zero if aging is disabled.
+     */
+    public long getAgingInterval()
+    {
+        return agingInterval;
+    }
+
+    protected String getThreadName()
+    {
+        return "Foxtrot Priority Worker Thread #" + nextSequence();
+    }
+
+    Object newItem(Task t)
+    {
+        // Since all waiting tasks age at the same rate, the relative order of two tasks
+        // does not change over time, and can be computed once at enqueue time, using
+        // the monotonic clock so that changes of the system time do not reorder the tasks
+        long rank = t.getPriority();
+        if (agingNanos > 0) rank = rank * agingNanos - System.nanoTime();
+        return new Entry(t, rank);
+    }
+
+    void offer(Object item)
+    {
+        Entry entry = (Entry)item;
+        if (debug) System.out.println("[PriorityWorkerThread] Enqueueing task:" + entry.task);
+
+        entry.sequence = sequence++;
+        heap.add(entry);
+
+        if (heap.size() == 1) notifyAll();
+    }
+
+    Task poll()
+    {
+        return ((Entry)heap.poll()).task;
+    }
+
+    Task pollOldest()
+    {
+        Entry oldest = (Entry)heap.get(0);
+        for (int i = 1; i < heap.size(); ++i)
+        {
+            Entry entry = (Entry)heap.get(i);
+            if (entry.sequence < oldest.sequence) oldest = entry;
+        }
+        heap.remove(oldest);
+        return oldest.task;
+    }
+
+    boolean remove(Task task)
+    {
+        for (int i = 0; i < heap.size(); ++i)
+        {
+            Entry entry = (Entry)heap.get(i);
+            if (entry.task == task) return heap.remove(entry);
+        }
+        return false;
+    }
+
+    int size()
+    {
+        return heap.size();
+    }
+
+    private static class Entry extends BinaryHeap.Node
+    {
+        private final Task task;
+        private final long rank;
+        private long sequence;
+
+        private Entry(Task task, long rank)
+        {
+            this.task = task;
+            this.rank = rank;
+        }
+
+        /**
+         * Returns whether this entry must be executed before the given entry
+         */
+        protected boolean before(BinaryHeap.Node node)
+        {
+            Entry other = (Entry)node;
+            // Compare the difference, since the origin of System.nanoTime() is arbitrary
+            if (rank != other.rank) return rank - other.rank > 0;
+            return sequence < other.sequence;
+        }
+    }
+}
@@ -0,0 +1,59 @@
+/**
+ * Copyright (c) 2002-2008, Simone Bordet
+ * All rights reserved.
+ *
+ * This software is distributable under the BSD license.
+ * See the terms of the BSD license in the documentation provided with this software.
+ */
+
+package foxtrot.workers;
+
+/**
+ * The policies applied by {@link SingleWorkerThread} and its subclasses when a
+ * {@link foxtrot.Task} is posted and the internal queue has reached its
+ * {@link SingleWorkerThread#setMaximumQueueSize maximum size}.
+ *
+ * @version $Revision$
+ * @see SingleWorkerThread#setQueueFullPolicy
+ */
+public final class QueueFullPolicy
+{
+    /**
+     * The posted task is not enqueued, and {@link SingleWorkerThread#postTask} throws a
+     * {@link RejectedTaskException}.
+     */
+    public static final QueueFullPolicy REJECT = new QueueFullPolicy("REJECT");
+
+    /**
+     * The posted task is not enqueued, and it is completed with a {@link RejectedTaskException}
+     * as failure: {@link foxtrot.Worker#post(foxtrot.Task)} throws it, and
+     * {@link foxtrot.AsyncTask#failure(Throwable)} is called with it.
+     */
+    public static final QueueFullPolicy DROP_NEWEST = new QueueFullPolicy("DROP_NEWEST");
+
+    /**
+     * The oldest task in the queue is removed to make space for the posted task, and it is
+     * completed with a {@link RejectedTaskException} as failure, like for {@link #DROP_NEWEST}.
+     */
+    public static final QueueFullPolicy DROP_OLDEST = new QueueFullPolicy("DROP_OLDEST");
+
+    /**
+     * When the task is posted from the Event Dispatch Thread, {@link SingleWorkerThread#postTask}
+     * dispatches AWT events, using the {@link foxtrot.Worker#getEventPump() Worker's EventPump},
+     * until space is available in the queue, so that the GUI does not freeze.
+     * When the task is posted from another thread, the thread blocks until space is available.
+     */
+    public static final QueueFullPolicy PUMP_EVENTS = new QueueFullPolicy("PUMP_EVENTS");
+
+    private final String name;
+
+    private QueueFullPolicy(String name)
+    {
+        this.name = name;
+    }
+
+    public String toString()
+    {
+        return name;
+    }
+}
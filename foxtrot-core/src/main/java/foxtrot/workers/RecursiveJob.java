@@ -0,0 +1,116 @@
+/**
+ * Copyright (c) 2002-2008, Simone Bordet
+ * All rights reserved.
+ *
+ * This software is distributable under the BSD license.
+ * See the terms of the BSD license in the documentation provided with this software.
+ */
+
+package foxtrot.workers;
+
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+
+import foxtrot.Job;
+
+/**
+ * A {@link Job} that can split its work into RecursiveJob subtasks that run in parallel
+ * in a {@link java.util.concurrent.ForkJoinPool}. <br />
+ * RecursiveJobs are normally posted via {@link foxtrot.ConcurrentWorker} configured with a
+ * {@link WorkStealingWorkerThread}, so that the subtasks forked by the {@link #run} method
+ * are stolen by idle threads of the same pool, for example:
+ * <pre>
+ * public class Sum extends RecursiveJob
+ * {
+ *     private final long[] array;
+ *     private final int low;
+ *     private final int high;
+ *
+ *     ...
+ *
+ *     public Object run()
+ *     {
+ *         if (high - low &lt; THRESHOLD)
+ *         {
+ *             long sum = 0;
+ *             for (int i = low; i &lt; high; ++i) sum += array[i];
+ *             return new Long(sum);
+ *         }
+ *         int middle = (low + high) &gt;&gt;&gt; 1;
+ *         Sum left = new Sum(array, low, middle);
+ *         Sum right = new Sum(array, middle, high);
+ *         left.fork();
+ *         long rightSum = ((Long)right.run()).longValue();
+ *         long leftSum = ((Long)left.join()).longValue();
+ *         return new Long(leftSum + rightSum);
+ *     }
+ * }
+ * </pre>
+ * When posted from a thread that is not a thread of a ForkJoinPool, forked subtasks
+ * run in the common ForkJoinPool. <br />
+ * Forked subtasks run their {@link #run} method directly, without the protection domain
+ * handling performed for posted Tasks; their result or exception is available via {@link #join}.
+ *
+ * @version $Revision$
+ */
+public abstract class RecursiveJob extends Job
+{
+    private ForkJoinTask forked;
+
+    /**
+     * Arranges to run this RecursiveJob asynchronously in the pool the current task is running in.
+     *
+     * @return this RecursiveJob
+     * @see #join
+     */
+    public final RecursiveJob fork()
+    {
+        forked = new Subtask(this);
+        forked.fork();
+        return this;
+    }
+
+    /**
+     * Returns the result of this RecursiveJob when it is done, after a call to {@link #fork}.
+     * If the {@link #run} method threw a RuntimeException or an Error, it is rethrown here.
+     *
+     * @throws IllegalStateException If this RecursiveJob has not been forked
+     */
+    public final Object join()
+    {
+        if (forked == null) throw new IllegalStateException("RecursiveJob not forked");
+        return forked.join();
+    }
+
+    /**
+     * Forks the given RecursiveJobs and returns when they are all done.
+     * If any of the RecursiveJobs threw a RuntimeException or an Error, it is rethrown here.
+     */
+    public static void invokeAll(RecursiveJob[] jobs)
+    {
+        ForkJoinTask[] subtasks = new ForkJoinTask[jobs.length];
+        for (int i = 0; i < jobs.length; ++i)
+        {
+            subtasks[i] = new Subtask(jobs[i]);
+            jobs[i].forked = subtasks[i];
+        }
+        ForkJoinTask.invokeAll(subtasks);
+    }
+
+    private static class Subtask extends RecursiveTask
+    {
+        private static final long serialVersionUID = 1L;
+
+        private final RecursiveJob job;
+
+        private Subtask(RecursiveJob job)
+        {
+            this.job = job;
+        }
+
+        protected Object compute()
+        {
+            return job.run();
+        }
+    }
+}
@@ -0,0 +1,29 @@
+/**
+ * Copyright (c) 2002-2008, Simone Bordet
+ * All rights reserved.
+ *
+ * This software is distributable under the BSD license.
+ * See the terms of the BSD license in the documentation provided with this software.
+ */
+
+package foxtrot.workers;
+
+/**
+ * Thrown when a {@link foxtrot.Task} cannot be executed by a {@link foxtrot.WorkerThread},
+ * for example because its task queue is full.
+ *
+ * @version $Revision$
+ * @see QueueFullPolicy
+ */
+public class RejectedTaskException extends RuntimeException
+{
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Creates a new RejectedTaskException with the given message.
+     */
+    public RejectedTaskException(String message)
+    {
+        super(message);
+    }
+}
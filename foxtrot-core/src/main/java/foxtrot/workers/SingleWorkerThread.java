@@ -8,13 +8,21 @@
 
 package foxtrot.workers;
 
+import java.util.LinkedList;
+
+import javax.swing.SwingUtilities;
+
 import foxtrot.AbstractWorkerThread;
+import foxtrot.Job;
 import foxtrot.Task;
 
 /**
  * Full implementation of {@link foxtrot.WorkerThread} that uses a single worker thread to run
  * {@link foxtrot.Task}s subclasses. <br />
- * Tasks execution is serialized: tasks are enqueued and executed one after the other.
+ * Tasks execution is serialized: tasks are enqueued and executed one after the other. <br />
+ * The internal queue is unbounded by default; it can be bounded via {@link #setMaximumQueueSize},
+ * and the {@link QueueFullPolicy} set via {@link #setQueueFullPolicy} decides what happens
+ * when a task is posted and the queue is full.
  *
  * @version $Revision$
  */
@@ -25,7 +33,14 @@ public class SingleWorkerThread extends AbstractWorkerThread implements Runnable
 
     private Thread thread;
     private Link current;
+    private Link last;
+    private int size;
     private boolean pending;
+    private int maximumQueueSize = Integer.MAX_VALUE;
+    private QueueFullPolicy queueFullPolicy = QueueFullPolicy.REJECT;
+    private final LinkedList spaceWaiters = new LinkedList();
+    private long rejectedTasks;
+    private long droppedTasks;
 
     public void start()
     {
@@ -79,8 +94,11 @@ public class SingleWorkerThread extends AbstractWorkerThread implements Runnable
     }
 
     /**
-     * Posts the given Task onto an internal queue.
+     * Posts the given Task onto an internal queue. <br />
+     * If the queue has reached its {@link #getMaximumQueueSize maximum size}, the
+     * {@link #getQueueFullPolicy queue full policy} is applied.
      *
+     * @throws RejectedTaskException If the queue is full and the policy is {@link QueueFullPolicy#REJECT}
      * @see #takeTask
      */
     public void postTask(Task t)
@@ -90,28 +108,169 @@ public class SingleWorkerThread extends AbstractWorkerThread implements Runnable
         // Useful also if the WorkerThread has been replaced but not started by the user
         if (!isAlive()) start();
 
-        // Synchronized since the variable current is accessed from two threads.
-        // See takeTask()
-        synchronized (this)
+        // Allocate the queue item before taking the lock, to hold the lock shorter
+        Object item = newItem(t);
+        Task dropped = null;
+
+        while (true)
         {
-            if (hasTasks())
-            {
-                if (debug) System.out.println("[SingleWorkerThread] Task queue not empty, enqueueing task:" + t);
+            Task space;
 
-                // Append the given task at the end of the queue
-                Link item = current;
-                while (item.next != null) item = item.next;
-                item.next = new Link(t);
-            }
-            else
+            // Synchronized since the variable current is accessed from two threads.
+            // See takeTask()
+            synchronized (this)
             {
-                if (debug) System.out.println("[SingleWorkerThread] Task queue empty, adding task:" + t);
+                if (size() < maximumQueueSize)
+                {
+                    offer(item);
+                    // Only now the Task can be removed from the queue if it is cancelled
+                    enqueued(t);
+                    break;
+                }
+
+                if (debug) System.out.println("[SingleWorkerThread] Task queue full, applying policy " + queueFullPolicy + " to task:" + t);
 
-                // Add the given task and notify waiting
-                current = new Link(t);
-                notifyAll();
+                if (queueFullPolicy == QueueFullPolicy.REJECT)
+                {
+                    ++rejectedTasks;
+                    throw new RejectedTaskException("Task queue full, rejected task " + t);
+                }
+                else if (queueFullPolicy == QueueFullPolicy.DROP_NEWEST)
+                {
+                    ++droppedTasks;
+                    dropped = t;
+                    break;
+                }
+                else if (queueFullPolicy == QueueFullPolicy.DROP_OLDEST)
+                {
+                    ++droppedTasks;
+                    dropped = pollOldest();
+                    offer(item);
+                    enqueued(t);
+                    break;
+                }
+
+                // QueueFullPolicy.PUMP_EVENTS
+                if (!SwingUtilities.isEventDispatchThread())
+                {
+                    try
+                    {
+                        wait();
+                        continue;
+                    }
+                    catch (InterruptedException x)
+                    {
+                        Thread.currentThread().interrupt();
+                        ++rejectedTasks;
+                        throw new RejectedTaskException("Interrupted while waiting for space in the task queue, rejected task " + t);
+                    }
+                }
+                space = new SpaceJob();
+                spaceWaiters.add(space);
             }
+
+            // Dispatch AWT events until takeTask() makes space in the queue
+            pumpEvents(space);
         }
+
+        // Release who is waiting for the dropped task
+        if (dropped != null) failTask(dropped, new RejectedTaskException("Task queue full, dropped task " + dropped));
+    }
+
+    /**
+     * Creates the item that holds the given Task in the internal queue.
+     * Called without holding the lock of this WorkerThread.
+     * Package protected, overridden by {@link PriorityWorkerThread}
+     */
+    Object newItem(Task task)
+    {
+        return new Link(task);
+    }
+
+    /**
+     * Appends the given item, created by {@link #newItem}, to the internal queue.
+     * Called with the lock of this WorkerThread held.
+     * Package protected, overridden by {@link PriorityWorkerThread}
+     */
+    void offer(Object item)
+    {
+        Link link = (Link)item;
+        if (current != null)
+        {
+            if (debug) System.out.println("[SingleWorkerThread] Task queue not empty, enqueueing task:" + link.task);
+
+            // Append the given task at the end of the queue
+            last.next = link;
+        }
+        else
+        {
+            if (debug) System.out.println("[SingleWorkerThread] Task queue empty, adding task:" + link.task);
+
+            // Add the given task and notify waiting
+            current = link;
+            notifyAll();
+        }
+        // Keep track of the tail, so that appending does not walk the queue
+        last = link;
+        ++size;
+    }
+
+    /**
+     * Removes and returns the next Task to execute from the non empty internal queue.
+     * Called with the lock of this WorkerThread held.
+     * Package protected, overridden by {@link PriorityWorkerThread}
+     */
+    Task poll()
+    {
+        Task t = current.task;
+        current = current.next;
+        if (current == null) last = null;
+        --size;
+        return t;
+    }
+
+    /**
+     * Removes and returns the oldest Task from the non empty internal queue,
+     * for {@link QueueFullPolicy#DROP_OLDEST}.
+     * Called with the lock of this WorkerThread held.
+     * Package protected, overridden by {@link PriorityWorkerThread}
+     */
+    Task pollOldest()
+    {
+        return poll();
+    }
+
+    /**
+     * Removes the given Task from the internal queue, returning whether it was in the queue.
+     * Called with the lock of this WorkerThread held.
+     * Package protected, overridden by {@link PriorityWorkerThread}
+     */
+    boolean remove(Task task)
+    {
+        Link previous = null;
+        for (Link item = current; item != null; previous = item, item = item.next)
+        {
+            if (item.task != task) continue;
+
+            if (previous == null)
+                current = item.next;
+            else
+                previous.next = item.next;
+            if (item == last) last = previous;
+            --size;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Returns the number of Tasks in the internal queue.
+     * Called with the lock of this WorkerThread held.
+     * Package protected, overridden by {@link PriorityWorkerThread}
+     */
+    int size()
+    {
+        return size;
     }
 
     /**
@@ -121,11 +280,14 @@ public class SingleWorkerThread extends AbstractWorkerThread implements Runnable
      */
     protected Task takeTask() throws InterruptedException
     {
+        Task t;
+        Task space = null;
+
         // Synchronized since the variable current is accessed from two threads.
         // See postTask()
         synchronized (this)
         {
-            while (!hasTasks())
+            while (size() == 0)
             {
                 if (debug) System.out.println("[SingleWorkerThread] Task queue empty, waiting for tasks");
                 pending = false;
@@ -133,17 +295,147 @@ public class SingleWorkerThread extends AbstractWorkerThread implements Runnable
             }
             pending = true;
             // Taking the current task, removing it from the queue
-            Task t = current.task;
-            current = current.next;
-            return t;
+            t = poll();
+
+            space = spaceFreed();
+        }
+
+        if (space != null) runTask(space);
+        return t;
+    }
+
+    /**
+     * Removes the given cancelled Task from the internal queue.
+     */
+    protected boolean removeTask(Task task)
+    {
+        Task space = null;
+        boolean removed = false;
+        synchronized (this)
+        {
+            if (remove(task))
+            {
+                if (debug) System.out.println("[SingleWorkerThread] Removing cancelled task:" + task);
+                space = spaceFreed();
+                removed = true;
+            }
+        }
+
+        if (space != null) runTask(space);
+        return removed;
+    }
+
+    /**
+     * Wakes up who is waiting for space in the bounded queue, returning the job to be
+     * completed to stop the event pumping of the last poster waiting, if any.
+     */
+    private Task spaceFreed()
+    {
+        if (maximumQueueSize == Integer.MAX_VALUE) return null;
+        notifyAll();
+        // Event pumps are nested, so the last one must return first
+        if (spaceWaiters.isEmpty()) return null;
+        return (Task)spaceWaiters.removeLast();
+    }
+
+    /**
+     * Returns the maximum number of tasks that can wait in the internal queue,
+     * by default {@link Integer#MAX_VALUE}.
+     *
+     * @see #setMaximumQueueSize
+     */
+    public int getMaximumQueueSize()
+    {
+        synchronized (this)
+        {
+            return maximumQueueSize;
         }
     }
 
-    private boolean hasTasks()
+    /**
+     * Sets the maximum number of tasks that can wait in the internal queue. <br />
+     * When the queue is full, {@link #postTask} applies the {@link #getQueueFullPolicy queue full policy}.
+     *
+     * @throws IllegalArgumentException If the maximum queue size is not positive
+     * @see #getMaximumQueueSize
+     * @see #setQueueFullPolicy
+     */
+    public void setMaximumQueueSize(int maximumQueueSize)
     {
+        if (maximumQueueSize <= 0) throw new IllegalArgumentException("Maximum queue size must be positive");
         synchronized (this)
         {
-            return current != null;
+            this.maximumQueueSize = maximumQueueSize;
+            // Space may be available now
+            notifyAll();
+        }
+    }
+
+    /**
+     * Returns the policy applied when a task is posted and the internal queue is full,
+     * by default {@link QueueFullPolicy#REJECT}.
+     *
+     * @see #setQueueFullPolicy
+     */
+    public QueueFullPolicy getQueueFullPolicy()
+    {
+        synchronized (this)
+        {
+            return queueFullPolicy;
+        }
+    }
+
+    /**
+     * Sets the policy applied when a task is posted and the internal queue is full.
+     *
+     * @throws IllegalArgumentException If the policy is null
+     * @see #getQueueFullPolicy
+     * @see #setMaximumQueueSize
+     */
+    public void setQueueFullPolicy(QueueFullPolicy queueFullPolicy)
+    {
+        if (queueFullPolicy == null) throw new IllegalArgumentException("QueueFullPolicy cannot be null");
+        synchronized (this)
+        {
+            this.queueFullPolicy = queueFullPolicy;
+        }
+    }
+
+    /**
+     * Returns the number of tasks rejected because the internal queue was full.
+     *
+     * @see QueueFullPolicy#REJECT
+     */
+    public long getRejectedTaskCount()
+    {
+        synchronized (this)
+        {
+            return rejectedTasks;
+        }
+    }
+
+    /**
+     * Returns the number of tasks dropped because the internal queue was full.
+     *
+     * @see QueueFullPolicy#DROP_NEWEST
+     * @see QueueFullPolicy#DROP_OLDEST
+     */
+    public long getDroppedTaskCount()
+    {
+        synchronized (this)
+        {
+            return droppedTasks;
+        }
+    }
+
+    /**
+     * Returns the number of tasks waiting in the internal queue to be executed.
+     */
+    public int getQueueSize()
+    {
+        synchronized (this)
+        {
+            return size();
         }
     }
 
@@ -151,7 +443,8 @@ public class SingleWorkerThread extends AbstractWorkerThread implements Runnable
     {
         synchronized (this)
         {
-            return pending;
+            // A posted task is pending even before this thread wakes up to take it
+            return pending || size() > 0;
         }
     }
 
@@ -188,6 +481,12 @@ public class SingleWorkerThread extends AbstractWorkerThread implements Runnable
                 break;
             }
         }
+
+        // Stopped: the tasks still queued wait for a restart()
+        synchronized (this)
+        {
+            pending = false;
+        }
     }
 
     /**
@@ -209,4 +508,16 @@ public class SingleWorkerThread extends AbstractWorkerThread implements Runnable
             this.task = task;
         }
     }
+
+    /**
+     * Completed by the worker thread when space is available in the queue,
+     * to stop the event pumping started by postTask()
+     */
+    private static class SpaceJob extends Job
+    {
+        public Object run()
+        {
+            return null;
+        }
+    }
 }
@@ -0,0 +1,149 @@
+/**
+ * Copyright (c) 2002-2008, Simone Bordet
+ * All rights reserved.
+ *
+ * This software is distributable under the BSD license.
+ * See the terms of the BSD license in the documentation provided with this software.
+ */
+
+package foxtrot.workers;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import foxtrot.AbstractWorkerThread;
+import foxtrot.Task;
+
+/**
+ * Full implementation of {@link foxtrot.WorkerThread} that runs each {@link foxtrot.Task}
+ * in its own virtual thread, available from JDK 21. <br />
+ * Tasks execution is parallelized like in {@link MultiWorkerThread}, but since virtual
+ * threads are cheap, thousands of blocking tasks can be posted without consuming
+ * platform threads. <br />
+ * Differently from the other WorkerThreads, there is no internal queue and no thread waiting
+ * for tasks: {@link #postTask} starts a new virtual thread directly, and the bookkeeping is
+ * done with atomic operations, so that virtual threads never block while holding a monitor
+ * (which would pin their carrier thread). <br />
+ * This class is loaded only when explicitly used, so that Foxtrot still runs on older JREs;
+ * use {@link #isSupported()} to test whether the current JRE supports virtual threads.
+ *
+ * @version $Revision$
+ */
+public class VirtualWorkerThread extends AbstractWorkerThread
+{
+    private static final ThreadFactory virtualThreadFactory = createVirtualThreadFactory();
+    static final boolean debug = false;
+
+    private final ThreadFactory threadFactory;
+    private final ThreadLocal marker = new ThreadLocal();
+    private final AtomicInteger running = new AtomicInteger();
+
+    /**
+     * Creates a new VirtualWorkerThread.
+     *
+     * @throws UnsupportedOperationException If the current JRE does not support virtual threads
+     * @see #isSupported()
+     */
+    public VirtualWorkerThread()
+    {
+        if (virtualThreadFactory == null) throw new UnsupportedOperationException("Virtual threads are not supported by the current JRE");
+        this.threadFactory = virtualThreadFactory;
+    }
+
+    /**
+     * Creates a new VirtualWorkerThread that creates threads using the given ThreadFactory. <br />
+     * Normally there is no need to call this constructor, as the default virtual
+     * thread factory is the right choice; it is available mainly for testing, or to
+     * use a factory for virtual threads configured by the application.
+     *
+     * @throws IllegalArgumentException If the given ThreadFactory is null
+     */
+    public VirtualWorkerThread(ThreadFactory threadFactory)
+    {
+        if (threadFactory == null) throw new IllegalArgumentException("ThreadFactory cannot be null");
+        this.threadFactory = threadFactory;
+    }
+
+    /**
+     * Returns whether the current JRE supports virtual threads.
+     */
+    public static boolean isSupported()
+    {
+        return virtualThreadFactory != null;
+    }
+
+    private static ThreadFactory createVirtualThreadFactory()
+    {
+        // Invoke Thread.ofVirtual().factory() via reflection, since it is available only in JDK 21
+        try
+        {
+            Object builder = Thread.class.getMethod("ofVirtual", (Class[])null).invoke(null, (Object[])null);
+            Method factory = Class.forName("java.lang.Thread$Builder").getMethod("factory", (Class[])null);
+            return (ThreadFactory)factory.invoke(builder, (Object[])null);
+        }
+        catch (Throwable x)
+        {
+            if (debug) System.out.println("[VirtualWorkerThread] Virtual threads not supported: " + x);
+            return null;
+        }
+    }
+
+    /**
+     * Does nothing, since a new thread is started for every posted task.
+     */
+    public void start()
+    {
+    }
+
+    /**
+     * Always returns true, since a new thread is started for every posted task.
+     */
+    public boolean isAlive()
+    {
+        return true;
+    }
+
+    public boolean isWorkerThread()
+    {
+        return marker.get() != null;
+    }
+
+    public void postTask(final Task task)
+    {
+        running.incrementAndGet();
+        // Virtual threads are always daemon threads
+        Thread thread = threadFactory.newThread(new Runnable()
+        {
+            public void run()
+            {
+                marker.set(Boolean.TRUE);
+                try
+                {
+                    runTask(task);
+                }
+                finally
+                {
+                    marker.remove();
+                    running.decrementAndGet();
+                }
+            }
+        });
+        try
+        {
+            thread.setName("Foxtrot Virtual Worker Thread #" + SingleWorkerThread.nextSequence());
+            thread.start();
+        }
+        catch (RuntimeException x)
+        {
+            running.decrementAndGet();
+            throw x;
+        }
+        if (debug) System.out.println("[VirtualWorkerThread] Started " + thread);
+    }
+
+    boolean hasPendingTasks()
+    {
+        return running.get() > 0;
+    }
+}
@@ -0,0 +1,76 @@
+/**
+ * Copyright (c) 2002-2008, Simone Bordet
+ * All rights reserved.
+ *
+ * This software is distributable under the BSD license.
+ * See the terms of the BSD license in the documentation provided with this software.
+ */
+
+package foxtrot.workers;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+
+/**
+ * Full implementation of {@link foxtrot.WorkerThread} that runs {@link foxtrot.Task}s
+ * in a {@link ForkJoinPool}. <br />
+ * Tasks execution is parallelized over a bounded number of threads, normally one per
+ * processor, which makes this WorkerThread suitable for CPU bound tasks posted via
+ * {@link foxtrot.ConcurrentWorker}. Tasks that extend {@link RecursiveJob} can split their
+ * work into subtasks that idle threads of the pool steal and run in parallel. <br />
+ * All the threads of the pool are worker threads, so that a subtask running in a
+ * different thread than its parent task can still call
+ * {@link foxtrot.Worker#post(foxtrot.Task)}. <br />
+ * This class is loaded only when explicitly used, so that Foxtrot still runs on JREs
+ * that do not have the <tt>java.util.concurrent</tt> package.
+ *
+ * @version $Revision$
+ */
+public class WorkStealingWorkerThread extends ExecutorWorkerThread
+{
+    /**
+     * Creates a new WorkStealingWorkerThread with parallelism equal to the number of processors.
+     */
+    public WorkStealingWorkerThread()
+    {
+        this(new ForkJoinPool());
+    }
+
+    /**
+     * Creates a new WorkStealingWorkerThread with the given parallelism.
+     *
+     * @throws IllegalArgumentException If the parallelism is not positive
+     */
+    public WorkStealingWorkerThread(int parallelism)
+    {
+        this(new ForkJoinPool(parallelism));
+    }
+
+    /**
+     * Creates a new WorkStealingWorkerThread that runs tasks in the given ForkJoinPool.
+     *
+     * @throws IllegalArgumentException If the given ForkJoinPool is null
+     */
+    public WorkStealingWorkerThread(ForkJoinPool pool)
+    {
+        super(pool);
+    }
+
+    /**
+     * Returns the ForkJoinPool used to run tasks.
+     */
+    public ForkJoinPool getPool()
+    {
+        return (ForkJoinPool)getExecutor();
+    }
+
+    /**
+     * Returns whether the current thread is a thread of the ForkJoinPool used by this WorkerThread.
+     */
+    public boolean isWorkerThread()
+    {
+        Thread thread = Thread.currentThread();
+        if (thread instanceof ForkJoinWorkerThread && ((ForkJoinWorkerThread)thread).getPool() == getPool()) return true;
+        return super.isWorkerThread();
+    }
+}
@@ -8,8 +8,13 @@
 
 package foxtrot;
 
+import java.util.ArrayList;
+import java.util.List;
 import javax.swing.SwingUtilities;
 
+import foxtrot.workers.RejectedTaskException;
+import foxtrot.workers.SingleWorkerThread;
+
 /**
  * @version $Revision$
  */
@@ -282,4 +287,670 @@ public class AsyncWorkerTest extends FoxtrotTestCase
             }
         });
     }
+
+    public void testCoalescing() throws Exception
+    {
+        final MutableInteger runs = new MutableInteger(0);
+        final MutableInteger cancels = new MutableInteger(0);
+        final MutableReference result = new MutableReference(null);
+        invokeTest(AsyncWorker.getWorkerThread(), new Runnable()
+        {
+            public void run()
+            {
+                final String key = "search";
+                for (int i = 0; i < 5; ++i)
+                {
+                    final String text = String.valueOf(i);
+                    AsyncTask task = new AsyncTask()
+                    {
+                        public Object run() throws Exception
+                        {
+                            synchronized (runs)
+                            {
+                                runs.set(runs.get() + 1);
+                            }
+                            Thread.sleep(500);
+                            return text;
+                        }
+
+                        public void success(Object r)
+                        {
+                            result.set(r);
+                        }
+
+                        public void failure(Throwable x)
+                        {
+                            result.set(x);
+                        }
+
+                        public void cancelled()
+                        {
+                            cancels.set(cancels.get() + 1);
+                        }
+                    };
+                    task.setCoalescingKey(key);
+                    AsyncWorker.post(task);
+                }
+
+                // Dispatch events while the tasks run, since
+                // the waiting task is posted when the running one finishes
+                Worker.post(new Job()
+                {
+                    public Object run()
+                    {
+                        sleep(1500);
+                        return null;
+                    }
+                });
+            }
+        }, new Runnable()
+        {
+            public void run()
+            {
+                // The first task runs, unless it did not start before the second was posted,
+                // the last one runs after it, the others are cancelled
+                synchronized (runs)
+                {
+                    if (runs.get() < 1 || runs.get() > 2) fail(String.valueOf(runs.get()));
+                    if (runs.get() + cancels.get() != 5) fail(String.valueOf(cancels.get()));
+                }
+                if (!"4".equals(result.get())) fail(String.valueOf(result.get()));
+            }
+        });
+    }
+
+    public void testCoalescingReplacesTaskNotStarted() throws Exception
+    {
+        final MutableInteger runs = new MutableInteger(0);
+        final MutableInteger cancels = new MutableInteger(0);
+        final MutableReference result = new MutableReference(null);
+        WorkerThread previous = AsyncWorker.getWorkerThread();
+        WorkerThread workerThread = new SingleWorkerThread();
+        AsyncWorker.setWorkerThread(workerThread);
+        try
+        {
+            invokeTest(workerThread, new Runnable()
+            {
+                public void run()
+                {
+                    // Keep the worker thread busy, so that the coalesced tasks wait in the queue
+                    AsyncWorker.post(new AsyncTask()
+                    {
+                        public Object run() throws Exception
+                        {
+                            Thread.sleep(300);
+                            return null;
+                        }
+
+                        public void success(Object r)
+                        {
+                        }
+
+                        public void failure(Throwable x)
+                        {
+                        }
+                    });
+
+                    final String key = "search";
+                    for (int i = 0; i < 2; ++i)
+                    {
+                        final String text = String.valueOf(i);
+                        AsyncTask task = new AsyncTask()
+                        {
+                            public Object run() throws Exception
+                            {
+                                synchronized (runs)
+                                {
+                                    runs.set(runs.get() + 1);
+                                }
+                                return text;
+                            }
+
+                            public void success(Object r)
+                            {
+                                result.set(r);
+                            }
+
+                            public void failure(Throwable x)
+                            {
+                                result.set(x);
+                            }
+
+                            public void cancelled()
+                            {
+                                cancels.set(cancels.get() + 1);
+                            }
+                        };
+                        task.setCoalescingKey(key);
+                        AsyncWorker.post(task);
+                    }
+
+                    Worker.post(new Job()
+                    {
+                        public Object run()
+                        {
+                            sleep(1000);
+                            return null;
+                        }
+                    });
+                }
+            }, null);
+        }
+        finally
+        {
+            AsyncWorker.setWorkerThread(previous);
+        }
+
+        // The first coalesced task never started, so it is replaced and only the second runs
+        synchronized (runs)
+        {
+            if (runs.get() != 1) fail(String.valueOf(runs.get()));
+        }
+        if (cancels.get() != 1) fail(String.valueOf(cancels.get()));
+        if (!"1".equals(result.get())) fail(String.valueOf(result.get()));
+    }
+
+    public void testCoalescedTaskRejectedWhenReposted() throws Exception
+    {
+        final MutableInteger reject = new MutableInteger(0);
+        final MutableReference result = new MutableReference(null);
+        WorkerThread previous = AsyncWorker.getWorkerThread();
+        WorkerThread workerThread = new SingleWorkerThread()
+        {
+            public void postTask(Task task)
+            {
+                if (reject.get() > 0) throw new RejectedTaskException("Rejected " + task);
+                super.postTask(task);
+            }
+        };
+        AsyncWorker.setWorkerThread(workerThread);
+        try
+        {
+            invokeTest(workerThread, new Runnable()
+            {
+                public void run()
+                {
+                    final String key = "search";
+                    AsyncTask running = new AsyncTask()
+                    {
+                        public Object run() throws Exception
+                        {
+                            Thread.sleep(300);
+                            // The waiting task is rejected when it is posted
+                            reject.set(1);
+                            return null;
+                        }
+
+                        public void success(Object r)
+                        {
+                        }
+
+                        public void failure(Throwable x)
+                        {
+                        }
+                    };
+                    running.setCoalescingKey(key);
+                    AsyncWorker.post(running);
+
+                    // Let the running task start, otherwise the waiting task would replace it
+                    Worker.post(new Job()
+                    {
+                        public Object run()
+                        {
+                            sleep(100);
+                            return null;
+                        }
+                    });
+
+                    AsyncTask waiting = new AsyncTask()
+                    {
+                        public Object run() throws Exception
+                        {
+                            return "run";
+                        }
+
+                        public void success(Object r)
+                        {
+                            result.set(r);
+                        }
+
+                        public void failure(Throwable x)
+                        {
+                            result.set(x);
+                        }
+                    };
+                    waiting.setCoalescingKey(key);
+                    AsyncWorker.post(waiting);
+
+                    Worker.post(new Job()
+                    {
+                        public Object run()
+                        {
+                            sleep(1000);
+                            return null;
+                        }
+                    });
+                }
+            }, null);
+        }
+        finally
+        {
+            AsyncWorker.setWorkerThread(previous);
+        }
+
+        if (!(result.get() instanceof RejectedTaskException)) fail(String.valueOf(result.get()));
+    }
+
+    public void testScheduleWithFixedDelay() throws Exception
+    {
+        final MutableInteger runs = new MutableInteger(0);
+        final MutableInteger overlaps = new MutableInteger(0);
+        final MutableReference schedule = new MutableReference(null);
+        invokeTest(AsyncWorker.getWorkerThread(), new Runnable()
+        {
+            public void run()
+            {
+                final MutableInteger running = new MutableInteger(0);
+                AsyncTask task = new AsyncTask()
+                {
+                    public Object run() throws Exception
+                    {
+                        synchronized (runs)
+                        {
+                            if (running.get() != 0) overlaps.set(overlaps.get() + 1);
+                            running.set(1);
+                            runs.set(runs.get() + 1);
+                        }
+                        Thread.sleep(200);
+                        synchronized (runs)
+                        {
+                            running.set(0);
+                        }
+                        return null;
+                    }
+
+                    public void success(Object result)
+                    {
+                    }
+
+                    public void failure(Throwable x)
+                    {
+                    }
+                };
+                schedule.set(AsyncWorker.scheduleWithFixedDelay(task, 0, 100));
+
+                // Dispatch events while the task runs: each run takes 300 ms including the delay
+                Worker.post(new Job()
+                {
+                    public Object run()
+                    {
+                        sleep(1050);
+                        return null;
+                    }
+                });
+
+                ((Schedule)schedule.get()).cancel();
+            }
+        }, new Runnable()
+        {
+            public void run()
+            {
+                synchronized (runs)
+                {
+                    if (runs.get() < 3 || runs.get() > 4) fail(String.valueOf(runs.get()));
+                    if (overlaps.get() != 0) fail();
+                }
+                if (!((Schedule)schedule.get()).isCancelled()) fail();
+            }
+        });
+    }
+
+    public void testScheduleAtFixedRateSkipsRunning() throws Exception
+    {
+        final MutableInteger runs = new MutableInteger(0);
+        final MutableReference schedule = new MutableReference(null);
+        invokeTest(AsyncWorker.getWorkerThread(), new Runnable()
+        {
+            public void run()
+            {
+                AsyncTask task = new AsyncTask()
+                {
+                    public Object run() throws Exception
+                    {
+                        synchronized (runs)
+                        {
+                            runs.set(runs.get() + 1);
+                        }
+                        Thread.sleep(250);
+                        return null;
+                    }
+
+                    public void success(Object result)
+                    {
+                    }
+
+                    public void failure(Throwable x)
+                    {
+                    }
+                };
+                schedule.set(AsyncWorker.scheduleAtFixedRate(task, 0, 100));
+
+                Worker.post(new Job()
+                {
+                    public Object run()
+                    {
+                        sleep(1000);
+                        return null;
+                    }
+                });
+
+                ((Schedule)schedule.get()).cancel();
+            }
+        }, new Runnable()
+        {
+            public void run()
+            {
+                // Runs start at 0, 300, 600, 900: the ticks in between are skipped
+                synchronized (runs)
+                {
+                    if (runs.get() < 3 || runs.get() > 4) fail(String.valueOf(runs.get()));
+                }
+                Schedule s = (Schedule)schedule.get();
+                if (s.getSkippedCount() < 4) fail(String.valueOf(s.getSkippedCount()));
+                if (s.getRunCount() != runs.get()) fail();
+            }
+        });
+    }
+
+    public void testScheduleBackOff() throws Exception
+    {
+        final MutableInteger runs = new MutableInteger(0);
+        final MutableReference schedule = new MutableReference(null);
+        invokeTest(AsyncWorker.getWorkerThread(), new Runnable()
+        {
+            public void run()
+            {
+                AsyncTask task = new AsyncTask()
+                {
+                    public Object run() throws Exception
+                    {
+                        synchronized (runs)
+                        {
+                            runs.set(runs.get() + 1);
+                        }
+                        return "unchanged";
+                    }
+
+                    public void success(Object result)
+                    {
+                    }
+
+                    public void failure(Throwable x)
+                    {
+                    }
+                };
+                Schedule s = AsyncWorker.scheduleWithFixedDelay(task, 0, 100);
+                s.setBackOff(2, 400);
+                schedule.set(s);
+
+                // Delays are 100, 200, 400, 400, ...
+                Worker.post(new Job()
+                {
+                    public Object run()
+                    {
+                        sleep(1300);
+                        return null;
+                    }
+                });
+
+                s.cancel();
+            }
+        }, new Runnable()
+        {
+            public void run()
+            {
+                synchronized (runs)
+                {
+                    if (runs.get() < 4 || runs.get() > 6) fail(String.valueOf(runs.get()));
+                }
+                if (((Schedule)schedule.get()).getDelay() != 400) fail();
+            }
+        });
+    }
+
+    public void testCompletionsAreDeliveredInBatches() throws Exception
+    {
+        final int count = 200;
+        final List delivered = new ArrayList();
+        final MutableInteger interleaved = new MutableInteger(-1);
+        final WorkerThread workerThread = AsyncWorker.getWorkerThread();
+        final int batchSize = AsyncWorker.getCompletionBatchSize();
+        // Tasks complete in the order they are posted
+        final SingleWorkerThread single = new SingleWorkerThread();
+        AsyncWorker.setWorkerThread(single);
+        AsyncWorker.setCompletionBatchSize(10);
+        try
+        {
+            invokeTest(single, new Runnable()
+            {
+                public void run()
+                {
+                    for (int i = 0; i < count; ++i)
+                    {
+                        final Integer index = new Integer(i);
+                        AsyncWorker.post(new AsyncTask()
+                        {
+                            public Object run() throws Exception
+                            {
+                                return index;
+                            }
+
+                            public void success(Object result)
+                            {
+                                delivered.add(result);
+                                if (delivered.size() == 1)
+                                {
+                                    // Must run between batches, not after all the completions
+                                    SwingUtilities.invokeLater(new Runnable()
+                                    {
+                                        public void run()
+                                        {
+                                            interleaved.set(delivered.size());
+                                        }
+                                    });
+                                }
+                            }
+
+                            public void failure(Throwable x)
+                            {
+                            }
+                        });
+                    }
+
+                    Worker.post(new Job()
+                    {
+                        public Object run()
+                        {
+                            sleep(1000);
+                            return null;
+                        }
+                    });
+                }
+            }, new Runnable()
+            {
+                public void run()
+                {
+                    if (delivered.size() != count) fail(String.valueOf(delivered.size()));
+                    for (int i = 0; i < count; ++i)
+                    {
+                        if (((Integer)delivered.get(i)).intValue() != i) fail();
+                    }
+                    if (interleaved.get() < 0 || interleaved.get() >= count) fail(String.valueOf(interleaved.get()));
+                }
+            });
+        }
+        finally
+        {
+            AsyncWorker.setWorkerThread(workerThread);
+            AsyncWorker.setCompletionBatchSize(batchSize);
+        }
+    }
+
+    public void testStreamTaskBackpressure() throws Exception
+    {
+        final int count = 1000;
+        final int window = 10;
+        final List received = new ArrayList();
+        final MutableInteger completed = new MutableInteger(0);
+        final MutableInteger overflow = new MutableInteger(0);
+        invokeTest(AsyncWorker.getWorkerThread(), new Runnable()
+        {
+            public void run()
+            {
+                StreamTask task = new StreamTask()
+                {
+                    protected void stream() throws Exception
+                    {
+                        for (int i = 0; i < count; ++i)
+                        {
+                            emit(new Integer(i));
+                            // The producer cannot run ahead of the requests
+                            synchronized (received)
+                            {
+                                if (i + 1 - received.size() > window) overflow.set(i);
+                            }
+                        }
+                    }
+                };
+                task.subscribe(new StreamSubscriber()
+                {
+                    private StreamSubscription subscription;
+
+                    public void onSubscribe(StreamSubscription subscription)
+                    {
+                        this.subscription = subscription;
+                        subscription.request(window);
+                    }
+
+                    public void onNext(Object item)
+                    {
+                        if (!SwingUtilities.isEventDispatchThread()) fail();
+                        int size;
+                        synchronized (received)
+                        {
+                            received.add(item);
+                            size = received.size();
+                        }
+                        if (size % window == 0) subscription.request(window);
+                    }
+
+                    public void onError(Throwable x)
+                    {
+                        completed.set(-1);
+                    }
+
+                    public void onComplete()
+                    {
+                        completed.set(completed.get() + 1);
+                    }
+                });
+                AsyncWorker.post(task);
+
+                for (int i = 0; i < 50 && completed.get() == 0; ++i)
+                {
+                    Worker.post(new Job()
+                    {
+                        public Object run()
+                        {
+                            sleep(100);
+                            return null;
+                        }
+                    });
+                }
+            }
+        }, new Runnable()
+        {
+            public void run()
+            {
+                if (completed.get() != 1) fail(String.valueOf(completed.get()));
+                if (overflow.get() != 0) fail(String.valueOf(overflow.get()));
+                if (received.size() != count) fail(String.valueOf(received.size()));
+                for (int i = 0; i < count; ++i)
+                {
+                    if (((Integer)received.get(i)).intValue() != i) fail();
+                }
+            }
+        });
+    }
+
+    public void testStreamTaskCancelledBySubscriber() throws Exception
+    {
+        final MutableInteger received = new MutableInteger(0);
+        final MutableInteger signalled = new MutableInteger(0);
+        final MutableInteger stopped = new MutableInteger(0);
+        invokeTest(AsyncWorker.getWorkerThread(), new Runnable()
+        {
+            public void run()
+            {
+                StreamTask task = new StreamTask()
+                {
+                    protected void stream() throws Exception
+                    {
+                        try
+                        {
+                            while (true) emit(new Object());
+                        }
+                        finally
+                        {
+                            stopped.set(1);
+                        }
+                    }
+                };
+                task.subscribe(new StreamSubscriber()
+                {
+                    private StreamSubscription subscription;
+
+                    public void onSubscribe(StreamSubscription subscription)
+                    {
+                        this.subscription = subscription;
+                        subscription.request(Long.MAX_VALUE);
+                    }
+
+                    public void onNext(Object item)
+                    {
+                        received.set(received.get() + 1);
+                        if (received.get() == 5) subscription.cancel();
+                    }
+
+                    public void onError(Throwable x)
+                    {
+                        signalled.set(1);
+                    }
+
+                    public void onComplete()
+                    {
+                        signalled.set(1);
+                    }
+                });
+                AsyncWorker.post(task);
+
+                Worker.post(new Job()
+                {
+                    public Object run()
+                    {
+                        sleep(500);
+                        return null;
+                    }
+                });
+            }
+        }, new Runnable()
+        {
+            public void run()
+            {
+                if (received.get() != 5) fail(String.valueOf(received.get()));
+                if (signalled.get() != 0) fail();
+                if (stopped.get() != 1) fail();
+            }
+        });
+    }
 }
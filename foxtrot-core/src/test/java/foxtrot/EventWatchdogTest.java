@@ -0,0 +1,123 @@
+/**
+ * Copyright (c) 2002-2008, Simone Bordet
+ * All rights reserved.
+ *
+ * This software is distributable under the BSD license.
+ * See the terms of the BSD license in the documentation provided with this software.
+ */
+
+package foxtrot;
+
+import java.awt.AWTEvent;
+import java.util.ArrayList;
+import java.util.List;
+import javax.swing.SwingUtilities;
+
+/**
+ * @version $Revision$
+ */
+public class EventWatchdogTest extends FoxtrotTestCase
+{
+    public void testStalledEventIsReported() throws Exception
+    {
+        final List stalls = new ArrayList();
+        final EventWatchdog watchdog = new EventWatchdog(100, new StallListener()
+        {
+            public void eventStalled(AWTEvent event, long duration, StackTraceElement[] stackTrace)
+            {
+                synchronized (stalls)
+                {
+                    stalls.add(new Object[]{new Long(duration), stackTrace});
+                }
+            }
+        });
+        watchdog.start();
+        try
+        {
+            invokeTest(Worker.getWorkerThread(), new Runnable()
+            {
+                public void run()
+                {
+                    // Quick events are not reported
+                    for (int i = 0; i < 10; ++i) SwingUtilities.invokeLater(new Runnable()
+                    {
+                        public void run()
+                        {
+                        }
+                    });
+                    // This event is dispatched by the event pump while the post below waits
+                    SwingUtilities.invokeLater(new StalledEvent(300));
+                    Worker.post(new Job()
+                    {
+                        public Object run()
+                        {
+                            sleep(600);
+                            return null;
+                        }
+                    });
+                }
+            }, null);
+        }
+        finally
+        {
+            watchdog.stop();
+        }
+
+        synchronized (stalls)
+        {
+            // Reported only once, however long it stalls
+            if (stalls.size() != 1) fail(String.valueOf(stalls.size()));
+            Object[] stall = (Object[])stalls.get(0);
+            if (((Long)stall[0]).longValue() < 100) fail();
+            StackTraceElement[] stackTrace = (StackTraceElement[])stall[1];
+            boolean found = false;
+            for (int i = 0; i < stackTrace.length; ++i)
+            {
+                if (stackTrace[i].getClassName().equals(StalledEvent.class.getName())) found = true;
+            }
+            if (!found) fail();
+        }
+        if (watchdog.isStarted()) fail();
+    }
+
+    public void testInvalidArguments() throws Exception
+    {
+        try
+        {
+            new EventWatchdog(0, new StallListener()
+            {
+                public void eventStalled(AWTEvent event, long duration, StackTraceElement[] stackTrace)
+                {
+                }
+            });
+            fail();
+        }
+        catch (IllegalArgumentException expected)
+        {
+        }
+
+        try
+        {
+            new EventWatchdog(100, null);
+            fail();
+        }
+        catch (IllegalArgumentException expected)
+        {
+        }
+    }
+
+    private class StalledEvent implements Runnable
+    {
+        private final long delay;
+
+        private StalledEvent(long delay)
+        {
+            this.delay = delay;
+        }
+
+        public void run()
+        {
+            sleep(delay);
+        }
+    }
+}
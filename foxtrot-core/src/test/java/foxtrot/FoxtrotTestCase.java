@@ -12,7 +12,6 @@ import java.lang.reflect.Method;
 
 import javax.swing.SwingUtilities;
 
-import foxtrot.workers.SingleWorkerThread;
 import junit.framework.TestCase;
 
 /**
@@ -165,12 +164,19 @@ public abstract class FoxtrotTestCase extends TestCase
     private boolean hasPendingTasks(WorkerThread workerThread) throws Exception
     {
         if (workerThread == null) return false;
-        if (workerThread instanceof SingleWorkerThread)
+        for (Class cls = workerThread.getClass(); cls != null; cls = cls.getSuperclass())
         {
-            Method hasPendingTasks = SingleWorkerThread.class.getDeclaredMethod("hasPendingTasks", null);
-            hasPendingTasks.setAccessible(true);
-            Boolean result = (Boolean)hasPendingTasks.invoke(workerThread, null);
-            return result.booleanValue();
+            try
+            {
+                Method hasPendingTasks = cls.getDeclaredMethod("hasPendingTasks", null);
+                hasPendingTasks.setAccessible(true);
+                Boolean result = (Boolean)hasPendingTasks.invoke(workerThread, null);
+                return result.booleanValue();
+            }
+            catch (NoSuchMethodException ignored)
+            {
+                // Try the superclass
+            }
         }
         throw new IllegalArgumentException("Invalid WorkerThread " + workerThread);
     }
@@ -0,0 +1,206 @@
+/**
+ * Copyright (c) 2002-2008, Simone Bordet
+ * All rights reserved.
+ *
+ * This software is distributable under the BSD license.
+ * See the terms of the BSD license in the documentation provided with this software.
+ */
+
+package foxtrot;
+
+/**
+ * @version $Revision$
+ */
+public class JobPoolTest extends FoxtrotTestCase
+{
+    public void testJobIsReused() throws Exception
+    {
+        invokeTest(Worker.getWorkerThread(), new Runnable()
+        {
+            public void run()
+            {
+                JobPool pool = new EchoPool(2);
+
+                EchoJob job = (EchoJob)pool.acquire();
+                job.value = "1";
+                if (!"1".equals(Worker.post(job))) fail();
+                if (!pool.release(job)) fail();
+                if (job.value != null) fail();
+                if (pool.getSize() != 1) fail();
+
+                EchoJob reused = (EchoJob)pool.acquire();
+                if (reused != job) fail();
+                if (pool.getSize() != 0) fail();
+                reused.value = "2";
+                if (!"2".equals(Worker.post(reused))) fail();
+                pool.release(reused);
+
+                try
+                {
+                    pool.release(reused);
+                    fail();
+                }
+                catch (IllegalStateException expected)
+                {
+                }
+            }
+        }, null);
+    }
+
+    public void testJobInUseIsDiscarded() throws Exception
+    {
+        invokeTest(Worker.getWorkerThread(), new Runnable()
+        {
+            public void run()
+            {
+                JobPool pool = new EchoPool(2);
+
+                EchoJob job = (EchoJob)pool.acquire();
+                job.delay = 1000;
+                try
+                {
+                    Worker.post(job, job.delay / 4, false);
+                    fail();
+                }
+                catch (TaskTimeoutException expected)
+                {
+                }
+
+                // The Job is still running, it must not be reused
+                if (pool.release(job)) fail();
+                if (pool.getSize() != 0) fail();
+                if (pool.acquire() == job) fail();
+
+                // The discarded Job has been released already
+                try
+                {
+                    pool.release(job);
+                    fail();
+                }
+                catch (IllegalStateException expected)
+                {
+                }
+
+                sleep(job.delay);
+            }
+        }, null);
+    }
+
+    public void testJobDiscardedByFullPoolCannotBeReleasedAgain() throws Exception
+    {
+        JobPool pool = new EchoPool(1);
+        RecyclableJob first = pool.acquire();
+        RecyclableJob second = pool.acquire();
+        if (!pool.release(first)) fail();
+
+        // The pool is full, the Job is discarded
+        if (pool.release(second)) fail();
+        try
+        {
+            pool.release(second);
+            fail();
+        }
+        catch (IllegalStateException expected)
+        {
+        }
+        if (pool.getSize() != 1) fail();
+    }
+
+    public void testJobFromOtherPool() throws Exception
+    {
+        JobPool pool = new EchoPool(1);
+        try
+        {
+            pool.release((RecyclableJob)new EchoPool(1).acquire());
+            fail();
+        }
+        catch (IllegalArgumentException expected)
+        {
+        }
+    }
+
+    public void testConcurrentReleases() throws Exception
+    {
+        final JobPool pool = new EchoPool(4);
+        for (int round = 0; round < 100; ++round)
+        {
+            final RecyclableJob job = pool.acquire();
+            final MutableInteger released = new MutableInteger(0);
+            Thread[] threads = new Thread[4];
+            for (int i = 0; i < threads.length; ++i)
+            {
+                threads[i] = new Thread()
+                {
+                    public void run()
+                    {
+                        try
+                        {
+                            if (pool.release(job))
+                            {
+                                synchronized (released)
+                                {
+                                    released.set(released.get() + 1);
+                                }
+                            }
+                        }
+                        catch (IllegalStateException expected)
+                        {
+                        }
+                    }
+                };
+            }
+            for (int i = 0; i < threads.length; ++i) threads[i].start();
+            for (int i = 0; i < threads.length; ++i) threads[i].join();
+
+            // The Job is put in the pool only once
+            synchronized (released)
+            {
+                if (released.get() != 1) fail(String.valueOf(released.get()));
+            }
+            if (pool.getSize() != 1) fail(String.valueOf(pool.getSize()));
+        }
+    }
+
+    private static class EchoPool extends JobPool
+    {
+        private EchoPool(int maximumSize)
+        {
+            super(maximumSize);
+        }
+
+        protected RecyclableJob newJob()
+        {
+            return new EchoJob();
+        }
+    }
+
+    private static class EchoJob extends RecyclableJob
+    {
+        private Object value;
+        private long delay;
+
+        public Object run()
+        {
+            if (delay > 0) sleep(delay);
+            return value;
+        }
+
+        protected void recycle()
+        {
+            value = null;
+            delay = 0;
+        }
+
+        private void sleep(long ms)
+        {
+            try
+            {
+                Thread.sleep(ms);
+            }
+            catch (InterruptedException x)
+            {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
@@ -0,0 +1,233 @@
+/**
+ * Copyright (c) 2002-2008, Simone Bordet
+ * All rights reserved.
+ *
+ * This software is distributable under the BSD license.
+ * See the terms of the BSD license in the documentation provided with this software.
+ */
+
+package foxtrot;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.ref.WeakReference;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+import javax.swing.SwingUtilities;
+
+import foxtrot.workers.SingleWorkerThread;
+
+/**
+ * @version $Revision$
+ */
+public class MetricsTest extends FoxtrotTestCase
+{
+    protected void tearDown() throws Exception
+    {
+        Metrics.setEnabled(false);
+        super.tearDown();
+    }
+
+    public void testDisabledByDefault() throws Exception
+    {
+        if (Metrics.isEnabled()) fail();
+        Probe.dispatching(null);
+        Probe.dispatched();
+        if (new MetricsBean().getWorkerThreads().length != 0) fail();
+    }
+
+    public void testWorkerAndPumpMetrics() throws Exception
+    {
+        final int count = 5;
+        Metrics.setEnabled(true);
+        invokeTest(Worker.getWorkerThread(), new Runnable()
+        {
+            public void run()
+            {
+                for (int i = 0; i < count; ++i) Worker.post(new SleepJob(50));
+
+                // Nested post: the event is dispatched while the outer post waits
+                SwingUtilities.invokeLater(new Runnable()
+                {
+                    public void run()
+                    {
+                        if (new MetricsBean().getCurrentPostNestingDepth() != 1) fail();
+                        Worker.post(new SleepJob(50));
+                    }
+                });
+                Worker.post(new SleepJob(200));
+            }
+        }, null);
+
+        MetricsMXBean bean = new MetricsBean();
+
+        WorkerThreadMetrics[] workerThreads = bean.getWorkerThreads();
+        if (workerThreads.length != 1) fail();
+        if (workerThreads[0].getEnqueuedCount() != count + 2) fail(String.valueOf(workerThreads[0].getEnqueuedCount()));
+        if (workerThreads[0].getQueueDepth() != 0) fail();
+        if (workerThreads[0].getQueueWait().getCount() != count + 2) fail();
+        if (workerThreads[0].getEnqueueRate() <= 0) fail();
+        // Reading the metrics has no side effects
+        if (bean.getWorkerThreads()[0].getEnqueueRate() <= 0) fail();
+
+        TaskMetrics[] tasks = bean.getTasks();
+        TaskMetrics sleeps = null;
+        for (int i = 0; i < tasks.length; ++i)
+        {
+            if (tasks[i].getTaskClass().equals(SleepJob.class.getName())) sleeps = tasks[i];
+        }
+        if (sleeps == null) fail();
+        if (sleeps.getExecutionTime().getCount() != count + 2) fail();
+        // Execution times are reported in microseconds, with at most 25% error
+        if (sleeps.getExecutionTime().getMedian() < 50000 * 3 / 4) fail(String.valueOf(sleeps.getExecutionTime()));
+
+        if (bean.getPumpDuration().getCount() != count + 2) fail();
+        if (bean.getPumpEvents().getMaximum() < 1) fail();
+        if (bean.getPostNestingDepth().getMaximum() != 2) fail();
+        if (bean.getCurrentPostNestingDepth() != 0) fail();
+
+        bean.reset();
+        if (bean.getWorkerThreads().length != 0) fail();
+        bean.setEnabled(false);
+        if (Metrics.isEnabled()) fail();
+    }
+
+    public void testRegisterMBean() throws Exception
+    {
+        Metrics.registerMBean();
+        // Registering twice is allowed
+        Metrics.registerMBean();
+
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName("foxtrot:type=Metrics");
+        server.setAttribute(name, new javax.management.Attribute("Enabled", Boolean.TRUE));
+        if (!Metrics.isEnabled()) fail();
+        CompositeData duration = (CompositeData)server.getAttribute(name, "PumpDuration");
+        if (((Long)duration.get("count")).longValue() != 0) fail();
+    }
+
+    public void testEnabledBySystemProperty() throws Exception
+    {
+        // The property is read when the classes are initialized, so it is tested in a new JVM
+        String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+        String[] command = new String[]{java, "-Djava.awt.headless=true", "-Dfoxtrot.metrics=true", "-cp", System.getProperty("java.class.path"), EnabledBySystemProperty.class.getName()};
+        Process process = Runtime.getRuntime().exec(command);
+        process.getOutputStream().close();
+        drain(process.getInputStream());
+        drain(process.getErrorStream());
+        int exit = process.waitFor();
+        if (exit != 0) fail("Metrics not enabled by the system property: " + exit);
+    }
+
+    private void drain(final InputStream stream)
+    {
+        Thread thread = new Thread(new Runnable()
+        {
+            public void run()
+            {
+                try
+                {
+                    byte[] buffer = new byte[512];
+                    int read;
+                    while ((read = stream.read(buffer)) >= 0) System.out.write(buffer, 0, read);
+                }
+                catch (IOException ignored)
+                {
+                }
+            }
+        });
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public void testWorkerThreadsAreNotRetained() throws Exception
+    {
+        Metrics.setEnabled(true);
+        StoppableWorkerThread workerThread = new StoppableWorkerThread();
+        postTo(workerThread);
+
+        MetricsMXBean bean = new MetricsBean();
+        if (bean.getWorkerThreads().length != 1) fail();
+
+        workerThread.stop();
+        WeakReference reference = new WeakReference(workerThread);
+        workerThread = null;
+        for (int i = 0; i < 50 && reference.get() != null; ++i)
+        {
+            System.gc();
+            sleep(100);
+        }
+        if (reference.get() != null) fail("WorkerThread retained");
+
+        // The metrics of collected WorkerThreads are discarded
+        if (bean.getWorkerThreads().length != 0) fail();
+    }
+
+    private void postTo(final WorkerThread workerThread) throws Exception
+    {
+        invokeTest(workerThread, new Runnable()
+        {
+            public void run()
+            {
+                WorkerThread previous = Worker.getWorkerThread();
+                Worker.setWorkerThread(workerThread);
+                try
+                {
+                    Worker.post(new SleepJob(10));
+                }
+                finally
+                {
+                    Worker.setWorkerThread(previous);
+                }
+            }
+        }, null);
+    }
+
+    private static class StoppableWorkerThread extends SingleWorkerThread
+    {
+        protected void stop()
+        {
+            super.stop();
+        }
+    }
+
+    /**
+     * Runs a Job without referencing {@link Metrics}, then exits with 0 if metrics are enabled
+     * and their MBean registered, with 1 otherwise.
+     */
+    public static class EnabledBySystemProperty
+    {
+        public static void main(String[] args) throws Exception
+        {
+            new SingleWorkerThread().runTask(new SleepJob(10));
+            boolean enabled = Probe.current instanceof MetricsCollector;
+            boolean registered = ManagementFactory.getPlatformMBeanServer().isRegistered(new ObjectName("foxtrot:type=Metrics"));
+            System.exit(enabled && registered ? 0 : 1);
+        }
+    }
+
+    private static class SleepJob extends Job
+    {
+        private final long delay;
+
+        private SleepJob(long delay)
+        {
+            this.delay = delay;
+        }
+
+        public Object run()
+        {
+            try
+            {
+                Thread.sleep(delay);
+            }
+            catch (InterruptedException ignored)
+            {
+            }
+            return null;
+        }
+    }
+}
@@ -12,6 +12,7 @@ import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 import javax.swing.JButton;
 import javax.swing.JDialog;
 import javax.swing.JFrame;
@@ -572,4 +573,474 @@ public class WorkerTest extends FoxtrotTestCase
             return null;
         }
     }
+
+    public void testCancelRunningTask() throws Exception
+    {
+        invokeTest(Worker.getWorkerThread(), new Runnable()
+        {
+            public void run()
+            {
+                final MutableInteger interrupted = new MutableInteger(0);
+                final Job job = new Job()
+                {
+                    public Object run()
+                    {
+                        try
+                        {
+                            Thread.sleep(5000);
+                        }
+                        catch (InterruptedException x)
+                        {
+                            interrupted.set(1);
+                        }
+                        return null;
+                    }
+                };
+
+                // Cancel from an AWT event dispatched by Worker.post()
+                final long delay = 500;
+                final javax.swing.Timer timer = new javax.swing.Timer((int)delay, new ActionListener()
+                {
+                    public void actionPerformed(ActionEvent e)
+                    {
+                        if (!job.cancel(true)) fail();
+                    }
+                });
+                timer.setRepeats(false);
+                timer.start();
+
+                long start = System.currentTimeMillis();
+                try
+                {
+                    Worker.post(job);
+                    fail();
+                }
+                catch (TaskCancelledException expected)
+                {
+                }
+                long elapsed = System.currentTimeMillis() - start;
+                if (elapsed > 4 * delay) fail("Worker.post() did not return on cancellation");
+
+                sleep(delay);
+                if (interrupted.get() != 1) fail();
+
+                // The worker thread is still usable
+                Object result = Worker.post(new Job()
+                {
+                    public Object run()
+                    {
+                        return Boolean.TRUE;
+                    }
+                });
+                if (result != Boolean.TRUE) fail();
+            }
+        }, null);
+    }
+
+    public void testCancelQueuedTask() throws Exception
+    {
+        invokeTest(Worker.getWorkerThread(), new Runnable()
+        {
+            public void run()
+            {
+                final MutableInteger ran = new MutableInteger(0);
+                final Job queued = new Job()
+                {
+                    public Object run()
+                    {
+                        ran.set(1);
+                        return null;
+                    }
+                };
+
+                // Keep the worker thread busy
+                final long delay = 1000;
+                final MutableReference thread = new MutableReference(null);
+                Worker.getWorkerThread().postTask(new Job()
+                {
+                    public Object run()
+                    {
+                        thread.set(Thread.currentThread());
+                        sleep(delay);
+                        return null;
+                    }
+                });
+
+                SwingUtilities.invokeLater(new Runnable()
+                {
+                    public void run()
+                    {
+                        queued.cancel(true);
+                    }
+                });
+
+                long start = System.currentTimeMillis();
+                try
+                {
+                    Worker.post(queued);
+                    fail();
+                }
+                catch (TaskCancelledException expected)
+                {
+                }
+                long elapsed = System.currentTimeMillis() - start;
+                if (elapsed >= delay) fail("Worker.post() did not return on cancellation");
+
+                sleep(2 * delay);
+                if (ran.get() != 0) fail();
+                // The running task has not been interrupted
+                Thread foxtrot = (Thread)thread.get();
+                if (foxtrot == null || !foxtrot.isAlive()) fail();
+            }
+        }, null);
+    }
+
+    public void testPostWithinTimeout() throws Exception
+    {
+        invokeTest(Worker.getWorkerThread(), new Runnable()
+        {
+            public void run()
+            {
+                Object result = Worker.post(new Job()
+                {
+                    public Object run()
+                    {
+                        sleep(100);
+                        return Boolean.TRUE;
+                    }
+                }, 5000, true);
+                if (result != Boolean.TRUE) fail();
+            }
+        }, null);
+    }
+
+    public void testPostWithinTimeoutReportsPostedTask() throws Exception
+    {
+        final Job job = new Job()
+        {
+            public Object run()
+            {
+                sleep(100);
+                return null;
+            }
+        };
+        final MutableReference started = new MutableReference(null);
+        final MutableReference stopped = new MutableReference(null);
+        Probe probe = new Probe()
+        {
+            protected void pumpStarted(Task task, int depth)
+            {
+                started.set(task);
+            }
+
+            protected void pumpStopped(Task task, int depth, long duration, long events)
+            {
+                stopped.set(task);
+            }
+        };
+        Probe.install(probe);
+        try
+        {
+            invokeTest(Worker.getWorkerThread(), new Runnable()
+            {
+                public void run()
+                {
+                    Worker.post(job, 5000, true);
+                }
+            }, null);
+        }
+        finally
+        {
+            Probe.uninstall(probe);
+        }
+
+        // Reported as waiting for the posted Job, not for its Deadline
+        if (started.get() != job) fail();
+        if (stopped.get() != job) fail();
+    }
+
+    public void testPostTimeout() throws Exception
+    {
+        invokeTest(Worker.getWorkerThread(), new Runnable()
+        {
+            public void run()
+            {
+                final long delay = 1000;
+                final MutableInteger completed = new MutableInteger(0);
+                long start = System.currentTimeMillis();
+                try
+                {
+                    Worker.post(new Job()
+                    {
+                        public Object run()
+                        {
+                            sleep(delay);
+                            completed.set(1);
+                            return null;
+                        }
+                    }, delay / 4, false);
+                    fail();
+                }
+                catch (TaskTimeoutException expected)
+                {
+                }
+                long elapsed = System.currentTimeMillis() - start;
+                if (elapsed >= delay) fail("Worker.post() did not return on timeout");
+
+                // The Task has not been cancelled
+                sleep(delay);
+                if (completed.get() != 1) fail();
+            }
+        }, null);
+    }
+
+    public void testPostTimeoutWithCancel() throws Exception
+    {
+        invokeTest(Worker.getWorkerThread(), new Runnable()
+        {
+            public void run()
+            {
+                final long delay = 1000;
+                final MutableInteger interrupted = new MutableInteger(0);
+                final Job job = new Job()
+                {
+                    public Object run()
+                    {
+                        try
+                        {
+                            Thread.sleep(delay);
+                        }
+                        catch (InterruptedException x)
+                        {
+                            interrupted.set(1);
+                        }
+                        return null;
+                    }
+                };
+                try
+                {
+                    Worker.post(job, delay / 4, true);
+                    fail();
+                }
+                catch (TaskTimeoutException expected)
+                {
+                }
+
+                sleep(delay / 4);
+                if (interrupted.get() != 1) fail();
+            }
+        }, null);
+    }
+
+    public void testPublishDeliversChunksInBatches() throws Exception
+    {
+        invokeTest(Worker.getWorkerThread(), new Runnable()
+        {
+            public void run()
+            {
+                final int count = 10000;
+                final ArrayList chunks = new ArrayList();
+                final MutableInteger batches = new MutableInteger(0);
+                final MutableInteger wrongThread = new MutableInteger(0);
+                Worker.post(new Job()
+                {
+                    public Object run()
+                    {
+                        for (int i = 0; i < count; ++i) publish(new Integer(i));
+                        return null;
+                    }
+
+                    protected void process(List batch)
+                    {
+                        if (!SwingUtilities.isEventDispatchThread()) wrongThread.set(1);
+                        batches.set(batches.get() + 1);
+                        chunks.addAll(batch);
+                    }
+                });
+
+                // All chunks are delivered, in order, before post() returns
+                if (wrongThread.get() != 0) fail();
+                if (chunks.size() != count) fail();
+                for (int i = 0; i < count; ++i)
+                {
+                    if (((Integer)chunks.get(i)).intValue() != i) fail();
+                }
+                if (batches.get() >= count) fail();
+            }
+        }, null);
+    }
+
+    public void testSetProgressDropsSupersededProgress() throws Exception
+    {
+        invokeTest(Worker.getWorkerThread(), new Runnable()
+        {
+            public void run()
+            {
+                final long interval = 100;
+                final int steps = 10;
+                final ArrayList progresses = new ArrayList();
+                Job job = new Job()
+                {
+                    public Object run()
+                    {
+                        for (int i = 1; i <= steps; ++i)
+                        {
+                            setProgress(new Integer(i));
+                            sleep(interval / 4);
+                        }
+                        return null;
+                    }
+
+                    protected void progressChanged(Object progress)
+                    {
+                        progresses.add(progress);
+                    }
+                };
+                job.setProgressInterval(interval);
+                Worker.post(job);
+
+                // Deliveries are throttled, but the latest progress is always delivered
+                if (progresses.isEmpty()) fail();
+                if (progresses.size() > steps / 2) fail();
+                if (((Integer)progresses.get(progresses.size() - 1)).intValue() != steps) fail();
+                for (int i = 1; i < progresses.size(); ++i)
+                {
+                    if (((Integer)progresses.get(i - 1)).intValue() >= ((Integer)progresses.get(i)).intValue()) fail();
+                }
+            }
+        }, null);
+    }
+
+    public void testDirectEventPumpIsWokenUp() throws Exception
+    {
+        invokeTest(Worker.getWorkerThread(), new Runnable()
+        {
+            public void run()
+            {
+                Job job = new Job()
+                {
+                    public Object run()
+                    {
+                        sleep(500);
+                        return null;
+                    }
+                };
+
+                // No Worker is involved: only the completion of the Job can wake up the event pump
+                long rescue = 5000;
+                wakeUpLater(rescue);
+                long start = System.currentTimeMillis();
+                Worker.getWorkerThread().postTask(job);
+                Worker.getEventPump().pumpEvents(job);
+                long elapsed = System.currentTimeMillis() - start;
+
+                if (!job.isCompleted()) fail();
+                if (elapsed >= rescue) fail("Event pump not woken up by the completed Job");
+            }
+        }, null);
+    }
+
+    public void testNestedPumpsWithCoalescedWakeUps() throws Exception
+    {
+        invokeTest(ConcurrentWorker.getWorkerThread(), new Runnable()
+        {
+            public void run()
+            {
+                final Object gate = new Object();
+                final MutableInteger open = new MutableInteger(0);
+                final MutableInteger inner = new MutableInteger(0);
+
+                // Both Jobs complete at about the same time, so that their wake ups are coalesced
+                final Job outerJob = new GatedJob(gate, open);
+                final Job innerJob = new GatedJob(gate, open);
+
+                SwingUtilities.invokeLater(new Runnable()
+                {
+                    public void run()
+                    {
+                        // Nested event pump
+                        ConcurrentWorker.post(innerJob);
+                        inner.set(1);
+                    }
+                });
+
+                new Thread(new Runnable()
+                {
+                    public void run()
+                    {
+                        sleep(500);
+                        synchronized (gate)
+                        {
+                            open.set(1);
+                            gate.notifyAll();
+                        }
+                    }
+                }).start();
+
+                long rescue = 5000;
+                wakeUpLater(rescue);
+                long start = System.currentTimeMillis();
+                ConcurrentWorker.post(outerJob);
+                long elapsed = System.currentTimeMillis() - start;
+
+                if (inner.get() != 1) fail();
+                if (elapsed >= rescue) fail("Nested event pumps not woken up by the completed Jobs");
+            }
+        }, null);
+    }
+
+    /**
+     * Posts an empty event after the given delay, so that a test never hangs
+     * if the event pump it is testing is not woken up.
+     */
+    private void wakeUpLater(final long delay)
+    {
+        Thread thread = new Thread(new Runnable()
+        {
+            public void run()
+            {
+                sleep(delay);
+                SwingUtilities.invokeLater(new Runnable()
+                {
+                    public void run()
+                    {
+                    }
+                });
+            }
+        });
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private static class GatedJob extends Job
+    {
+        private final Object gate;
+        private final MutableInteger open;
+
+        private GatedJob(Object gate, MutableInteger open)
+        {
+            this.gate = gate;
+            this.open = open;
+        }
+
+        public Object run()
+        {
+            synchronized (gate)
+            {
+                while (open.get() == 0)
+                {
+                    try
+                    {
+                        gate.wait();
+                    }
+                    catch (InterruptedException x)
+                    {
+                        Thread.currentThread().interrupt();
+                        break;
+                    }
+                }
+            }
+            return null;
+        }
+    }
 }
@@ -0,0 +1,117 @@
+/**
+ * Copyright (c) 2002-2008, Simone Bordet
+ * All rights reserved.
+ *
+ * This software is distributable under the BSD license.
+ * See the terms of the BSD license in the documentation provided with this software.
+ */
+
+package foxtrot.workers;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+
+import foxtrot.AsyncTask;
+import foxtrot.FoxtrotTestCase;
+import foxtrot.Job;
+import foxtrot.MutableInteger;
+import foxtrot.MutableReference;
+
+/**
+ * @version $Revision$
+ */
+public class ExecutorWorkerThreadTest extends FoxtrotTestCase
+{
+    public void testTaskRunsInExecutor() throws Exception
+    {
+        final MutableReference executorThread = new MutableReference(null);
+        final ExecutorService executor = Executors.newSingleThreadExecutor(new ThreadFactory()
+        {
+            public Thread newThread(Runnable runnable)
+            {
+                Thread thread = new Thread(runnable);
+                thread.setDaemon(true);
+                executorThread.set(thread);
+                return thread;
+            }
+        });
+        final ExecutorWorkerThread worker = new ExecutorWorkerThread(executor);
+        invokeTest(worker, new Runnable()
+        {
+            public void run()
+            {
+                if (worker.isWorkerThread()) fail();
+
+                final MutableReference thread = new MutableReference(null);
+                final MutableInteger pass = new MutableInteger(0);
+                worker.postTask(new Job()
+                {
+                    public Object run()
+                    {
+                        thread.set(Thread.currentThread());
+                        if (worker.isWorkerThread()) pass.set(1);
+                        return null;
+                    }
+                });
+                sleep(500);
+
+                if (pass.get() != 1) fail();
+                if (thread.get() != executorThread.get()) fail();
+            }
+        }, null);
+
+        // Threads of the Executor are not worker threads when not running Foxtrot tasks
+        final MutableInteger pass = new MutableInteger(0);
+        executor.submit(new Runnable()
+        {
+            public void run()
+            {
+                if (!worker.isWorkerThread()) pass.set(1);
+            }
+        }).get();
+        if (pass.get() != 1) fail();
+        executor.shutdown();
+    }
+
+    public void testRejectedTaskFails() throws Exception
+    {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        executor.shutdown();
+        final ExecutorWorkerThread worker = new ExecutorWorkerThread(executor);
+        if (worker.isAlive()) fail();
+
+        final MutableReference failure = new MutableReference(null);
+        invokeTest(worker, new Runnable()
+        {
+            public void run()
+            {
+                AsyncTask task = new AsyncTask()
+                {
+                    public Object run() throws Exception
+                    {
+                        return null;
+                    }
+
+                    public void success(Object result)
+                    {
+                    }
+
+                    public void failure(Throwable x)
+                    {
+                        failure.set(x);
+                    }
+                };
+                worker.postTask(task);
+                if (!task.isCompleted()) fail();
+            }
+        }, new Runnable()
+        {
+            public void run()
+            {
+                if (!(failure.get() instanceof RejectedExecutionException)) fail();
+            }
+        });
+    }
+}
@@ -0,0 +1,145 @@
+/**
+ * Copyright (c) 2002-2008, Simone Bordet
+ * All rights reserved.
+ *
+ * This software is distributable under the BSD license.
+ * See the terms of the BSD license in the documentation provided with this software.
+ */
+
+package foxtrot.workers;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import foxtrot.FoxtrotTestCase;
+import foxtrot.Job;
+import foxtrot.MutableInteger;
+
+/**
+ * @version $Revision$
+ */
+public class KeyedWorkerThreadTest extends FoxtrotTestCase
+{
+    private Job newJob(Object routingKey, final List order, final String name, final long delay)
+    {
+        Job job = new Job()
+        {
+            public Object run()
+            {
+                sleep(delay);
+                synchronized (order)
+                {
+                    order.add(name);
+                }
+                return null;
+            }
+        };
+        job.setRoutingKey(routingKey);
+        return job;
+    }
+
+    public void testSameKeyIsSerialized() throws Exception
+    {
+        final KeyedWorkerThread worker = new KeyedWorkerThread(4);
+        final List order = new ArrayList();
+        invokeTest(worker, new Runnable()
+        {
+            public void run()
+            {
+                String key = "document";
+                worker.postTask(newJob(key, order, "1", 300));
+                worker.postTask(newJob(key, order, "2", 100));
+                worker.postTask(newJob(key, order, "3", 0));
+
+                sleep(100);
+                if (worker.getQueueSize(worker.getLane(key)) != 2) fail();
+
+                sleep(500);
+            }
+        }, null);
+
+        List expected = Arrays.asList(new String[]{"1", "2", "3"});
+        synchronized (order)
+        {
+            if (!expected.equals(order)) fail(order.toString());
+        }
+    }
+
+    public void testDifferentKeysRunInParallel() throws Exception
+    {
+        final KeyedWorkerThread worker = new KeyedWorkerThread(2);
+        final MutableInteger count = new MutableInteger(0);
+        invokeTest(worker, new Runnable()
+        {
+            public void run()
+            {
+                // Find two keys that are routed to different lanes
+                Integer key1 = new Integer(0);
+                Integer key2 = new Integer(1);
+                while (worker.getLane(key1) == worker.getLane(key2)) key2 = new Integer(key2.intValue() + 1);
+
+                final long delay = 1000;
+                Object[] keys = new Object[]{key1, key2};
+                for (int i = 0; i < keys.length; ++i)
+                {
+                    Job job = new Job()
+                    {
+                        public Object run()
+                        {
+                            sleep(delay);
+                            synchronized (count)
+                            {
+                                count.set(count.get() + 1);
+                            }
+                            return null;
+                        }
+                    };
+                    job.setRoutingKey(keys[i]);
+                    worker.postTask(job);
+                }
+
+                sleep(delay * 3 / 2);
+                synchronized (count)
+                {
+                    if (count.get() != 2) fail();
+                }
+            }
+        }, null);
+    }
+
+    public void testBoundedLanes() throws Exception
+    {
+        final KeyedWorkerThread worker = new KeyedWorkerThread(2);
+        worker.setMaximumQueueSize(1);
+        if (worker.getMaximumQueueSize() != 1) fail();
+        if (worker.getQueueFullPolicy() != QueueFullPolicy.REJECT) fail();
+        final List order = new ArrayList();
+        invokeTest(worker, new Runnable()
+        {
+            public void run()
+            {
+                String key = "document";
+                worker.postTask(newJob(key, order, "1", 300));
+                // Let the first task be dequeued
+                sleep(100);
+                worker.postTask(newJob(key, order, "2", 0));
+                try
+                {
+                    worker.postTask(newJob(key, order, "3", 0));
+                    fail();
+                }
+                catch (RejectedTaskException expected)
+                {
+                }
+                sleep(500);
+            }
+        }, null);
+
+        List expected = Arrays.asList(new String[]{"1", "2"});
+        synchronized (order)
+        {
+            if (!expected.equals(order)) fail(order.toString());
+        }
+    }
+}
@@ -100,4 +100,35 @@ public class MultiWorkerThreadTest extends FoxtrotTestCase
             }
         }, null);
     }
+
+    public void testIsWorkerThread() throws Exception
+    {
+        final MultiWorkerThread worker = new MultiWorkerThread();
+        invokeTest(worker, new Runnable()
+        {
+            public void run()
+            {
+                worker.start();
+                if (worker.isWorkerThread()) fail();
+
+                final MutableInteger pass = new MutableInteger(0);
+                final MutableReference thread = new MutableReference(null);
+                worker.postTask(new Job()
+                {
+                    public Object run()
+                    {
+                        thread.set(Thread.currentThread());
+                        if (worker.isWorkerThread()) pass.set(1);
+                        return null;
+                    }
+                });
+                sleep(500);
+                if (pass.get() != 1) fail();
+                if (worker.hasPendingTasks()) fail();
+
+                // The marker does not leak to other WorkerThreads
+                if (new MultiWorkerThread().isWorkerThread()) fail();
+            }
+        }, null);
+    }
 }
@@ -0,0 +1,280 @@
+/**
+ * Copyright (c) 2002-2008, Simone Bordet
+ * All rights reserved.
+ *
+ * This software is distributable under the BSD license.
+ * See the terms of the BSD license in the documentation provided with this software.
+ */
+
+package foxtrot.workers;
+
+import foxtrot.FoxtrotTestCase;
+import foxtrot.Job;
+import foxtrot.MutableInteger;
+import foxtrot.MutableReference;
+
+/**
+ * @version $Revision$
+ */
+public class PooledWorkerThreadTest extends FoxtrotTestCase
+{
+    public void testThreadIsReused() throws Exception
+    {
+        final PooledWorkerThread worker = new PooledWorkerThread(1, 1);
+        invokeTest(worker, new Runnable()
+        {
+            public void run()
+            {
+                worker.start();
+
+                final MutableReference first = new MutableReference(null);
+                worker.postTask(new Job()
+                {
+                    public Object run()
+                    {
+                        first.set(Thread.currentThread());
+                        return null;
+                    }
+                });
+                sleep(500);
+
+                final MutableReference second = new MutableReference(null);
+                worker.postTask(new Job()
+                {
+                    public Object run()
+                    {
+                        second.set(Thread.currentThread());
+                        return null;
+                    }
+                });
+                sleep(500);
+
+                if (first.get() == null) fail();
+                if (first.get() != second.get()) fail();
+                if (worker.getPoolSize() != 1) fail();
+            }
+        }, null);
+    }
+
+    public void testMaximumPoolSize() throws Exception
+    {
+        final PooledWorkerThread worker = new PooledWorkerThread(0, 2);
+        invokeTest(worker, new Runnable()
+        {
+            public void run()
+            {
+                worker.start();
+
+                final long delay = 1000;
+                final MutableInteger count = new MutableInteger(0);
+                for (int i = 0; i < 3; ++i)
+                {
+                    worker.postTask(new Job()
+                    {
+                        public Object run()
+                        {
+                            sleep(delay);
+                            synchronized (count)
+                            {
+                                count.set(count.get() + 1);
+                            }
+                            return null;
+                        }
+                    });
+                }
+
+                sleep(delay / 2);
+                if (worker.getPoolSize() != 2) fail();
+
+                sleep(delay);
+                // Two tasks ran in parallel, the third is waiting for a free thread
+                synchronized (count)
+                {
+                    if (count.get() != 2) fail();
+                }
+
+                sleep(delay);
+                synchronized (count)
+                {
+                    if (count.get() != 3) fail();
+                }
+            }
+        }, null);
+    }
+
+    public void testKeepAlive() throws Exception
+    {
+        final long keepAlive = 500;
+        final PooledWorkerThread worker = new PooledWorkerThread(1, 3, keepAlive, true);
+        invokeTest(worker, new Runnable()
+        {
+            public void run()
+            {
+                worker.start();
+                if (worker.getPoolSize() != 1) fail();
+
+                for (int i = 0; i < 3; ++i)
+                {
+                    worker.postTask(new Job()
+                    {
+                        public Object run()
+                        {
+                            sleep(250);
+                            return null;
+                        }
+                    });
+                }
+
+                sleep(100);
+                if (worker.getPoolSize() != 3) fail();
+
+                sleep(250 + 2 * keepAlive);
+                // Only the core thread is kept
+                if (worker.getPoolSize() != 1) fail();
+            }
+        }, null);
+    }
+
+    public void testIsWorkerThread() throws Exception
+    {
+        final PooledWorkerThread worker = new PooledWorkerThread(1, 2);
+        invokeTest(worker, new Runnable()
+        {
+            public void run()
+            {
+                worker.start();
+                if (worker.isWorkerThread()) fail();
+
+                final MutableInteger pass = new MutableInteger(0);
+                worker.postTask(new Job()
+                {
+                    public Object run()
+                    {
+                        if (worker.isWorkerThread()) pass.set(1);
+                        return null;
+                    }
+                });
+                sleep(500);
+                if (pass.get() != 1) fail();
+            }
+        }, null);
+    }
+
+    public void testStopDiscardsPooledThreads() throws Exception
+    {
+        final PooledWorkerThread worker = new PooledWorkerThread(2, 2, 60000, true);
+        invokeTest(worker, new Runnable()
+        {
+            public void run()
+            {
+                worker.start();
+
+                final MutableReference thread = new MutableReference(null);
+                worker.postTask(new Job()
+                {
+                    public Object run()
+                    {
+                        thread.set(Thread.currentThread());
+                        return null;
+                    }
+                });
+                sleep(500);
+                if (worker.getPoolSize() != 2) fail();
+
+                worker.stop();
+                if (worker.getPoolSize() != 0) fail();
+
+                // Core threads parked in the pool must die
+                Thread pooled = (Thread)thread.get();
+                try
+                {
+                    pooled.join(1000);
+                }
+                catch (InterruptedException x)
+                {
+                    fail();
+                }
+                if (pooled.isAlive()) fail();
+            }
+        }, null);
+    }
+
+    public void testStopFailsTaskWaitingForPooledThread() throws Exception
+    {
+        final PooledWorkerThread worker = new PooledWorkerThread(1, 1);
+        invokeTest(worker, new Runnable()
+        {
+            public void run()
+            {
+                worker.start();
+
+                worker.postTask(new Job()
+                {
+                    public Object run()
+                    {
+                        sleep(1000);
+                        return null;
+                    }
+                });
+                // The pool is full: this task is dequeued, but waits for the pooled thread
+                final MutableInteger ran = new MutableInteger(0);
+                Job waiting = new Job()
+                {
+                    public Object run()
+                    {
+                        ran.set(1);
+                        return null;
+                    }
+                };
+                worker.postTask(waiting);
+                sleep(500);
+
+                worker.stop();
+                sleep(500);
+
+                // Failed rather than lost or run outside of the pool
+                if (!waiting.isCompleted()) fail();
+                if (ran.get() != 0) fail();
+            }
+        }, null);
+    }
+
+    public void testThreadIsDiscardedAfterNotIgnoredInterruptInTask() throws Exception
+    {
+        final PooledWorkerThread worker = new PooledWorkerThread(1, 1);
+        invokeTest(worker, new Runnable()
+        {
+            public void run()
+            {
+                worker.start();
+
+                final MutableReference thread = new MutableReference(null);
+                worker.postTask(new Job()
+                {
+                    public Object run()
+                    {
+                        thread.set(Thread.currentThread());
+                        Thread.currentThread().interrupt();
+                        return null;
+                    }
+                });
+                sleep(500);
+                Thread foxtrot = (Thread)thread.get();
+
+                final MutableInteger pass = new MutableInteger(0);
+                worker.postTask(new Job()
+                {
+                    public Object run()
+                    {
+                        thread.set(Thread.currentThread());
+                        pass.set(1);
+                        return null;
+                    }
+                });
+                sleep(500);
+                if (pass.get() != 1) fail();
+                if (thread.get() == foxtrot) fail();
+            }
+        }, null);
+    }
+}
@@ -0,0 +1,142 @@
+/**
+ * Copyright (c) 2002-2008, Simone Bordet
+ * All rights reserved.
+ *
+ * This software is distributable under the BSD license.
+ * See the terms of the BSD license in the documentation provided with this software.
+ */
+
+package foxtrot.workers;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import foxtrot.FoxtrotTestCase;
+import foxtrot.Job;
+
+/**
+ * @version $Revision$
+ */
+public class PriorityWorkerThreadTest extends FoxtrotTestCase
+{
+    private Job newJob(final List order, final String name, int priority)
+    {
+        Job job = new Job()
+        {
+            public Object run()
+            {
+                synchronized (order)
+                {
+                    order.add(name);
+                }
+                return null;
+            }
+        };
+        job.setPriority(priority);
+        return job;
+    }
+
+    private void postBlocker(PriorityWorkerThread worker, final long delay)
+    {
+        worker.postTask(new Job()
+        {
+            public Object run()
+            {
+                sleep(delay);
+                return null;
+            }
+        });
+    }
+
+    public void testHigherPriorityFirst() throws Exception
+    {
+        final PriorityWorkerThread worker = new PriorityWorkerThread();
+        final List order = new ArrayList();
+        invokeTest(worker, new Runnable()
+        {
+            public void run()
+            {
+                // Keep the worker thread busy so that the next tasks are queued
+                postBlocker(worker, 500);
+                worker.postTask(newJob(order, "low1", -1));
+                worker.postTask(newJob(order, "normal1", 0));
+                worker.postTask(newJob(order, "low2", -1));
+                worker.postTask(newJob(order, "high", 1));
+                worker.postTask(newJob(order, "normal2", 0));
+                sleep(1000);
+            }
+        }, null);
+
+        List expected = Arrays.asList(new String[]{"high", "normal1", "normal2", "low1", "low2"});
+        synchronized (order)
+        {
+            if (!expected.equals(order)) fail(order.toString());
+        }
+    }
+
+    public void testAging() throws Exception
+    {
+        final long aging = 100;
+        final PriorityWorkerThread worker = new PriorityWorkerThread(aging);
+        final List order = new ArrayList();
+        invokeTest(worker, new Runnable()
+        {
+            public void run()
+            {
+                postBlocker(worker, 1000);
+                worker.postTask(newJob(order, "low", -1));
+                // The low priority task ages by more than 2 priority levels
+                sleep(aging * 5);
+                worker.postTask(newJob(order, "high", 1));
+                sleep(1000);
+            }
+        }, null);
+
+        List expected = Arrays.asList(new String[]{"low", "high"});
+        synchronized (order)
+        {
+            if (!expected.equals(order)) fail(order.toString());
+        }
+    }
+
+    public void testBoundedQueue() throws Exception
+    {
+        final PriorityWorkerThread worker = new PriorityWorkerThread();
+        worker.setMaximumQueueSize(2);
+        worker.setQueueFullPolicy(QueueFullPolicy.DROP_OLDEST);
+        final List order = new ArrayList();
+        invokeTest(worker, new Runnable()
+        {
+            public void run()
+            {
+                postBlocker(worker, 500);
+                // Let the blocker be dequeued
+                sleep(100);
+                worker.postTask(newJob(order, "low", -1));
+                worker.postTask(newJob(order, "high", 1));
+                // The queue is full: the oldest task is dropped, even if it is not the last to run
+                worker.postTask(newJob(order, "normal", 0));
+                if (worker.getQueueSize() != 2) fail();
+                if (worker.getDroppedTaskCount() != 1) fail();
+
+                worker.setQueueFullPolicy(QueueFullPolicy.REJECT);
+                try
+                {
+                    worker.postTask(newJob(order, "rejected", 2));
+                    fail();
+                }
+                catch (RejectedTaskException expected)
+                {
+                }
+                sleep(1000);
+            }
+        }, null);
+
+        List expected = Arrays.asList(new String[]{"high", "normal"});
+        synchronized (order)
+        {
+            if (!expected.equals(order)) fail(order.toString());
+        }
+    }
+}
@@ -8,6 +8,9 @@
 
 package foxtrot.workers;
 
+import javax.swing.SwingUtilities;
+
+import foxtrot.AsyncTask;
 import foxtrot.FoxtrotTestCase;
 import foxtrot.MutableInteger;
 import foxtrot.MutableReference;
@@ -381,4 +384,171 @@ public class SingleWorkerThreadTest extends FoxtrotTestCase
             }
         }, null);
     }
+
+    private void postBlocker(SingleWorkerThread worker, final long delay)
+    {
+        worker.postTask(new Task()
+        {
+            public Object run() throws Exception
+            {
+                Thread.sleep(delay);
+                return null;
+            }
+        });
+    }
+
+    private Task newTask(final MutableInteger counter, final MutableReference failure)
+    {
+        return new AsyncTask()
+        {
+            public Object run() throws Exception
+            {
+                synchronized (counter)
+                {
+                    counter.set(counter.get() + 1);
+                }
+                return null;
+            }
+
+            public void success(Object result)
+            {
+            }
+
+            public void failure(Throwable x)
+            {
+                failure.set(x);
+            }
+        };
+    }
+
+    public void testQueueFullReject() throws Exception
+    {
+        final TestSingleWorkerThread worker = new TestSingleWorkerThread();
+        worker.setMaximumQueueSize(1);
+        invokeTest(worker, new Runnable()
+        {
+            public void run()
+            {
+                postBlocker(worker, 500);
+                sleep(100);
+                final MutableInteger counter = new MutableInteger(0);
+                final MutableReference failure = new MutableReference(null);
+                worker.postTask(newTask(counter, failure));
+                try
+                {
+                    worker.postTask(newTask(counter, failure));
+                    fail();
+                }
+                catch (RejectedTaskException expected)
+                {
+                }
+                if (worker.getRejectedTaskCount() != 1) fail();
+                sleep(1000);
+                if (counter.get() != 1) fail();
+            }
+        }, null);
+    }
+
+    public void testQueueFullDropNewest() throws Exception
+    {
+        final TestSingleWorkerThread worker = new TestSingleWorkerThread();
+        worker.setMaximumQueueSize(1);
+        worker.setQueueFullPolicy(QueueFullPolicy.DROP_NEWEST);
+        final MutableInteger first = new MutableInteger(0);
+        final MutableInteger second = new MutableInteger(0);
+        final MutableReference firstFailure = new MutableReference(null);
+        final MutableReference secondFailure = new MutableReference(null);
+        invokeTest(worker, new Runnable()
+        {
+            public void run()
+            {
+                postBlocker(worker, 500);
+                sleep(100);
+                worker.postTask(newTask(first, firstFailure));
+                worker.postTask(newTask(second, secondFailure));
+                if (worker.getDroppedTaskCount() != 1) fail();
+                sleep(1000);
+            }
+        }, new Runnable()
+        {
+            public void run()
+            {
+                if (first.get() != 1) fail();
+                if (firstFailure.get() != null) fail();
+                if (second.get() != 0) fail();
+                if (!(secondFailure.get() instanceof RejectedTaskException)) fail();
+            }
+        });
+    }
+
+    public void testQueueFullDropOldest() throws Exception
+    {
+        final TestSingleWorkerThread worker = new TestSingleWorkerThread();
+        worker.setMaximumQueueSize(1);
+        worker.setQueueFullPolicy(QueueFullPolicy.DROP_OLDEST);
+        final MutableInteger first = new MutableInteger(0);
+        final MutableInteger second = new MutableInteger(0);
+        final MutableReference firstFailure = new MutableReference(null);
+        final MutableReference secondFailure = new MutableReference(null);
+        invokeTest(worker, new Runnable()
+        {
+            public void run()
+            {
+                postBlocker(worker, 500);
+                sleep(100);
+                worker.postTask(newTask(first, firstFailure));
+                worker.postTask(newTask(second, secondFailure));
+                if (worker.getDroppedTaskCount() != 1) fail();
+                sleep(1000);
+            }
+        }, new Runnable()
+        {
+            public void run()
+            {
+                if (first.get() != 0) fail();
+                if (!(firstFailure.get() instanceof RejectedTaskException)) fail();
+                if (second.get() != 1) fail();
+                if (secondFailure.get() != null) fail();
+            }
+        });
+    }
+
+    public void testQueueFullPumpEvents() throws Exception
+    {
+        final TestSingleWorkerThread worker = new TestSingleWorkerThread();
+        worker.setMaximumQueueSize(1);
+        worker.setQueueFullPolicy(QueueFullPolicy.PUMP_EVENTS);
+        invokeTest(worker, new Runnable()
+        {
+            public void run()
+            {
+                final long delay = 500;
+                postBlocker(worker, delay);
+                sleep(100);
+                final MutableInteger counter = new MutableInteger(0);
+                final MutableReference failure = new MutableReference(null);
+                worker.postTask(newTask(counter, failure));
+
+                final MutableInteger dispatched = new MutableInteger(0);
+                SwingUtilities.invokeLater(new Runnable()
+                {
+                    public void run()
+                    {
+                        dispatched.set(1);
+                    }
+                });
+
+                long start = System.currentTimeMillis();
+                // Blocks until the blocker task is done, while dispatching events
+                worker.postTask(newTask(counter, failure));
+                long elapsed = System.currentTimeMillis() - start;
+                if (elapsed < delay / 2) fail();
+                if (dispatched.get() != 1) fail();
+                if (worker.getRejectedTaskCount() != 0 || worker.getDroppedTaskCount() != 0) fail();
+
+                sleep(500);
+                if (counter.get() != 2) fail();
+            }
+        }, null);
+    }
 }
@@ -0,0 +1,132 @@
+/**
+ * Copyright (c) 2002-2008, Simone Bordet
+ * All rights reserved.
+ *
+ * This software is distributable under the BSD license.
+ * See the terms of the BSD license in the documentation provided with this software.
+ */
+
+package foxtrot.workers;
+
+import java.util.concurrent.ThreadFactory;
+
+import foxtrot.FoxtrotTestCase;
+import foxtrot.Job;
+import foxtrot.MutableInteger;
+import foxtrot.MutableReference;
+
+/**
+ * @version $Revision$
+ */
+public class VirtualWorkerThreadTest extends FoxtrotTestCase
+{
+    private VirtualWorkerThread newVirtualWorkerThread()
+    {
+        if (VirtualWorkerThread.isSupported()) return new VirtualWorkerThread();
+        // Use platform threads on JREs that do not support virtual threads
+        return new VirtualWorkerThread(new ThreadFactory()
+        {
+            public Thread newThread(Runnable runnable)
+            {
+                Thread thread = new Thread(runnable);
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    public void testThreadPerTask() throws Exception
+    {
+        final VirtualWorkerThread worker = newVirtualWorkerThread();
+        invokeTest(worker, new Runnable()
+        {
+            public void run()
+            {
+                final MutableReference first = new MutableReference(null);
+                final MutableReference second = new MutableReference(null);
+                final long delay = 1000;
+                worker.postTask(new Job()
+                {
+                    public Object run()
+                    {
+                        first.set(Thread.currentThread());
+                        sleep(delay);
+                        return null;
+                    }
+                });
+                worker.postTask(new Job()
+                {
+                    public Object run()
+                    {
+                        second.set(Thread.currentThread());
+                        sleep(delay);
+                        return null;
+                    }
+                });
+
+                sleep(delay / 2);
+                // Both tasks run in parallel
+                if (first.get() == null || second.get() == null) fail();
+                if (first.get() == second.get()) fail();
+            }
+        }, null);
+    }
+
+    public void testTasksRunInVirtualThreads() throws Exception
+    {
+        // Only the default factory creates virtual threads
+        if (!VirtualWorkerThread.isSupported()) return;
+
+        final VirtualWorkerThread worker = new VirtualWorkerThread();
+        final MutableReference virtual = new MutableReference(null);
+        invokeTest(worker, new Runnable()
+        {
+            public void run()
+            {
+                worker.postTask(new Job()
+                {
+                    public Object run()
+                    {
+                        try
+                        {
+                            // Thread.isVirtual() is not available at compile time
+                            virtual.set(Thread.class.getMethod("isVirtual", new Class[0]).invoke(Thread.currentThread(), new Object[0]));
+                        }
+                        catch (Exception x)
+                        {
+                            virtual.set(x);
+                        }
+                        return null;
+                    }
+                });
+                sleep(500);
+            }
+        }, null);
+
+        if (!Boolean.TRUE.equals(virtual.get())) fail(String.valueOf(virtual.get()));
+    }
+
+    public void testIsWorkerThread() throws Exception
+    {
+        final VirtualWorkerThread worker = newVirtualWorkerThread();
+        invokeTest(worker, new Runnable()
+        {
+            public void run()
+            {
+                if (worker.isWorkerThread()) fail();
+
+                final MutableInteger pass = new MutableInteger(0);
+                worker.postTask(new Job()
+                {
+                    public Object run()
+                    {
+                        if (worker.isWorkerThread()) pass.set(1);
+                        return null;
+                    }
+                });
+                sleep(500);
+                if (pass.get() != 1) fail();
+            }
+        }, null);
+    }
+}
@@ -0,0 +1,118 @@
+/**
+ * Copyright (c) 2002-2008, Simone Bordet
+ * All rights reserved.
+ *
+ * This software is distributable under the BSD license.
+ * See the terms of the BSD license in the documentation provided with this software.
+ */
+
+package foxtrot.workers;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import foxtrot.FoxtrotTestCase;
+import foxtrot.Job;
+import foxtrot.MutableInteger;
+import foxtrot.MutableReference;
+
+/**
+ * @version $Revision$
+ */
+public class WorkStealingWorkerThreadTest extends FoxtrotTestCase
+{
+    private static class Sum extends RecursiveJob
+    {
+        private final WorkStealingWorkerThread worker;
+        private final Set threads;
+        private final int low;
+        private final int high;
+
+        private Sum(WorkStealingWorkerThread worker, Set threads, int low, int high)
+        {
+            this.worker = worker;
+            this.threads = threads;
+            this.low = low;
+            this.high = high;
+        }
+
+        public Object run()
+        {
+            if (!worker.isWorkerThread()) throw new IllegalStateException();
+            synchronized (threads)
+            {
+                threads.add(Thread.currentThread());
+            }
+
+            if (high - low <= 1000)
+            {
+                long sum = 0;
+                for (int i = low; i < high; ++i) sum += i;
+                return new Long(sum);
+            }
+
+            int middle = (low + high) >>> 1;
+            Sum left = new Sum(worker, threads, low, middle);
+            Sum right = new Sum(worker, threads, middle, high);
+            left.fork();
+            long rightSum = ((Long)right.run()).longValue();
+            long leftSum = ((Long)left.join()).longValue();
+            return new Long(leftSum + rightSum);
+        }
+    }
+
+    public void testRecursiveJob() throws Exception
+    {
+        final WorkStealingWorkerThread worker = new WorkStealingWorkerThread(2);
+        final MutableReference result = new MutableReference(null);
+        final Set threads = new HashSet();
+        invokeTest(worker, new Runnable()
+        {
+            public void run()
+            {
+                final int count = 1000000;
+                worker.postTask(new Job()
+                {
+                    public Object run()
+                    {
+                        result.set(new Sum(worker, threads, 0, count).run());
+                        return null;
+                    }
+                });
+                sleep(1000);
+            }
+        }, null);
+
+        if (!new Long(999999L * 1000000L / 2).equals(result.get())) fail(String.valueOf(result.get()));
+        synchronized (threads)
+        {
+            if (threads.size() > 2) fail();
+        }
+        worker.getPool().shutdown();
+    }
+
+    public void testIsWorkerThread() throws Exception
+    {
+        final WorkStealingWorkerThread worker = new WorkStealingWorkerThread();
+        invokeTest(worker, new Runnable()
+        {
+            public void run()
+            {
+                if (worker.isWorkerThread()) fail();
+
+                final MutableInteger pass = new MutableInteger(0);
+                worker.postTask(new Job()
+                {
+                    public Object run()
+                    {
+                        if (worker.isWorkerThread()) pass.set(1);
+                        return null;
+                    }
+                });
+                sleep(500);
+                if (pass.get() != 1) fail();
+            }
+        }, null);
+        worker.getPool().shutdown();
+    }
+}
@@ -21,7 +21,6 @@ import javax.swing.JButton;
 import javax.swing.JFrame;
 import javax.swing.JPanel;
 import javax.swing.JProgressBar;
-import javax.swing.SwingUtilities;
 import javax.swing.border.EmptyBorder;
 
 import foxtrot.Job;
@@ -165,13 +164,13 @@ public class ProgressExample extends JFrame
                     if (isTaskInterrupted())
                     {
                         buffer.append(" - Interrupted !");
-                        update(i, max, buffer.toString());
+                        setProgress(new Step(i, max, buffer.toString()));
                         break;
                     }
                     else
                     {
                         // Update the progress bar
-                        update(i, max, buffer.toString());
+                        setProgress(new Step(i, max, buffer.toString()));
                     }
                 }
 
@@ -187,22 +186,16 @@ public class ProgressExample extends JFrame
                     return list;
                 }
             }
-        });
-    }
-
-    private void update(final int index, final int max, final String string)
-    {
-        // This method is called by the Foxtrot Worker thread, but I want to
-        // update the GUI, so I use SwingUtilities.invokeLater, as the Task
-        // is not finished yet.
 
-        SwingUtilities.invokeLater(new Runnable()
-        {
-            public void run()
+            protected void progressChanged(Object progress)
             {
-                bar.setMaximum(max);
-                bar.setValue(index);
-                bar.setString(string);
+                // This method is called in the AWT Event Dispatch Thread, so I can
+                // update the GUI. Foxtrot calls it at most once per frame with the
+                // latest progress, however fast the Task calls setProgress()
+                Step step = (Step)progress;
+                bar.setMaximum(step.max);
+                bar.setValue(step.index);
+                bar.setString(step.string);
             }
         });
     }
@@ -223,4 +216,18 @@ public class ProgressExample extends JFrame
         // See comments above on why it must be synchronized.
         taskInterrupted = value;
     }
+
+    private static class Step
+    {
+        private final int index;
+        private final int max;
+        private final String string;
+
+        private Step(int index, int max, String string)
+        {
+            this.index = index;
+            this.max = max;
+            this.string = string;
+        }
+    }
 }
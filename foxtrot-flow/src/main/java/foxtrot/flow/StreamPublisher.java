@@ -0,0 +1,123 @@
+/**
+ * Copyright (c) 2002-2008, Simone Bordet
+ * All rights reserved.
+ *
+ * This software is distributable under the BSD license.
+ * See the terms of the BSD license in the documentation provided with this software.
+ */
+
+package foxtrot.flow;
+
+import java.util.concurrent.Flow;
+import javax.swing.SwingUtilities;
+
+import foxtrot.AsyncWorker;
+import foxtrot.StreamSubscriber;
+import foxtrot.StreamSubscription;
+import foxtrot.StreamTask;
+
+/**
+ * Exposes a {@link StreamTask} as a {@link Flow.Publisher}. <br />
+ * When a {@link Flow.Subscriber} subscribes, the StreamTask is subscribed and posted via
+ * {@link AsyncWorker#post(foxtrot.AsyncTask)} in the Event Dispatch Thread, where all the methods
+ * of the Flow.Subscriber are called. <br />
+ * Like the StreamTask it wraps, a StreamPublisher supports a single subscriber; further
+ * subscribers are rejected with an IllegalStateException passed to their <tt>onError</tt> method.
+ *
+ * @version $Revision$
+ */
+public class StreamPublisher implements Flow.Publisher<Object>
+{
+    private final StreamTask task;
+
+    /**
+     * Creates a new StreamPublisher for the given StreamTask, which must not be subscribed yet.
+     *
+     * @throws IllegalArgumentException If the StreamTask is null
+     */
+    public StreamPublisher(StreamTask task)
+    {
+        if (task == null) throw new IllegalArgumentException("StreamTask cannot be null");
+        this.task = task;
+    }
+
+    public void subscribe(Flow.Subscriber<? super Object> subscriber)
+    {
+        if (subscriber == null) throw new NullPointerException("Flow.Subscriber cannot be null");
+        Runnable subscribe = () ->
+        {
+            try
+            {
+                task.subscribe(new FlowSubscriber(subscriber));
+            }
+            catch (IllegalStateException x)
+            {
+                subscriber.onSubscribe(new Flow.Subscription()
+                {
+                    public void request(long n)
+                    {
+                    }
+
+                    public void cancel()
+                    {
+                    }
+                });
+                subscriber.onError(x);
+                return;
+            }
+            AsyncWorker.post(task);
+        };
+        if (SwingUtilities.isEventDispatchThread())
+            subscribe.run();
+        else
+            SwingUtilities.invokeLater(subscribe);
+    }
+
+    private static class FlowSubscriber implements StreamSubscriber
+    {
+        private final Flow.Subscriber<? super Object> subscriber;
+
+        private FlowSubscriber(Flow.Subscriber<? super Object> subscriber)
+        {
+            this.subscriber = subscriber;
+        }
+
+        public void onSubscribe(StreamSubscription subscription)
+        {
+            subscriber.onSubscribe(new Flow.Subscription()
+            {
+                public void request(long n)
+                {
+                    if (n <= 0)
+                    {
+                        // As required by the Flow specification, signal instead of throwing
+                        subscription.cancel();
+                        SwingUtilities.invokeLater(() -> subscriber.onError(new IllegalArgumentException("Number of requested items must be positive")));
+                        return;
+                    }
+                    subscription.request(n);
+                }
+
+                public void cancel()
+                {
+                    subscription.cancel();
+                }
+            });
+        }
+
+        public void onNext(Object item)
+        {
+            subscriber.onNext(item);
+        }
+
+        public void onError(Throwable x)
+        {
+            subscriber.onError(x);
+        }
+
+        public void onComplete()
+        {
+            subscriber.onComplete();
+        }
+    }
+}
@@ -0,0 +1,193 @@
+/**
+ * Copyright (c) 2002-2008, Simone Bordet
+ * All rights reserved.
+ *
+ * This software is distributable under the BSD license.
+ * See the terms of the BSD license in the documentation provided with this software.
+ */
+
+package foxtrot.flow;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Flow;
+import javax.swing.SwingUtilities;
+
+import foxtrot.AsyncWorker;
+import foxtrot.FoxtrotTestCase;
+import foxtrot.Job;
+import foxtrot.MutableInteger;
+import foxtrot.MutableReference;
+import foxtrot.StreamTask;
+import foxtrot.Worker;
+
+/**
+ * @version $Revision$
+ */
+public class StreamPublisherTest extends FoxtrotTestCase
+{
+    public void testItemsAreDelivered() throws Exception
+    {
+        int count = 100;
+        List<Object> received = new ArrayList<>();
+        MutableInteger completed = new MutableInteger(0);
+        invokeTest(AsyncWorker.getWorkerThread(), () ->
+        {
+            StreamPublisher publisher = new StreamPublisher(new CountingTask(count));
+            publisher.subscribe(new Flow.Subscriber<Object>()
+            {
+                private Flow.Subscription subscription;
+
+                public void onSubscribe(Flow.Subscription subscription)
+                {
+                    this.subscription = subscription;
+                    subscription.request(1);
+                }
+
+                public void onNext(Object item)
+                {
+                    if (!SwingUtilities.isEventDispatchThread()) fail();
+                    received.add(item);
+                    subscription.request(1);
+                }
+
+                public void onError(Throwable x)
+                {
+                    completed.set(-1);
+                }
+
+                public void onComplete()
+                {
+                    completed.set(completed.get() + 1);
+                }
+            });
+            pumpUntil(completed);
+        }, () ->
+        {
+            if (completed.get() != 1) fail(String.valueOf(completed.get()));
+            if (received.size() != count) fail(String.valueOf(received.size()));
+            for (int i = 0; i < count; ++i)
+            {
+                if (((Integer)received.get(i)).intValue() != i) fail();
+            }
+        });
+    }
+
+    public void testSecondSubscriberIsRejected() throws Exception
+    {
+        MutableReference failure = new MutableReference(null);
+        MutableInteger completed = new MutableInteger(0);
+        invokeTest(AsyncWorker.getWorkerThread(), () ->
+        {
+            StreamPublisher publisher = new StreamPublisher(new CountingTask(1));
+            publisher.subscribe(new RecordingSubscriber(null, completed));
+            publisher.subscribe(new RecordingSubscriber(failure, null));
+            pumpUntil(completed);
+        }, () ->
+        {
+            if (completed.get() != 1) fail();
+            if (!(failure.get() instanceof IllegalStateException)) fail();
+        });
+    }
+
+    public void testNonPositiveRequestIsSignalled() throws Exception
+    {
+        MutableReference failure = new MutableReference(null);
+        MutableInteger signalled = new MutableInteger(0);
+        invokeTest(AsyncWorker.getWorkerThread(), () ->
+        {
+            StreamPublisher publisher = new StreamPublisher(new CountingTask(10));
+            publisher.subscribe(new Flow.Subscriber<Object>()
+            {
+                public void onSubscribe(Flow.Subscription subscription)
+                {
+                    subscription.request(0);
+                }
+
+                public void onNext(Object item)
+                {
+                    fail();
+                }
+
+                public void onError(Throwable x)
+                {
+                    failure.set(x);
+                    signalled.set(1);
+                }
+
+                public void onComplete()
+                {
+                    fail();
+                }
+            });
+            pumpUntil(signalled);
+        }, () ->
+        {
+            if (!(failure.get() instanceof IllegalArgumentException)) fail();
+        });
+    }
+
+    /**
+     * Dispatches events in the Event Dispatch Thread until the given value is set, or for at most 5 seconds.
+     */
+    private void pumpUntil(MutableInteger value)
+    {
+        for (int i = 0; i < 50 && value.get() == 0; ++i)
+        {
+            Worker.post(new Job()
+            {
+                public Object run()
+                {
+                    sleep(100);
+                    return null;
+                }
+            });
+        }
+    }
+
+    private static class CountingTask extends StreamTask
+    {
+        private final int count;
+
+        private CountingTask(int count)
+        {
+            this.count = count;
+        }
+
+        protected void stream() throws Exception
+        {
+            for (int i = 0; i < count; ++i) emit(i);
+        }
+    }
+
+    private static class RecordingSubscriber implements Flow.Subscriber<Object>
+    {
+        private final MutableReference failure;
+        private final MutableInteger completed;
+
+        private RecordingSubscriber(MutableReference failure, MutableInteger completed)
+        {
+            this.failure = failure;
+            this.completed = completed;
+        }
+
+        public void onSubscribe(Flow.Subscription subscription)
+        {
+            subscription.request(Long.MAX_VALUE);
+        }
+
+        public void onNext(Object item)
+        {
+        }
+
+        public void onError(Throwable x)
+        {
+            if (failure != null) failure.set(x);
+        }
+
+        public void onComplete()
+        {
+            if (completed != null) completed.set(1);
+        }
+    }
+}
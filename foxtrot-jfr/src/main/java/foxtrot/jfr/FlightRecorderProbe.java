@@ -0,0 +1,173 @@
+/**
+ * Copyright (c) 2002-2008, Simone Bordet
+ * All rights reserved.
+ *
+ * This software is distributable under the BSD license.
+ * See the terms of the BSD license in the documentation provided with this software.
+ */
+
+package foxtrot.jfr;
+
+import java.util.ArrayDeque;
+
+import foxtrot.AsyncTask;
+import foxtrot.Probe;
+import foxtrot.Task;
+import foxtrot.WorkerThread;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+
+/**
+ * A {@link Probe} that emits Java Flight Recorder events for the lifecycle of Tasks and for
+ * the sessions of event pumping, so that freezes of the user interface can be correlated with
+ * garbage collections, I/O and the other events in the same recording. <br />
+ * The events, in the <em>Foxtrot</em> category, are:
+ * <ul>
+ * <li><tt>foxtrot.TaskEnqueued</tt>, when a Task is posted to a WorkerThread;</li>
+ * <li><tt>foxtrot.TaskRun</tt>, spanning the run of a Task, with the time it waited in the queue;</li>
+ * <li><tt>foxtrot.TaskCallback</tt>, spanning the callbacks of an AsyncTask in the Event Dispatch Thread;</li>
+ * <li><tt>foxtrot.PumpEvents</tt>, spanning the dispatching of events while waiting for a Task,
+ * with the nesting depth and the number of events dispatched.</li>
+ * </ul>
+ * Install it once at startup:
+ * <pre>
+ * FlightRecorderProbe.install();
+ * </pre>
+ * While the events are not enabled in any recording, the probe does not allocate.
+ *
+ * @version $Revision$
+ */
+public class FlightRecorderProbe extends Probe
+{
+    private static final EventType ENQUEUED = EventType.getEventType(TaskEnqueuedEvent.class);
+    private static final EventType RUN = EventType.getEventType(TaskRunEvent.class);
+    private static final EventType CALLBACK = EventType.getEventType(TaskCallbackEvent.class);
+    private static final EventType PUMP = EventType.getEventType(PumpEventsEvent.class);
+    // Placeholder for events that are not enabled, so that begin and end callbacks stay paired
+    private static final Event DISABLED = new PumpEventsEvent();
+    private static FlightRecorderProbe instance;
+
+    // Stacks of the events in progress: Tasks may run nested in a worker thread,
+    // and event pumps and callbacks nest in the Event Dispatch Thread
+    private final ThreadLocal<ArrayDeque<Event>> events = ThreadLocal.withInitial(ArrayDeque::new);
+
+    /**
+     * Installs the shared FlightRecorderProbe, if it is not already installed.
+     *
+     * @return the shared FlightRecorderProbe
+     */
+    public static synchronized FlightRecorderProbe install()
+    {
+        if (instance == null)
+        {
+            instance = new FlightRecorderProbe();
+            Probe.install(instance);
+        }
+        return instance;
+    }
+
+    /**
+     * Uninstalls the shared FlightRecorderProbe, if it is installed.
+     */
+    public static synchronized void uninstall()
+    {
+        if (instance == null) return;
+        Probe.uninstall(instance);
+        instance = null;
+    }
+
+    protected void taskPosted(Task task, WorkerThread workerThread)
+    {
+        if (!ENQUEUED.isEnabled()) return;
+        TaskEnqueuedEvent event = new TaskEnqueuedEvent();
+        if (!event.shouldCommit()) return;
+        event.taskClass = task.getClass();
+        event.workerThread = String.valueOf(workerThread);
+        event.commit();
+    }
+
+    protected void taskStarted(Task task, WorkerThread workerThread, long queueWait)
+    {
+        if (!RUN.isEnabled())
+        {
+            push(DISABLED);
+            return;
+        }
+        TaskRunEvent event = new TaskRunEvent();
+        event.taskClass = task.getClass();
+        event.workerThread = String.valueOf(workerThread);
+        event.queueWait = queueWait;
+        event.begin();
+        push(event);
+    }
+
+    protected void taskFinished(Task task, WorkerThread workerThread, long runTime)
+    {
+        Event popped = pop();
+        if (popped == DISABLED) return;
+        TaskRunEvent event = (TaskRunEvent)popped;
+        event.end();
+        if (!event.shouldCommit()) return;
+        event.cancelled = task.isCancelled();
+        event.commit();
+    }
+
+    protected void callbackStarted(AsyncTask task)
+    {
+        if (!CALLBACK.isEnabled())
+        {
+            push(DISABLED);
+            return;
+        }
+        TaskCallbackEvent event = new TaskCallbackEvent();
+        event.taskClass = task.getClass();
+        event.cancelled = task.isCancelled();
+        event.begin();
+        push(event);
+    }
+
+    protected void callbackFinished(AsyncTask task, long duration)
+    {
+        Event popped = pop();
+        if (popped == DISABLED) return;
+        popped.end();
+        if (popped.shouldCommit()) popped.commit();
+    }
+
+    protected void pumpStarted(Task task, int depth)
+    {
+        if (!PUMP.isEnabled())
+        {
+            push(DISABLED);
+            return;
+        }
+        PumpEventsEvent event = new PumpEventsEvent();
+        event.taskClass = task.getClass();
+        event.nestingDepth = depth;
+        event.begin();
+        push(event);
+    }
+
+    protected void pumpStopped(Task task, int depth, long duration, long events)
+    {
+        Event popped = pop();
+        if (popped == DISABLED) return;
+        PumpEventsEvent event = (PumpEventsEvent)popped;
+        event.end();
+        if (!event.shouldCommit()) return;
+        event.eventsDispatched = events;
+        event.commit();
+    }
+
+    private void push(Event event)
+    {
+        events.get().push(event);
+    }
+
+    private Event pop()
+    {
+        // The probe may have been installed while an event was in progress
+        ArrayDeque<Event> stack = events.get();
+        return stack.isEmpty() ? DISABLED : stack.pop();
+    }
+}
@@ -0,0 +1,39 @@
+/**
+ * Copyright (c) 2002-2008, Simone Bordet
+ * All rights reserved.
+ *
+ * This software is distributable under the BSD license.
+ * See the terms of the BSD license in the documentation provided with this software.
+ */
+
+package foxtrot.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Emitted when an event pump stops dispatching events in the Event Dispatch Thread; the event
+ * spans the whole session of event pumping, and its stack trace shows who is waiting for the Task.
+ *
+ * @version $Revision$
+ */
+@Name("foxtrot.PumpEvents")
+@Label("Pump Events")
+@Category("Foxtrot")
+@Description("The Event Dispatch Thread dispatched events while waiting for a Task")
+final class PumpEventsEvent extends Event
+{
+    @Label("Task Class")
+    Class<?> taskClass;
+
+    @Label("Nesting Depth")
+    @Description("The nesting depth of the event pump, where 1 means that no other event pump was waiting")
+    int nestingDepth;
+
+    @Label("Events Dispatched")
+    @Description("The number of events dispatched, excluding the ones dispatched by nested event pumps")
+    long eventsDispatched;
+}
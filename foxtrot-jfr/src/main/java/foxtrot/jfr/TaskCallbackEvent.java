@@ -0,0 +1,32 @@
+/**
+ * Copyright (c) 2002-2008, Simone Bordet
+ * All rights reserved.
+ *
+ * This software is distributable under the BSD license.
+ * See the terms of the BSD license in the documentation provided with this software.
+ */
+
+package foxtrot.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Emitted when the callbacks of an AsyncTask have been called in the Event Dispatch Thread;
+ * the event spans the calls to the callbacks.
+ *
+ * @version $Revision$
+ */
+@Name("foxtrot.TaskCallback")
+@Label("Task Callback")
+@Category("Foxtrot")
+@Description("The callbacks of an AsyncTask have been called in the Event Dispatch Thread")
+@StackTrace(false)
+final class TaskCallbackEvent extends TaskEvent
+{
+    @Label("Cancelled")
+    boolean cancelled;
+}
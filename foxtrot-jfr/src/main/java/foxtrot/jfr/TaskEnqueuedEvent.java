@@ -0,0 +1,29 @@
+/**
+ * Copyright (c) 2002-2008, Simone Bordet
+ * All rights reserved.
+ *
+ * This software is distributable under the BSD license.
+ * See the terms of the BSD license in the documentation provided with this software.
+ */
+
+package foxtrot.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Emitted when a Task is posted to a WorkerThread.
+ *
+ * @version $Revision$
+ */
+@Name("foxtrot.TaskEnqueued")
+@Label("Task Enqueued")
+@Category("Foxtrot")
+@Description("A Task has been posted to the queue of a WorkerThread")
+@StackTrace(false)
+final class TaskEnqueuedEvent extends TaskEvent
+{
+}
@@ -0,0 +1,26 @@
+/**
+ * Copyright (c) 2002-2008, Simone Bordet
+ * All rights reserved.
+ *
+ * This software is distributable under the BSD license.
+ * See the terms of the BSD license in the documentation provided with this software.
+ */
+
+package foxtrot.jfr;
+
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+
+/**
+ * Base class for the events about a Task.
+ *
+ * @version $Revision$
+ */
+abstract class TaskEvent extends Event
+{
+    @Label("Task Class")
+    Class<?> taskClass;
+
+    @Label("Worker Thread")
+    String workerThread;
+}
@@ -0,0 +1,37 @@
+/**
+ * Copyright (c) 2002-2008, Simone Bordet
+ * All rights reserved.
+ *
+ * This software is distributable under the BSD license.
+ * See the terms of the BSD license in the documentation provided with this software.
+ */
+
+package foxtrot.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * Emitted when a Task finished running in a worker thread; the event spans the run of the Task.
+ *
+ * @version $Revision$
+ */
+@Name("foxtrot.TaskRun")
+@Label("Task Run")
+@Category("Foxtrot")
+@Description("A Task ran in a worker thread")
+@StackTrace(false)
+final class TaskRunEvent extends TaskEvent
+{
+    @Label("Queue Wait")
+    @Description("The time the Task waited in the queue of the WorkerThread, or -1 if it did not wait in a queue")
+    @Timespan(Timespan.NANOSECONDS)
+    long queueWait;
+
+    @Label("Cancelled")
+    boolean cancelled;
+}
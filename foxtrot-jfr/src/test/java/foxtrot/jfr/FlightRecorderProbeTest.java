@@ -0,0 +1,115 @@
+/**
+ * Copyright (c) 2002-2008, Simone Bordet
+ * All rights reserved.
+ *
+ * This software is distributable under the BSD license.
+ * See the terms of the BSD license in the documentation provided with this software.
+ */
+
+package foxtrot.jfr;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import foxtrot.AsyncTask;
+import foxtrot.AsyncWorker;
+import foxtrot.FoxtrotTestCase;
+import foxtrot.Job;
+import foxtrot.Worker;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+/**
+ * @version $Revision$
+ */
+public class FlightRecorderProbeTest extends FoxtrotTestCase
+{
+    public void testEventsAreRecorded() throws Exception
+    {
+        Path file = Files.createTempFile("foxtrot", ".jfr");
+        FlightRecorderProbe.install();
+        try (Recording recording = new Recording())
+        {
+            recording.enable("foxtrot.TaskEnqueued");
+            recording.enable("foxtrot.TaskRun");
+            recording.enable("foxtrot.TaskCallback");
+            recording.enable("foxtrot.PumpEvents");
+            recording.start();
+
+            invokeTest(Worker.getWorkerThread(), () ->
+            {
+                Worker.post(new Job()
+                {
+                    public Object run()
+                    {
+                        sleep(100);
+                        return null;
+                    }
+                });
+
+                AsyncWorker.post(new AsyncTask()
+                {
+                    public Object run()
+                    {
+                        return null;
+                    }
+
+                    public void success(Object result)
+                    {
+                    }
+
+                    public void failure(Throwable x)
+                    {
+                    }
+                });
+
+                // Pump events so that the AsyncTask callbacks are called
+                Worker.post(new Job()
+                {
+                    public Object run()
+                    {
+                        sleep(500);
+                        return null;
+                    }
+                });
+            }, null);
+
+            recording.stop();
+            recording.dump(file);
+        }
+        finally
+        {
+            FlightRecorderProbe.uninstall();
+        }
+
+        List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+        Files.delete(file);
+
+        Map<String, Integer> counts = new HashMap<>();
+        for (RecordedEvent event : events)
+        {
+            String name = event.getEventType().getName();
+            if (!name.startsWith("foxtrot.")) continue;
+            counts.merge(name, 1, Integer::sum);
+            if ("foxtrot.TaskRun".equals(name))
+            {
+                if (event.getLong("queueWait") < 0) fail();
+                if (event.getClass("taskClass") == null) fail();
+                if (event.getString("workerThread") == null) fail();
+            }
+            if ("foxtrot.PumpEvents".equals(name))
+            {
+                if (event.getInt("nestingDepth") != 1) fail();
+            }
+        }
+
+        if (counts.get("foxtrot.TaskEnqueued") != 3) fail(String.valueOf(counts));
+        if (counts.get("foxtrot.TaskRun") != 3) fail(String.valueOf(counts));
+        if (counts.get("foxtrot.TaskCallback") != 1) fail(String.valueOf(counts));
+        if (counts.get("foxtrot.PumpEvents") != 2) fail(String.valueOf(counts));
+    }
+}
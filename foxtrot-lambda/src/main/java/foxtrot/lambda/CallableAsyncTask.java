@@ -0,0 +1,101 @@
+/**
+ * Copyright (c) 2002-2008, Simone Bordet
+ * All rights reserved.
+ *
+ * This software is distributable under the BSD license.
+ * See the terms of the BSD license in the documentation provided with this software.
+ */
+
+package foxtrot.lambda;
+
+import java.lang.reflect.UndeclaredThrowableException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+import foxtrot.AsyncTask;
+
+/**
+ * The AsyncTask that runs a {@link Callable} for asynchronous posts, where the callbacks
+ * are called in the Event Dispatch Thread, or where the result is delivered by a future;
+ * synchronous posts use {@link CallableTask} instead. <br />
+ * When it has a future, the future is completed in the worker thread as soon as the
+ * Callable returns or throws.
+ *
+ * @version $Revision$
+ */
+final class CallableAsyncTask<V> extends AsyncTask
+{
+    private final Callable<V> callable;
+    private final Consumer<? super V> success;
+    private final Consumer<? super Throwable> failure;
+    private volatile CompletableFuture<V> future;
+
+    CallableAsyncTask(Callable<V> callable, Consumer<? super V> success, Consumer<? super Throwable> failure)
+    {
+        if (callable == null) throw new IllegalArgumentException("Callable cannot be null");
+        this.callable = callable;
+        this.success = success;
+        this.failure = failure;
+    }
+
+    /**
+     * Sets the future completed with the result of this Task.
+     * Must be called before this Task is posted.
+     */
+    void setFuture(CompletableFuture<V> future)
+    {
+        this.future = future;
+    }
+
+    public Object run() throws Exception
+    {
+        CompletableFuture<V> future = this.future;
+        if (future == null) return callable.call();
+
+        try
+        {
+            V result = callable.call();
+            future.complete(result);
+            return result;
+        }
+        catch (Throwable x)
+        {
+            future.completeExceptionally(x);
+            if (x instanceof Error) throw (Error)x;
+            if (x instanceof Exception) throw (Exception)x;
+            // Only possible if the Callable sneakily throws a checked Throwable
+            throw new UndeclaredThrowableException(x);
+        }
+    }
+
+    protected void finish()
+    {
+        // Posts with a future have no callbacks, and the future is already completed
+        if (success == null && failure == null) return;
+        super.finish();
+    }
+
+    @SuppressWarnings("unchecked")
+    public void success(Object result)
+    {
+        if (success != null) success.accept((V)result);
+    }
+
+    public void failure(Throwable x)
+    {
+        if (failure != null) failure.accept(x);
+    }
+
+    public void cancelled()
+    {
+        // Cancelled via Task.cancel(), or discarded before running
+        CompletableFuture<V> future = this.future;
+        if (future != null) future.cancel(false);
+    }
+
+    public String toString()
+    {
+        return "CallableAsyncTask[" + callable + "]";
+    }
+}
@@ -0,0 +1,41 @@
+/**
+ * Copyright (c) 2002-2008, Simone Bordet
+ * All rights reserved.
+ *
+ * This software is distributable under the BSD license.
+ * See the terms of the BSD license in the documentation provided with this software.
+ */
+
+package foxtrot.lambda;
+
+import java.util.concurrent.Callable;
+
+import foxtrot.Task;
+
+/**
+ * The Task that runs a {@link Callable} for synchronous posts. <br />
+ * Differently from {@link CallableAsyncTask}, it is a plain Task, so that its completion wakes up
+ * the event pump directly, without the delivery of callbacks in the Event Dispatch Thread.
+ *
+ * @version $Revision$
+ */
+final class CallableTask<V> extends Task
+{
+    private final Callable<V> callable;
+
+    CallableTask(Callable<V> callable)
+    {
+        if (callable == null) throw new IllegalArgumentException("Callable cannot be null");
+        this.callable = callable;
+    }
+
+    public Object run() throws Exception
+    {
+        return callable.call();
+    }
+
+    public String toString()
+    {
+        return "CallableTask[" + callable + "]";
+    }
+}
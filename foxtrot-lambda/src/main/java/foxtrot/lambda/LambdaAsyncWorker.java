@@ -0,0 +1,148 @@
+/**
+ * Copyright (c) 2002-2008, Simone Bordet
+ * All rights reserved.
+ *
+ * This software is distributable under the BSD license.
+ * See the terms of the BSD license in the documentation provided with this software.
+ */
+
+package foxtrot.lambda;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+import javax.swing.SwingUtilities;
+
+import foxtrot.AsyncWorker;
+
+/**
+ * Entry points to {@link AsyncWorker} that accept a {@link Callable} and the callbacks for its
+ * result, so that they can be passed as lambdas or method references instead of implementing
+ * an {@link foxtrot.AsyncTask} subclass:
+ * <pre>
+ * LambdaAsyncWorker.post(() -> loadText(file), text -> area.setText(text), x -> showError(x));
+ * </pre>
+ * AsyncTasks can also be composed with other asynchronous computations via {@link CompletionStage}s,
+ * using {@link #getEventDispatchExecutor()} to run the steps that update the GUI:
+ * <pre>
+ * LambdaAsyncWorker.submit(() -> loadText(file))
+ *         .thenApply(text -> text.trim())
+ *         .thenAcceptAsync(text -> area.setText(text), LambdaAsyncWorker.getEventDispatchExecutor());
+ * </pre>
+ *
+ * @version $Revision$
+ * @see LambdaWorker
+ */
+public class LambdaAsyncWorker
+{
+    private static final Executor eventDispatchExecutor = new EventDispatchExecutor();
+
+    /**
+     * Cannot be instantiated, use static methods only.
+     */
+    private LambdaAsyncWorker()
+    {
+    }
+
+    /**
+     * Runs asynchronously the given Callable in a worker thread. <br />
+     * This method returns immediately; when the Callable returns, the success callback is called
+     * in the Event Dispatch Thread with the value returned by the Callable; if the Callable throws,
+     * the failure callback is called in the Event Dispatch Thread with the Throwable thrown.
+     *
+     * @param callable The Callable to run
+     * @param success  The callback for the value returned by the Callable, may be null
+     * @param failure  The callback for the Throwable thrown by the Callable, may be null
+     * @see AsyncWorker#post(foxtrot.AsyncTask)
+     */
+    public static <V> void post(Callable<V> callable, Consumer<? super V> success, Consumer<? super Throwable> failure)
+    {
+        AsyncWorker.post(new CallableAsyncTask<V>(callable, success, failure));
+    }
+
+    /**
+     * Runs asynchronously the given Callable in a worker thread, returning a CompletableFuture
+     * that is completed in the worker thread with the value returned by the Callable, or
+     * exceptionally with the Throwable thrown by the Callable. <br />
+     * Cancelling the returned future cancels the task: if it is still queued it will not run, and
+     * if it is running its thread is interrupted when <tt>mayInterruptIfRunning</tt> is true;
+     * conversely, if the task is cancelled, the future is cancelled too. <br />
+     * This method can be called from any thread; the task is posted via
+     * {@link AsyncWorker#post(foxtrot.AsyncTask)} from the Event Dispatch Thread.
+     *
+     * @param callable The Callable to run
+     * @return a future completed with the result of the Callable
+     * @see #getEventDispatchExecutor()
+     */
+    public static <V> CompletableFuture<V> submit(Callable<V> callable)
+    {
+        final CallableAsyncTask<V> task = new CallableAsyncTask<V>(callable, null, null);
+        TaskFuture<V> future = new TaskFuture<V>(task);
+        task.setFuture(future);
+
+        if (SwingUtilities.isEventDispatchThread())
+            post(task, future);
+        else
+            SwingUtilities.invokeLater(() -> post(task, future));
+        return future;
+    }
+
+    private static <V> void post(CallableAsyncTask<V> task, CompletableFuture<V> future)
+    {
+        // Cancelled before being posted
+        if (future.isDone()) return;
+        try
+        {
+            AsyncWorker.post(task);
+        }
+        catch (Throwable x)
+        {
+            future.completeExceptionally(x);
+        }
+    }
+
+    /**
+     * Returns an Executor that runs tasks in the Event Dispatch Thread, via
+     * {@link SwingUtilities#invokeLater(Runnable)}, to be used for the steps of
+     * {@link CompletionStage}s that update the GUI.
+     */
+    public static Executor getEventDispatchExecutor()
+    {
+        return eventDispatchExecutor;
+    }
+
+    private static class EventDispatchExecutor implements Executor
+    {
+        public void execute(Runnable command)
+        {
+            SwingUtilities.invokeLater(command);
+        }
+
+        public String toString()
+        {
+            return "EventDispatchExecutor";
+        }
+    }
+
+    /**
+     * A CompletableFuture that cancels its task when it is cancelled.
+     */
+    private static class TaskFuture<V> extends CompletableFuture<V>
+    {
+        private final CallableAsyncTask<V> task;
+
+        private TaskFuture(CallableAsyncTask<V> task)
+        {
+            this.task = task;
+        }
+
+        public boolean cancel(boolean mayInterruptIfRunning)
+        {
+            boolean result = super.cancel(mayInterruptIfRunning);
+            if (result) task.cancel(mayInterruptIfRunning);
+            return result;
+        }
+    }
+}
@@ -0,0 +1,64 @@
+/**
+ * Copyright (c) 2002-2008, Simone Bordet
+ * All rights reserved.
+ *
+ * This software is distributable under the BSD license.
+ * See the terms of the BSD license in the documentation provided with this software.
+ */
+
+package foxtrot.lambda;
+
+import java.util.concurrent.Callable;
+
+import foxtrot.ConcurrentWorker;
+
+/**
+ * Entry points to {@link ConcurrentWorker} that accept a {@link Callable}, so that the time-consuming
+ * code can be passed as a lambda or a method reference instead of a {@link foxtrot.Task} subclass:
+ * <pre>
+ * String text = LambdaConcurrentWorker.post(() -> loadText(file));
+ * </pre>
+ * The Callable is run by the {@link ConcurrentWorker#getWorkerThread() WorkerThread} and using the
+ * {@link ConcurrentWorker#getEventPump() EventPump} of {@link ConcurrentWorker}, with the same semantic of
+ * {@link ConcurrentWorker#post(foxtrot.Task)}.
+ *
+ * @version $Revision$
+ * @see LambdaWorker
+ * @see LambdaAsyncWorker
+ */
+public class LambdaConcurrentWorker
+{
+    /**
+     * Cannot be instantiated, use static methods only.
+     */
+    private LambdaConcurrentWorker()
+    {
+    }
+
+    /**
+     * Runs the given Callable in the worker thread, while dequeueing AWT events.
+     *
+     * @return the value returned by the Callable
+     * @throws Exception the exception thrown by the Callable
+     * @see ConcurrentWorker#post(foxtrot.Task)
+     */
+    @SuppressWarnings("unchecked")
+    public static <V> V post(Callable<V> callable) throws Exception
+    {
+        return (V)ConcurrentWorker.post(new CallableTask<V>(callable));
+    }
+
+    /**
+     * Runs the given Callable in the worker thread, while dequeueing AWT events,
+     * waiting at most for the given timeout.
+     *
+     * @return the value returned by the Callable
+     * @throws Exception the exception thrown by the Callable
+     * @see ConcurrentWorker#post(foxtrot.Task, long, boolean)
+     */
+    @SuppressWarnings("unchecked")
+    public static <V> V post(Callable<V> callable, long timeout, boolean cancel) throws Exception
+    {
+        return (V)ConcurrentWorker.post(new CallableTask<V>(callable), timeout, cancel);
+    }
+}
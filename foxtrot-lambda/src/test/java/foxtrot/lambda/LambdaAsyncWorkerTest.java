@@ -0,0 +1,115 @@
+/**
+ * Copyright (c) 2002-2008, Simone Bordet
+ * All rights reserved.
+ *
+ * This software is distributable under the BSD license.
+ * See the terms of the BSD license in the documentation provided with this software.
+ */
+
+package foxtrot.lambda;
+
+import java.io.IOException;
+import java.lang.reflect.UndeclaredThrowableException;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import javax.swing.SwingUtilities;
+
+import foxtrot.FoxtrotTestCase;
+
+/**
+ * @version $Revision$
+ */
+public class LambdaAsyncWorkerTest extends FoxtrotTestCase
+{
+    public void testSubmit() throws Exception
+    {
+        CompletableFuture<Thread> worker = new CompletableFuture<>();
+        CompletableFuture<String> result = LambdaAsyncWorker.submit(() -> "result")
+                .whenComplete((r, x) -> worker.complete(Thread.currentThread()))
+                .thenApplyAsync(r ->
+                {
+                    if (!SwingUtilities.isEventDispatchThread()) fail();
+                    return r + "!";
+                }, LambdaAsyncWorker.getEventDispatchExecutor());
+
+        if (!"result!".equals(result.get(5, TimeUnit.SECONDS))) fail();
+        // The future is completed in the worker thread
+        Thread thread = worker.get(5, TimeUnit.SECONDS);
+        if (thread.getName().indexOf("Foxtrot") < 0) fail(thread.getName());
+    }
+
+    public void testSubmitThrows() throws Exception
+    {
+        CompletableFuture<Object> result = LambdaAsyncWorker.submit(() ->
+        {
+            throw new IOException();
+        });
+        try
+        {
+            result.get(5, TimeUnit.SECONDS);
+            fail();
+        }
+        catch (ExecutionException x)
+        {
+            if (!(x.getCause() instanceof IOException)) fail();
+        }
+    }
+
+    public void testSubmitThrowsThrowable() throws Exception
+    {
+        final Throwable throwable = new Throwable();
+        CallableAsyncTask<Object> task = new CallableAsyncTask<Object>(() -> LambdaAsyncWorkerTest.<Object, RuntimeException>sneakyThrow(throwable), null, null);
+        CompletableFuture<Object> future = new CompletableFuture<>();
+        task.setFuture(future);
+        try
+        {
+            task.run();
+            fail();
+        }
+        catch (UndeclaredThrowableException x)
+        {
+            if (x.getCause() != throwable) fail();
+        }
+        if (!future.isCompletedExceptionally()) fail();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <V, X extends Throwable> V sneakyThrow(Throwable x) throws X
+    {
+        throw (X)x;
+    }
+
+    public void testCancelInterruptsTask() throws Exception
+    {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch interrupted = new CountDownLatch(1);
+        CompletableFuture<Object> result = LambdaAsyncWorker.submit(() ->
+        {
+            started.countDown();
+            try
+            {
+                Thread.sleep(5000);
+            }
+            catch (InterruptedException x)
+            {
+                interrupted.countDown();
+            }
+            return null;
+        });
+
+        if (!started.await(5, TimeUnit.SECONDS)) fail();
+        if (!result.cancel(true)) fail();
+        if (!interrupted.await(5, TimeUnit.SECONDS)) fail();
+        try
+        {
+            result.join();
+            fail();
+        }
+        catch (CancellationException expected)
+        {
+        }
+    }
+}
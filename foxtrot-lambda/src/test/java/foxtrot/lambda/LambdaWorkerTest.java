@@ -0,0 +1,145 @@
+/**
+ * Copyright (c) 2002-2008, Simone Bordet
+ * All rights reserved.
+ *
+ * This software is distributable under the BSD license.
+ * See the terms of the BSD license in the documentation provided with this software.
+ */
+
+package foxtrot.lambda;
+
+import java.io.IOException;
+import javax.swing.SwingUtilities;
+
+import foxtrot.AsyncTask;
+import foxtrot.AsyncWorker;
+import foxtrot.FoxtrotTestCase;
+import foxtrot.MutableInteger;
+import foxtrot.MutableReference;
+import foxtrot.Probe;
+import foxtrot.Task;
+import foxtrot.Worker;
+import foxtrot.WorkerThread;
+
+/**
+ * @version $Revision$
+ */
+public class LambdaWorkerTest extends FoxtrotTestCase
+{
+    public void testPost() throws Exception
+    {
+        invokeTest(Worker.getWorkerThread(), () ->
+        {
+            try
+            {
+                String result = LambdaWorker.post(() ->
+                {
+                    if (SwingUtilities.isEventDispatchThread()) fail();
+                    return "result";
+                });
+                if (!"result".equals(result)) fail();
+            }
+            catch (Exception x)
+            {
+                fail();
+            }
+        }, null);
+    }
+
+    public void testPostThrows() throws Exception
+    {
+        invokeTest(Worker.getWorkerThread(), () ->
+        {
+            try
+            {
+                LambdaWorker.post(() ->
+                {
+                    throw new IOException();
+                });
+                fail();
+            }
+            catch (IOException expected)
+            {
+            }
+            catch (Exception x)
+            {
+                fail();
+            }
+        }, null);
+    }
+
+    public void testPostIsNotDeliveredAsCallback() throws Exception
+    {
+        final MutableInteger finished = new MutableInteger(0);
+        final MutableInteger callbacks = new MutableInteger(0);
+        Probe probe = new Probe()
+        {
+            protected void taskFinished(Task task, WorkerThread workerThread, long runTime)
+            {
+                synchronized (finished)
+                {
+                    finished.set(finished.get() + 1);
+                }
+            }
+
+            protected void callbackStarted(AsyncTask task)
+            {
+                synchronized (callbacks)
+                {
+                    callbacks.set(callbacks.get() + 1);
+                }
+            }
+        };
+        Probe.install(probe);
+        try
+        {
+            invokeTest(Worker.getWorkerThread(), () ->
+            {
+                try
+                {
+                    if (!"result".equals(LambdaWorker.post(() -> "result"))) fail();
+                }
+                catch (Exception x)
+                {
+                    fail();
+                }
+            }, null);
+        }
+        finally
+        {
+            Probe.uninstall(probe);
+        }
+
+        // Synchronous posts complete without delivering callbacks in the Event Dispatch Thread
+        synchronized (finished)
+        {
+            if (finished.get() != 1) fail(String.valueOf(finished.get()));
+        }
+        synchronized (callbacks)
+        {
+            if (callbacks.get() != 0) fail(String.valueOf(callbacks.get()));
+        }
+    }
+
+    public void testAsyncPost() throws Exception
+    {
+        final MutableReference success = new MutableReference(null);
+        final MutableReference failure = new MutableReference(null);
+        invokeTest(AsyncWorker.getWorkerThread(), () ->
+        {
+            LambdaAsyncWorker.post(() -> 42, value ->
+            {
+                if (!SwingUtilities.isEventDispatchThread()) fail();
+                success.set(value);
+            }, failure::set);
+            LambdaAsyncWorker.post(() ->
+            {
+                throw new IOException();
+            }, null, failure::set);
+        }, () ->
+        {
+            if (!Integer.valueOf(42).equals(success.get())) fail();
+            if (!(failure.get() instanceof IOException)) fail();
+        });
+    }
+}
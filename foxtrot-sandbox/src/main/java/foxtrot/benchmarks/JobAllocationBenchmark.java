@@ -0,0 +1,102 @@
+/**
+ * Copyright (c) 2002-2008, Simone Bordet
+ * All rights reserved.
+ *
+ * This software is distributable under the BSD license.
+ * See the terms of the BSD license in the documentation provided with this software.
+ */
+
+package foxtrot.benchmarks;
+
+import java.lang.management.ManagementFactory;
+
+import javax.swing.SwingUtilities;
+
+import foxtrot.Job;
+import foxtrot.JobPool;
+import foxtrot.RecyclableJob;
+import foxtrot.Worker;
+
+/**
+ * Measures the bytes allocated, by all threads, to post Jobs via {@link Worker#post(Job)},
+ * either creating a new Job for every post or reusing Jobs from a {@link JobPool}. <br />
+ * Requires a JVM that supports <tt>com.sun.management.ThreadMXBean</tt>.
+ *
+ * @version $Revision$
+ */
+public class JobAllocationBenchmark
+{
+    private static final int POSTS = 20000;
+
+    public static void main(String[] args) throws Exception
+    {
+        // Warm up, then measure
+        run(false);
+        run(true);
+    }
+
+    private static void run(final boolean print) throws Exception
+    {
+        SwingUtilities.invokeAndWait(new Runnable()
+        {
+            public void run()
+            {
+                long before = allocatedBytes();
+                for (int i = 0; i < POSTS; ++i)
+                {
+                    Worker.post(new Job()
+                    {
+                        public Object run()
+                        {
+                            return null;
+                        }
+                    });
+                }
+                long allocated = allocatedBytes() - before;
+                if (print) System.out.println("new Job per post: " + (allocated / POSTS) + " bytes/post");
+
+                JobPool pool = new JobPool(4)
+                {
+                    protected RecyclableJob newJob()
+                    {
+                        return new RecyclableJob()
+                        {
+                            public Object run()
+                            {
+                                return null;
+                            }
+                        };
+                    }
+                };
+                before = allocatedBytes();
+                for (int i = 0; i < POSTS; ++i)
+                {
+                    RecyclableJob job = pool.acquire();
+                    try
+                    {
+                        Worker.post(job);
+                    }
+                    finally
+                    {
+                        pool.release(job);
+                    }
+                }
+                allocated = allocatedBytes() - before;
+                if (print) System.out.println("pooled Job:       " + (allocated / POSTS) + " bytes/post");
+            }
+        });
+    }
+
+    private static long allocatedBytes()
+    {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean();
+        long[] ids = threads.getAllThreadIds();
+        long[] bytes = threads.getThreadAllocatedBytes(ids);
+        long result = 0;
+        for (int i = 0; i < bytes.length; ++i)
+        {
+            if (bytes[i] > 0) result += bytes[i];
+        }
+        return result;
+    }
+}
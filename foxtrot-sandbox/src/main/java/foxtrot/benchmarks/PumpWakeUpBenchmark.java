@@ -0,0 +1,110 @@
+/**
+ * Copyright (c) 2002-2008, Simone Bordet
+ * All rights reserved.
+ *
+ * This software is distributable under the BSD license.
+ * See the terms of the BSD license in the documentation provided with this software.
+ */
+
+package foxtrot.benchmarks;
+
+import java.awt.AWTEvent;
+import java.awt.EventQueue;
+import java.awt.Toolkit;
+
+import javax.swing.SwingUtilities;
+
+import foxtrot.ConcurrentWorker;
+import foxtrot.Job;
+import foxtrot.Worker;
+
+/**
+ * Counts the events posted to the AWT Event Queue while posting Tasks, to measure
+ * the events posted only to wake up the event pumps when Tasks complete. <br />
+ * Three cases are measured:
+ * <ul>
+ * <li>Tasks posted from the Event Dispatch Thread, where the event pump waits for every Task;</li>
+ * <li>Tasks posted from a worker thread, that run in the same thread without any event pump;</li>
+ * <li>Tasks posted from a worker thread of {@link ConcurrentWorker}, nested in a Task
+ * posted from the Event Dispatch Thread.</li>
+ * </ul>
+ *
+ * @version $Revision$
+ */
+public class PumpWakeUpBenchmark
+{
+    private static final int POSTS = 10000;
+
+    public static void main(String[] args) throws Exception
+    {
+        final CountingEventQueue queue = new CountingEventQueue();
+        Toolkit.getDefaultToolkit().getSystemEventQueue().push(queue);
+
+        SwingUtilities.invokeAndWait(new Runnable()
+        {
+            public void run()
+            {
+                queue.reset();
+                for (int i = 0; i < POSTS; ++i) Worker.post(new EmptyJob());
+                System.out.println("posts from the Event Dispatch Thread: " + ratio(queue.reset()) + " events/post");
+
+                Worker.post(new Job()
+                {
+                    public Object run()
+                    {
+                        queue.reset();
+                        for (int i = 0; i < POSTS; ++i) Worker.post(new EmptyJob());
+                        System.out.println("posts from a worker thread:           " + ratio(queue.reset()) + " events/post");
+                        return null;
+                    }
+                });
+
+                ConcurrentWorker.post(new Job()
+                {
+                    public Object run()
+                    {
+                        queue.reset();
+                        for (int i = 0; i < POSTS; ++i) ConcurrentWorker.post(new EmptyJob());
+                        System.out.println("nested concurrent posts:              " + ratio(queue.reset()) + " events/post");
+                        return null;
+                    }
+                });
+            }
+        });
+        System.exit(0);
+    }
+
+    private static String ratio(int events)
+    {
+        return String.valueOf((double)events / POSTS);
+    }
+
+    private static class EmptyJob extends Job
+    {
+        public Object run()
+        {
+            return null;
+        }
+    }
+
+    private static class CountingEventQueue extends EventQueue
+    {
+        private int count;
+
+        public void postEvent(AWTEvent event)
+        {
+            synchronized (this)
+            {
+                ++count;
+            }
+            super.postEvent(event);
+        }
+
+        private synchronized int reset()
+        {
+            int result = count;
+            count = 0;
+            return result;
+        }
+    }
+}
@@ -0,0 +1,103 @@
+/**
+ * Copyright (c) 2002-2008, Simone Bordet
+ * All rights reserved.
+ *
+ * This software is distributable under the BSD license.
+ * See the terms of the BSD license in the documentation provided with this software.
+ */
+
+package foxtrot.benchmarks;
+
+import foxtrot.Job;
+import foxtrot.Task;
+
+/**
+ * Measures the cost of {@link Task#isCompleted()}, that event pumps call for every event
+ * they dispatch, compared to a completion test that takes the Task's monitor. <br />
+ * Each test is run both uncontended, and while another thread keeps taking the Task's
+ * monitor, as a worker thread does when it updates the Task.
+ *
+ * @version $Revision$
+ */
+public class TaskCompletionBenchmark
+{
+    private static final int ITERATIONS = 50000000;
+
+    public static void main(String[] args) throws Exception
+    {
+        // Warm up, then measure
+        run(false);
+        run(true);
+    }
+
+    private static void run(boolean print) throws Exception
+    {
+        measure("monitor", new MonitorTask(), true, false, print);
+        measure("monitor, contended", new MonitorTask(), true, true, print);
+        measure("volatile", new MonitorTask(), false, false, print);
+        measure("volatile, contended", new MonitorTask(), false, true, print);
+    }
+
+    private static void measure(String name, final MonitorTask task, boolean locked, boolean contended, boolean print) throws Exception
+    {
+        final boolean[] stop = new boolean[1];
+        Thread contender = null;
+        if (contended)
+        {
+            contender = new Thread(new Runnable()
+            {
+                public void run()
+                {
+                    while (true)
+                    {
+                        synchronized (task)
+                        {
+                            if (stop[0]) break;
+                        }
+                        task.getPriority();
+                    }
+                }
+            });
+            contender.start();
+        }
+
+        int completed = 0;
+        long start = System.nanoTime();
+        if (locked)
+        {
+            for (int i = 0; i < ITERATIONS; ++i) if (task.isCompletedLocked()) ++completed;
+        }
+        else
+        {
+            for (int i = 0; i < ITERATIONS; ++i) if (task.isCompleted()) ++completed;
+        }
+        long elapsed = System.nanoTime() - start;
+
+        if (contender != null)
+        {
+            synchronized (task)
+            {
+                stop[0] = true;
+            }
+            contender.join();
+        }
+
+        if (print) System.out.println(name + ": " + ((double)elapsed / ITERATIONS) + " ns/test (" + completed + ")");
+    }
+
+    private static class MonitorTask extends Job
+    {
+        public Object run()
+        {
+            return null;
+        }
+
+        /**
+         * The completion test as it was when all the Task accessors were synchronized.
+         */
+        private synchronized boolean isCompletedLocked()
+        {
+            return isCompleted();
+        }
+    }
+}
@@ -0,0 +1,97 @@
+/**
+ * Copyright (c) 2002-2008, Simone Bordet
+ * All rights reserved.
+ *
+ * This software is distributable under the BSD license.
+ * See the terms of the BSD license in the documentation provided with this software.
+ */
+
+package foxtrot.benchmarks;
+
+import foxtrot.Job;
+import foxtrot.workers.SingleWorkerThread;
+
+/**
+ * Measures the cost of {@link SingleWorkerThread#postTask} as the task queue grows. <br />
+ * The worker thread is kept busy by a blocking task, so that posted tasks pile up in
+ * the queue; then the time to enqueue a batch of tasks is measured at increasing
+ * queue depths. The cost per enqueue should stay flat regardless of the depth.
+ *
+ * @version $Revision$
+ */
+public class TaskQueueBenchmark
+{
+    private static final int BATCH = 10000;
+
+    public static void main(String[] args) throws Exception
+    {
+        int[] depths = new int[]{0, 1000, 10000, 100000, 200000};
+        // Warm up, then measure
+        run(depths, false);
+        run(depths, true);
+    }
+
+    private static void run(int[] depths, boolean print) throws Exception
+    {
+        SingleWorkerThread worker = new SingleWorkerThread();
+        worker.start();
+
+        final Object lock = new Object();
+        final boolean[] released = new boolean[1];
+        worker.postTask(new Job()
+        {
+            public Object run()
+            {
+                synchronized (lock)
+                {
+                    while (!released[0])
+                    {
+                        try
+                        {
+                            lock.wait();
+                        }
+                        catch (InterruptedException x)
+                        {
+                            Thread.currentThread().interrupt();
+                            break;
+                        }
+                    }
+                }
+                return null;
+            }
+        });
+
+        Job job = new EmptyJob();
+        int depth = 0;
+        for (int i = 0; i < depths.length; ++i)
+        {
+            // Fill the queue up to the wanted depth
+            while (depth < depths[i])
+            {
+                worker.postTask(job);
+                ++depth;
+            }
+
+            long start = System.nanoTime();
+            for (int j = 0; j < BATCH; ++j) worker.postTask(job);
+            long elapsed = System.nanoTime() - start;
+            depth += BATCH;
+
+            if (print) System.out.println("Queue depth " + depths[i] + ": " + (elapsed / BATCH) + " ns/enqueue");
+        }
+
+        synchronized (lock)
+        {
+            released[0] = true;
+            lock.notifyAll();
+        }
+    }
+
+    private static class EmptyJob extends Job
+    {
+        public Object run()
+        {
+            return null;
+        }
+    }
+}